@@ -0,0 +1,29 @@
+package core;
+
+/**
+ * Measures how many layouts per second FleetGenerator produces.
+ * Arguments: [number of layouts per batch] [number of batches]
+ */
+public class FleetGeneratorBenchmark {
+    public static void main(String[] args) {
+        int batchSize = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int batches = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        FleetGenerator generator = new FleetGenerator(System.nanoTime());
+        byte[] buffer = new byte[batchSize * generator.getLayoutSize()];
+
+        // Warm up, so the JIT has compiled the hot path before measuring
+        for (int i = 0; i < 10; ++i)
+            generator.fill(buffer, 0, batchSize);
+
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < batches; ++i) {
+            generator.fill(buffer, 0, batchSize);
+            checksum += buffer[i % buffer.length];
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d layouts in %.3f s: %.0f layouts/s (checksum %d)%n",
+                (long)batchSize * batches, seconds, batchSize * batches / seconds, checksum);
+    }
+}
@@ -0,0 +1,85 @@
+package core;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the hot paths of Ocean and Ship on the classic battlefield.
+ * Run with BenchmarkRunner to get allocation rates as well
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OceanBenchmark {
+    private static final int CELLS = 100;   // Cells of the classic battlefield
+
+    private Ocean ocean;                    // Ocean with the fleet placed
+    private Ocean halfShot;                 // Ocean with the fleet placed and every other cell shot at
+    private Ship ship;                      // Ship that is not on the battlefield
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ocean = new Ocean();
+        ocean.setRndSeed(1);
+        ocean.placeAllShipsRandomly();
+        halfShot = new Ocean();
+        halfShot.setRndSeed(2);
+        halfShot.placeAllShipsRandomly();
+        for (int cell = 0; cell < CELLS; cell += 2)
+            halfShot.shootAt(cell / 10, cell % 10);
+        ship = Ship.create(3);
+    }
+
+    /**
+     * Fresh battlefield for every call of shootAt, placing the fleet is not measured
+     */
+    @State(Scope.Thread)
+    public static class FreshOcean {
+        Ocean ocean = new Ocean();
+        long seed;
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            ocean.reset();
+            ocean.setRndSeed(seed++);
+            ocean.placeAllShipsRandomly();
+        }
+    }
+
+    @Benchmark
+    public Ocean placeAllShipsRandomly() {
+        ocean.reset();
+        ocean.setRndSeed(seed++);
+        ocean.placeAllShipsRandomly();
+        return ocean;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CELLS * 2)
+    public void okToPlaceShipAt(Blackhole blackhole) {
+        for (int cell = 0; cell < CELLS; ++cell) {
+            blackhole.consume(ship.okToPlaceShipAt(cell / 10, cell % 10, true, ocean));
+            blackhole.consume(ship.okToPlaceShipAt(cell / 10, cell % 10, false, ocean));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CELLS)
+    public void shootAt(FreshOcean fresh, Blackhole blackhole) {
+        for (int cell = 0; cell < CELLS; ++cell)
+            blackhole.consume(fresh.ocean.shootAt(cell / 10, cell % 10));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CELLS)
+    public void getCellStatus(Blackhole blackhole) {
+        for (int cell = 0; cell < CELLS; ++cell)
+            blackhole.consume(halfShot.getCellStatus(cell / 10, cell % 10));
+    }
+}
@@ -0,0 +1,45 @@
+package core.sim;
+
+import core.GameRules;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of a full simulated game on the classic battlefield: placing both fleets,
+ * choosing moves and shooting until one fleet is sunk
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameBenchmark {
+    @Param({"random", "hunt/target", "probability"})
+    public String strategy;
+
+    private GameSimulator simulator;
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        simulator = new GameSimulator(GameRules.CLASSIC, createShooter(), createShooter());
+    }
+
+    private Shooter createShooter() {
+        switch (strategy) {
+            case "random":
+                return new RandomShooter();
+            case "hunt/target":
+                return new HuntTargetShooter();
+            default:
+                return new ProbabilityShooter();
+        }
+    }
+
+    @Benchmark
+    public int play() {
+        return simulator.play(seed++, 0);
+    }
+}
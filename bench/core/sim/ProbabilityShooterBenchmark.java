@@ -0,0 +1,45 @@
+package core.sim;
+
+import core.GameRules;
+import core.Ocean;
+import core.ShotBoard;
+import core.ShotOutcome;
+
+import java.util.Random;
+
+/**
+ * Measures how long ProbabilityShooter takes to choose a move, over whole games on 10x10.
+ * Arguments: [number of games]
+ */
+public class ProbabilityShooterBenchmark {
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        ProbabilityShooter shooter = new ProbabilityShooter();
+        Ocean ocean = new Ocean();
+        ShotBoard board = new ShotBoard(ocean.OCEAN_SIZE);
+        Random rnd = new Random(1);
+
+        long moves = 0, nanos = 0;
+        for (int game = 0; game < games; ++game) {
+            ocean.reset();
+            ocean.setRndSeed(game);
+            ocean.placeAllShipsRandomly();
+            board.reset();
+            shooter.newGame(GameRules.CLASSIC, rnd);
+            while (!ocean.isGameOver()) {
+                long start = System.nanoTime();
+                int cell = shooter.selectShot(board.getCells());
+                long elapsed = System.nanoTime() - start;
+                // The first games warm up the JIT and are not measured
+                if (game >= games / 10) {
+                    nanos += elapsed;
+                    ++moves;
+                }
+                int row = cell / ocean.OCEAN_SIZE, column = cell % ocean.OCEAN_SIZE;
+                board.record(row, column, ShotOutcome.toCellStatus(ocean.shoot(row, column)));
+            }
+        }
+        System.out.printf("%d moves, %.2f us per move, %.1f shots per game%n",
+                moves, nanos / 1e3 / moves, (double)moves / (games - games / 10));
+    }
+}
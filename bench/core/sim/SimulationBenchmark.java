@@ -0,0 +1,21 @@
+package core.sim;
+
+import core.GameRules;
+
+/**
+ * Plays hunt/target against random shooting on all cores and prints the report.
+ * Arguments: [number of games] [master seed]
+ */
+public class SimulationBenchmark {
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        SimulationEngine engine = new SimulationEngine(GameRules.CLASSIC,
+                Strategy.of("hunt/target", HuntTargetShooter::new),
+                Strategy.of("random", RandomShooter::new));
+        // Warm up, so the JIT has compiled the game loop before measuring
+        engine.run(games / 10, seed + 1);
+        System.out.println(engine.run(games, seed));
+    }
+}
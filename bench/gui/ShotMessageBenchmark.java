@@ -0,0 +1,79 @@
+package gui;
+
+import core.Ocean;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the shot messages GameWindow exchanges: a shot is sent as "row column"
+ * and answered with the value of the cell status, each on its own line. Encoding and decoding
+ * use PrintWriter and Scanner the way GameWindow does
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ShotMessageBenchmark {
+    private static final int MESSAGES = 100;    // Messages per invocation, one shot at every cell
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+    private final PrintWriter writer = new PrintWriter(buffer, true);
+    private byte[] shots;                       // Encoded shots at every cell
+    private byte[] results;                     // Encoded results of the shots
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int cell = 0; cell < MESSAGES; ++cell)
+            writer.printf("%d %d\n", cell / 10, cell % 10);
+        shots = buffer.toByteArray();
+        buffer.reset();
+        for (int cell = 0; cell < MESSAGES; ++cell)
+            writer.println(Ocean.CellStatus.values()[1 + cell % 4].getValue());
+        results = buffer.toByteArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public int encodeShot() {
+        buffer.reset();
+        for (int cell = 0; cell < MESSAGES; ++cell)
+            writer.printf("%d %d\n", cell / 10, cell % 10);
+        return buffer.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public int decodeShot() {
+        Scanner reader = new Scanner(new ByteArrayInputStream(shots));
+        int sum = 0;
+        for (int i = 0; i < MESSAGES; ++i)
+            sum += reader.nextInt() * 10 + reader.nextInt();
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public int encodeResult() {
+        buffer.reset();
+        for (int cell = 0; cell < MESSAGES; ++cell)
+            writer.println(Ocean.CellStatus.Damaged.getValue());
+        return buffer.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public int decodeResult() {
+        Scanner reader = new Scanner(new ByteArrayInputStream(results));
+        int sum = 0;
+        for (int i = 0; i < MESSAGES; ++i)
+            sum += Ocean.CellStatus.values()[reader.nextInt()].ordinal();
+        return sum;
+    }
+}
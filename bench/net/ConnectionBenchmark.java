@@ -0,0 +1,54 @@
+package net;
+
+import core.Ocean;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of one turn in both protocols: the shot and its result are written by one
+ * connection and read back by another. Compare with ShotMessageBenchmark for the old code path
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConnectionBenchmark {
+    private static final int TURNS = 100;       // Turns per invocation, one shot at every cell
+
+    @Param({"text", "binary"})
+    public String protocol;
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+    private Connection writer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        writer = create(new ByteArrayInputStream(new byte[0]));
+    }
+
+    private Connection create(ByteArrayInputStream in) {
+        return protocol.equals("binary") ? new BinaryConnection(in, buffer, "partner")
+                : new TextConnection(in, buffer, "partner");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TURNS)
+    public int turn() throws IOException {
+        buffer.reset();
+        for (int cell = 0; cell < TURNS; ++cell) {
+            writer.sendShot(cell / 10, cell % 10);
+            writer.sendResult(Ocean.CellStatus.Damaged);
+        }
+        Connection reader = create(new ByteArrayInputStream(buffer.toByteArray()));
+        int sum = 0;
+        for (int cell = 0; cell < TURNS; ++cell)
+            sum += reader.readShot() + reader.readResult().ordinal();
+        return sum;
+    }
+}
@@ -0,0 +1,252 @@
+package net;
+
+import core.GameRules;
+import core.Ocean;
+import core.ShotBoard;
+import core.ShotOutcome;
+import core.sim.HuntTargetShooter;
+import core.sim.Shooter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Compares threading models of GameWindow over loopback games between two bots.
+ * "per-turn" is the old model: the player's thread reads the result of its own shot and a new thread
+ * is started to read every partner's shot. "reader" is the current model: one long-lived thread per
+ * connection reads all messages and passes them to the player's thread through a queue, like
+ * Platform.runLater does. Reports threads started and context switches of the whole system (from
+ * /proc/stat, so run it on a quiet machine) per game.
+ * Arguments: [number of games]
+ */
+public class SessionModelBenchmark {
+    public static void main(String[] args) throws Exception {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        for (String model : new String[]{"per-turn", "reader", "per-turn", "reader"})
+            run(model, games);
+    }
+
+    private static void run(String model, int games) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long startedBefore = threads.getTotalStartedThreadCount(), switchesBefore = contextSwitches();
+        long start = System.nanoTime();
+        try (ServerSocket listener = new ServerSocket(0)) {
+            for (int game = 0; game < games; ++game) {
+                Socket clientSocket = new Socket(InetAddress.getLoopbackAddress(), listener.getLocalPort());
+                Socket serverSocket = listener.accept();
+                clientSocket.setTcpNoDelay(true);
+                serverSocket.setTcpNoDelay(true);
+                Peer client = model.equals("reader") ? new ReaderPeer(game, true) : new PerTurnPeer(game, true);
+                Peer server = model.equals("reader") ? new ReaderPeer(game + games, false) : new PerTurnPeer(game + games, false);
+                client.connection = new BinaryConnection(clientSocket.getInputStream(), clientSocket.getOutputStream(), "server");
+                server.connection = new BinaryConnection(serverSocket.getInputStream(), serverSocket.getOutputStream(), "client");
+                Thread serverThread = new Thread(server);
+                serverThread.start();
+                client.run();
+                serverThread.join();
+                clientSocket.close();
+                serverSocket.close();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        // Two threads per game play the peers in both models, the rest is the model's own
+        System.out.printf("%-8s: %.1f threads started, %.0f context switches, %.2f ms per game%n", model,
+                (double)(threads.getTotalStartedThreadCount() - startedBefore) / games - 1,
+                (double)(contextSwitches() - switchesBefore) / games, seconds * 1e3 / games);
+    }
+
+    /**
+     * Get number of context switches since boot, -1 if the system does not tell
+     */
+    private static long contextSwitches() throws IOException {
+        if (!Files.exists(Paths.get("/proc/stat")))
+            return -1;
+        for (String line : Files.readAllLines(Paths.get("/proc/stat")))
+            if (line.startsWith("ctxt "))
+                return Long.parseLong(line.substring(5).trim());
+        return -1;
+    }
+
+    /**
+     * Bot player with the state of GameWindow
+     */
+    private abstract static class Peer implements Runnable {
+        final Ocean ocean = new Ocean();
+        final ShotBoard board;
+        final Shooter shooter = new HuntTargetShooter();
+        final boolean isClient;
+        Connection connection;
+        int shotRow, shotColumn;
+
+        Peer(long seed, boolean isClient) {
+            this.isClient = isClient;
+            ocean.setRndSeed(seed);
+            ocean.placeAllShipsRandomly();
+            board = new ShotBoard(ocean.OCEAN_SIZE);
+            shooter.newGame(GameRules.CLASSIC, new Random(seed));
+        }
+
+        void shoot() throws IOException {
+            int cell = shooter.selectShot(board.getCells());
+            shotRow = cell / ocean.OCEAN_SIZE;
+            shotColumn = cell % ocean.OCEAN_SIZE;
+            connection.sendShot(shotRow, shotColumn);
+        }
+
+        /**
+         * @return true, if the game is over
+         */
+        boolean onResult(Ocean.CellStatus result) {
+            board.record(shotRow, shotColumn, result);
+            return board.getShipsDestroyed() == ocean.FLEET_SIZE;
+        }
+
+        /**
+         * @return true, if the game is over
+         */
+        boolean onShot(int shot) throws IOException {
+            long outcome = ocean.shoot(Connection.getRow(shot), Connection.getColumn(shot));
+            connection.sendResult(ShotOutcome.toCellStatus(outcome));
+            return ocean.isGameOver();
+        }
+    }
+
+    /**
+     * Old model: blocking reads on the player's thread and a new thread for every partner's turn
+     */
+    private static class PerTurnPeer extends Peer {
+        private final Semaphore myTurn = new Semaphore(0);
+        private volatile boolean over;
+
+        PerTurnPeer(long seed, boolean isClient) {
+            super(seed, isClient);
+        }
+
+        @Override
+        public void run() {
+            try {
+                connection.sendReady();
+                new Thread(this::waitForPartner).start();
+                while (true) {
+                    myTurn.acquire();
+                    if (over)
+                        return;
+                    shoot();
+                    if (onResult(connection.readResult()))
+                        return;
+                    new Thread(this::getPartnerTurn).start();
+                }
+            }
+            catch (IOException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void waitForPartner() {
+            try {
+                connection.readReady();
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            if (isClient)
+                myTurn.release();
+            else
+                new Thread(this::getPartnerTurn).start();
+        }
+
+        private void getPartnerTurn() {
+            try {
+                over = onShot(connection.readShot());
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            myTurn.release();
+        }
+    }
+
+    /**
+     * Current model: one reader thread per connection, messages are handled on the player's thread
+     */
+    private static class ReaderPeer extends Peer {
+        private final BlockingQueue<Runnable> events = new LinkedBlockingQueue<>();
+        private boolean over;
+
+        ReaderPeer(long seed, boolean isClient) {
+            super(seed, isClient);
+        }
+
+        @Override
+        public void run() {
+            Thread reader = new Thread(this::readPartner);
+            reader.setDaemon(true);
+            reader.start();
+            try {
+                connection.sendReady();
+                while (!over)
+                    events.take().run();
+            }
+            catch (IOException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void readPartner() {
+            try {
+                while (true) {
+                    switch (connection.read()) {
+                        case Codec.READY:
+                            events.add(this::onReady);
+                            break;
+
+                        case Codec.SHOT:
+                            int shot = connection.getShot();
+                            events.add(() -> onPartnerShot(shot));
+                            break;
+
+                        case Codec.RESULT:
+                            Ocean.CellStatus result = connection.getResult();
+                            events.add(() -> over = onResult(result));
+                            break;
+                    }
+                }
+            }
+            catch (IOException e) {
+                // Connection is closed after the game
+            }
+        }
+
+        private void onReady() {
+            if (!isClient)
+                return;
+            try {
+                shoot();
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void onPartnerShot(int shot) {
+            try {
+                over = onShot(shot);
+                if (!over)
+                    shoot();
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package net;
+
+import core.Ocean;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the session snapshot a server keeps after every turn so a dropped game can be resumed,
+ * taken in the middle of a classic game. Run with core.BenchmarkRunner to get allocation rates as well
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SnapshotBenchmark {
+    private GameSession session;            // Game after 30 turns of each player
+    private byte[] snapshot;                // Snapshot of the game
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Ocean ocean = new Ocean();
+        ocean.setRndSeed(1);
+        ocean.placeAllShipsRandomly();
+        GameSession.Transport transport = new GameSession.Transport() {
+            @Override
+            public void sendShot(int row, int column) {
+            }
+
+            @Override
+            public void sendResult(Ocean.CellStatus result) {
+            }
+
+            @Override
+            public void sendReady() {
+            }
+
+            @Override
+            public void sendSalvo(int[] shots, int count) {
+            }
+
+            @Override
+            public void sendResults(Ocean.CellStatus[] results, int count) {
+            }
+        };
+        session = new GameSession(ocean, transport, true);
+        session.setStats(new TurnStats());
+        session.beginSetup();
+        session.ready();
+        session.onMessage(Codec.READY, 0, null);
+        for (int turn = 0; turn < 30; ++turn) {
+            int cell = turn * 3 % 100;
+            session.shoot(cell / 10, cell % 10);
+            session.onMessage(Codec.RESULT, 0, Ocean.CellStatus.Missed);
+            session.onMessage(Codec.SHOT, Connection.packShot(turn / 10, turn % 10 * 7 % 10), null);
+        }
+        snapshot = session.snapshot();
+    }
+
+    @Benchmark
+    public byte[] snapshot() {
+        return session.snapshot();
+    }
+
+    @Benchmark
+    public GameSession restore() throws ProtocolException {
+        return GameSession.restore(snapshot, null);
+    }
+}
@@ -0,0 +1,117 @@
+package core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Own battlefield of a player in a game: the fleet and the partner's shots at it. Implemented by Ocean, which
+ * supports any rules and editing the fleet by hand, and by BitOcean, which keeps the classic battlefield in bit
+ * masks and is the faster choice wherever a fleet is only placed at random and shot at, e.g. in simulations
+ * and in matches with the server
+ */
+public interface Battlefield {
+    /**
+     * Create an empty battlefield for the rules, the fastest implementation that supports them
+     * @param rules size of battlefield and composition of the fleet
+     * @return BitOcean for the classic rules, Ocean otherwise
+     */
+    static Battlefield create(GameRules rules) {
+        return BitOcean.supports(rules) ? new BitOcean() : new Ocean(rules);
+    }
+
+    /**
+     * Get rules the battlefield is played by
+     * @return game rules
+     */
+    GameRules getRules();
+
+    /**
+     * Return the battlefield to the state right after construction: no ships and no shots
+     */
+    void reset();
+
+    /**
+     * Sets seed for Random's instance, so random placement can be reproduced in tests and simulations
+     * @param seed seed to set
+     */
+    void setRndSeed(long seed);
+
+    /**
+     * Randomly place all ships of the fleet on the battlefield, longest first. With the same seed, every
+     * implementation places the fleet the same way
+     */
+    void placeAllShipsRandomly();
+
+    /**
+     * Make a shot at the given cell
+     * @param row       cell's row
+     * @param column    cell's column
+     * @return result of the shot packed by ShotOutcome, ships are numbered in order of placement
+     */
+    long shoot(int row, int column);
+
+    /**
+     * Make a salvo: shoot at the given cells one after another, as one move of the partner.
+     * A cell repeated within the salvo is a duplicate
+     * @param rows      rows of the shots
+     * @param columns   columns of the shots
+     * @param count     number of shots
+     * @param outcomes  array receiving results of the shots packed by ShotOutcome, by shot
+     * @return number of shots that hit a ship for the first time
+     */
+    default int shootAt(int[] rows, int[] columns, int count, long[] outcomes) {
+        int hits = 0;
+        for (int i = 0; i < count; ++i) {
+            outcomes[i] = shoot(rows[i], columns[i]);
+            if (ShotOutcome.isHit(outcomes[i]))
+                ++hits;
+        }
+        return hits;
+    }
+
+    /**
+     * Get number of ships of the fleet that have not been sunk yet
+     * @return ships afloat
+     */
+    int getShipsAfloat();
+
+    /**
+     * Check, if the game is over
+     * @return true if all ships of the fleet have been sunk, false otherwise
+     */
+    boolean isGameOver();
+
+    boolean hasShipAt(int row, int column);
+
+    boolean isHorizontalAt(int row, int column);
+
+    /**
+     * Check, if the partner has already shot at cell
+     * @param row cell's row
+     * @param column cell's column
+     * @return true, if the partner has shot, false otherwise
+     */
+    boolean hasShotAt(int row, int column);
+
+    /**
+     * Get status of the cell
+     * @param row cell's row
+     * @param column cell's column
+     * @return status of the cell, Unknown outside the battlefield
+     */
+    Ocean.CellStatus getCellStatus(int row, int column);
+
+    /**
+     * Write ships and shots at two bits per cell, four cells per byte in row-major order:
+     * the low bit is set if a ship is at the cell, the high bit if the cell has been shot at.
+     * Takes (size^2 + 3) / 4 bytes, the same for every implementation
+     * @param out buffer to write to
+     */
+    void pack(ByteBuffer out);
+
+    /**
+     * Place ships and replay shots written by pack. The battlefield must be empty, e.g. right after reset
+     * @param in buffer to read from
+     * @throws IllegalArgumentException if the ships break the rules or are not the whole fleet
+     */
+    void unpack(ByteBuffer in);
+}
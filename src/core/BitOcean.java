@@ -0,0 +1,340 @@
+package core;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Battlefield that keeps ships and shots as bit masks instead of Ship objects.
+ * Cell (row, column) is bit (row * OCEAN_SIZE + column) of a 128-bit mask, which is stored
+ * as two longs: the low word holds cells 0..63, the high word holds cells 64..99.
+ * Provides the same game API as Ocean, but placement and shot checks are a few mask operations.
+ * Supports the classic rules only
+ */
+public class BitOcean implements Battlefield {
+    public static final int OCEAN_SIZE = 10;        // Size of battlefield along one axis
+    public static final int FLEET_SIZE = 10;        // Size of the fleet
+
+    static final int[] FLEET = GameRules.CLASSIC.getShipLengths();  // Lengths of ships, in order of placement
+    private static final PlacementMasks MASKS = PlacementMasks.forSize(OCEAN_SIZE);
+
+    private long occupiedLo, occupiedHi;    // Cells occupied with ships
+    private long shotLo, shotHi;            // Cells that have been shot at
+    private long hitLo, hitHi;              // Cells with ships that have been shot at
+    private final long[] shipLo = new long[FLEET_SIZE],     // Cells of each placed ship
+            shipHi = new long[FLEET_SIZE];
+    private final boolean[] shipHorizontal = new boolean[FLEET_SIZE];
+    private final int[] shipLength = new int[FLEET_SIZE];
+    private final byte[] shipAt = new byte[OCEAN_SIZE * OCEAN_SIZE];   // Index of ship at the cell, -1 if empty
+    private int shipsPlaced;                // Number of ships on the battlefield
+    private int sunkShips;                  // Bit i is set if ship i has been sunk
+    private int shipsSunk;                  // Number of ships sunk by player
+    private Random rnd;                     // Random instance
+    private final int[] anchors = new int[MASKS.getPlacementCount()];  // Buffer for legal placements
+
+    /**
+     * Constructor, initialize variables before new game
+     */
+    public BitOcean() {
+        Arrays.fill(shipAt, (byte)-1);
+        rnd = new Random();
+    }
+
+    /**
+     * Check, whether games by the rules can be played on a BitOcean
+     * @param rules game rules
+     * @return true for the classic battlefield and fleet
+     */
+    public static boolean supports(GameRules rules) {
+        return rules.getSize() == OCEAN_SIZE && Arrays.equals(rules.getShipLengths(), FLEET);
+    }
+
+    @Override
+    public GameRules getRules() {
+        return GameRules.CLASSIC;
+    }
+
+    @Override
+    public void reset() {
+        occupiedLo = occupiedHi = 0;
+        shotLo = shotHi = 0;
+        hitLo = hitHi = 0;
+        Arrays.fill(shipAt, (byte)-1);
+        shipsPlaced = 0;
+        sunkShips = 0;
+        shipsSunk = 0;
+    }
+
+    /**
+     * Check, if placing the ship at given position won't break the rules
+     * @param row row of potential place
+     * @param column column of potential place
+     * @param horizontal true, if ship should be placed horizontally, false otherwise
+     * @param length length of the ship
+     * @return true, if ship can be placed according to the rules, false otherwise
+     */
+    public boolean okToPlaceShipAt(int row, int column, boolean horizontal, int length) {
+        if (row < 0 || column < 0 || row >= OCEAN_SIZE || column >= OCEAN_SIZE)
+            return false;
+        return MASKS.isLegal(length, MASKS.encode(row, column, horizontal), occupiedLo, occupiedHi);
+    }
+
+    /**
+     * Place the ship at given position. The position should be checked with okToPlaceShipAt first
+     * @param row row of the place
+     * @param column column of the place
+     * @param horizontal true, if ship should be placed horizontally, false otherwise
+     * @param length length of the ship
+     */
+    public void placeShipAt(int row, int column, boolean horizontal, int length) {
+        if (shipsPlaced == FLEET_SIZE)
+            throw new IllegalStateException("All ships have already been placed");
+        int index = shipsPlaced++;
+        int code = MASKS.encode(row, column, horizontal);
+        shipLo[index] = MASKS.getFootprintLo(length, code);
+        shipHi[index] = MASKS.getFootprintHi(length, code);
+        shipHorizontal[index] = horizontal;
+        shipLength[index] = length;
+        occupiedLo |= shipLo[index];
+        occupiedHi |= shipHi[index];
+        for (int i = 0; i < length; ++i) {
+            if (horizontal)
+                shipAt[row * OCEAN_SIZE + column + i] = (byte)index;
+            else
+                shipAt[(row + i) * OCEAN_SIZE + column] = (byte)index;
+        }
+    }
+
+    /**
+     * Randomly place given ship on the battlefield
+     * @param length length of the ship to place
+     */
+    private void placeOneShipRandomly(int length) {
+        int available = MASKS.legalAnchors(length, occupiedLo, occupiedHi, anchors);
+        int code = anchors[rnd.nextInt(available)];
+        placeShipAt(MASKS.getRow(code), MASKS.getColumn(code), MASKS.isHorizontal(code), length);
+    }
+
+    /**
+     * Randomly place all 10 ships on the battlefield. Takes the same random numbers as Ocean does,
+     * so the same seed gives the same fleet
+     */
+    @Override
+    public void placeAllShipsRandomly() {
+        for (int length : FLEET)
+            placeOneShipRandomly(length);
+    }
+
+    /**
+     * Place all 10 ships from the layout made by FleetGenerator for the standard fleet
+     * @param layouts array with layouts
+     * @param offset index of the first byte of the layout
+     */
+    public void placeFleet(byte[] layouts, int offset) {
+        for (int i = 0; i < FLEET_SIZE; ++i) {
+            int code = layouts[offset + i] & 0xFF;
+            placeShipAt(MASKS.getRow(code), MASKS.getColumn(code), MASKS.isHorizontal(code), FLEET[i]);
+        }
+    }
+
+    /**
+     * Check, whether the cell is set in the mask given as two words
+     */
+    private static boolean isSet(long lo, long hi, int cell) {
+        return cell < Long.SIZE ? (lo >>> cell & 1) != 0 : (hi >>> (cell - Long.SIZE) & 1) != 0;
+    }
+
+    /**
+     * Check, whether the given cell is occupied with a ship. If the cell is outside the battlefield, returns false
+     * @param row       cell's row
+     * @param column    cell's column
+     * @return true, if cell is occupied with a ship, false otherwise
+     */
+    boolean isOccupied(int row, int column) {
+        if (row < 0 || column < 0 || row >= OCEAN_SIZE || column >= OCEAN_SIZE)
+            return false;
+        return isSet(occupiedLo, occupiedHi, row * OCEAN_SIZE + column);
+    }
+
+    /**
+     * Check, if the ship with given index has been sunk
+     * @param index index of the ship
+     * @return true, if all cells of the ship have been hit, false otherwise
+     */
+    private boolean isShipSunk(int index) {
+        return (sunkShips >>> index & 1) != 0;
+    }
+
+    /**
+     * Make a shot at the given cell
+     * @param row       cell's row
+     * @param column    cell's column
+     * @return true, if shot hit any ship, false otherwise
+     */
+    public boolean shootAt(int row, int column) {
+        long outcome = shoot(row, column);
+        if (ShotOutcome.getKind(outcome) == ShotOutcome.DUPLICATE) {
+            // Repeated shot at a ship counts as a hit until the ship is sunk
+            int index = shipAt[row * OCEAN_SIZE + column];
+            return index >= 0 && !isShipSunk(index);
+        }
+        return ShotOutcome.isHit(outcome);
+    }
+
+    /**
+     * Make a shot at the given cell
+     * @param row       cell's row
+     * @param column    cell's column
+     * @return result of the shot packed by ShotOutcome, ships are numbered in order of placement
+     */
+    @Override
+    public long shoot(int row, int column) {
+        int cell = row * OCEAN_SIZE + column;
+        if (isSet(shotLo, shotHi, cell))
+            return ShotOutcome.of(ShotOutcome.DUPLICATE, 0, 0, false);
+        long bitLo = cell < Long.SIZE ? 1L << cell : 0,
+                bitHi = cell < Long.SIZE ? 0 : 1L << (cell - Long.SIZE);
+        shotLo |= bitLo;
+        shotHi |= bitHi;
+        int index = shipAt[cell];
+        if (index < 0)
+            return ShotOutcome.of(ShotOutcome.MISS, 0, 0, false);
+        hitLo |= bitLo;
+        hitHi |= bitHi;
+        int kind = ShotOutcome.HIT;
+        if ((hitLo & shipLo[index]) == shipLo[index] && (hitHi & shipHi[index]) == shipHi[index]) {
+            sunkShips |= 1 << index;
+            ++shipsSunk;
+            kind = ShotOutcome.SUNK;
+        }
+        return ShotOutcome.of(kind, index, shipLength[index], shipHorizontal[index]);
+    }
+
+    @Override
+    public int getShipsAfloat() {
+        return FLEET_SIZE - shipsSunk;
+    }
+
+    @Override
+    public boolean hasShipAt(int row, int column) {
+        return isOccupied(row, column);
+    }
+
+    @Override
+    public boolean isHorizontalAt(int row, int column) {
+        int index = shipAt[row * OCEAN_SIZE + column];
+        return index >= 0 && shipHorizontal[index];
+    }
+
+    /**
+     * Check, if the game is over
+     * @return true if player have sunk all 10 ships, false otherwise
+     */
+    @Override
+    public boolean isGameOver() {
+        return shipsSunk == FLEET_SIZE;
+    }
+
+    /**
+     * Get status of the cell
+     * @param row cell's row
+     * @param column cell's column
+     * @return status of the cell
+     */
+    @Override
+    public Ocean.CellStatus getCellStatus(int row, int column) {
+        if (row < 0 || column < 0 || row >= OCEAN_SIZE || column >= OCEAN_SIZE)
+            return Ocean.CellStatus.Unknown;
+        int cell = row * OCEAN_SIZE + column;
+        if (!isSet(shotLo, shotHi, cell))
+            return Ocean.CellStatus.Unknown;
+        int index = shipAt[cell];
+        if (index < 0)
+            return Ocean.CellStatus.Missed;
+        if (isShipSunk(index))
+            return shipHorizontal[index] ? Ocean.CellStatus.DestroyedHor : Ocean.CellStatus.DestroyedVer;
+        return Ocean.CellStatus.Damaged;
+    }
+
+    /**
+     * Check, if the player has already shot at cell
+     * @param row cell's row
+     * @param column cell's column
+     * @return true, if player has shot, false otherwise
+     */
+    @Override
+    public boolean hasShotAt(int row, int column) {
+        return isSet(shotLo, shotHi, row * OCEAN_SIZE + column);
+    }
+
+    @Override
+    public void pack(ByteBuffer out) {
+        int bits = 0, count = 0;
+        for (int cell = 0; cell < OCEAN_SIZE * OCEAN_SIZE; ++cell) {
+            bits |= ((isSet(occupiedLo, occupiedHi, cell) ? 1 : 0) | (isSet(shotLo, shotHi, cell) ? 2 : 0))
+                    << (count * 2);
+            if (++count == 4) {
+                out.put((byte)bits);
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count > 0)
+            out.put((byte)bits);
+    }
+
+    @Override
+    public void unpack(ByteBuffer in) {
+        if (shipsPlaced > 0)
+            throw new IllegalStateException("Battlefield must be empty");
+        long shipsLo = 0, shipsHi = 0, shotsLo = 0, shotsHi = 0;     // Cells read from the buffer
+        int bits = 0;
+        for (int cell = 0; cell < OCEAN_SIZE * OCEAN_SIZE; ++cell) {
+            if (cell % 4 == 0)
+                bits = in.get();
+            long bitLo = cell < Long.SIZE ? 1L << cell : 0, bitHi = cell < Long.SIZE ? 0 : 1L << (cell - Long.SIZE);
+            if ((bits >> (cell % 4 * 2) & 1) != 0) {
+                shipsLo |= bitLo;
+                shipsHi |= bitHi;
+            }
+            if ((bits >> (cell % 4 * 2) & 2) != 0) {
+                shotsLo |= bitLo;
+                shotsHi |= bitHi;
+            }
+        }
+        int[] shipsLeft = new int[FLEET[0]];
+        for (int length : FLEET)
+            ++shipsLeft[length - 1];
+        for (int row = 0; row < OCEAN_SIZE; ++row) {
+            for (int column = 0; column < OCEAN_SIZE; ++column) {
+                int cell = row * OCEAN_SIZE + column;
+                // Place every ship from its bow, its top or left cell
+                if (!isSet(shipsLo, shipsHi, cell) || (row > 0 && isSet(shipsLo, shipsHi, cell - OCEAN_SIZE)) ||
+                        (column > 0 && isSet(shipsLo, shipsHi, cell - 1)))
+                    continue;
+                boolean horizontal = row + 1 == OCEAN_SIZE || !isSet(shipsLo, shipsHi, cell + OCEAN_SIZE);
+                int length = 1;
+                while (horizontal ? column + length < OCEAN_SIZE && isSet(shipsLo, shipsHi, cell + length)
+                        : row + length < OCEAN_SIZE && isSet(shipsLo, shipsHi, cell + length * OCEAN_SIZE))
+                    ++length;
+                if (length > shipsLeft.length || shipsLeft[length - 1] == 0 ||
+                        !okToPlaceShipAt(row, column, horizontal, length))
+                    throw new IllegalArgumentException("Ship at " + row + ", " + column + " breaks the rules");
+                placeShipAt(row, column, horizontal, length);
+                --shipsLeft[length - 1];
+            }
+        }
+        if (occupiedLo != shipsLo || occupiedHi != shipsHi)
+            throw new IllegalArgumentException("Ships touch each other");
+        if (shipsPlaced != FLEET_SIZE)
+            throw new IllegalArgumentException("Fleet is incomplete");
+        for (int cell = 0; cell < OCEAN_SIZE * OCEAN_SIZE; ++cell)
+            if (isSet(shotsLo, shotsHi, cell))
+                shoot(cell / OCEAN_SIZE, cell % OCEAN_SIZE);
+    }
+
+    @Override
+    public void setRndSeed(long seed) {
+        rnd.setSeed(seed);
+    }
+}
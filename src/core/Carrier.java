@@ -0,0 +1,20 @@
+package core;
+
+/**
+ * Ship longer than a battleship, used by fleets with custom rules
+ */
+class Carrier extends Ship {
+    Carrier(int length) {
+        this.length = length;
+        hit = new boolean[length];
+    }
+
+    /**
+     * Get name of the ship's type (always "carrier")
+     * @return string "carrier"
+     */
+    @Override
+    public String getShipType() {
+        return "carrier";
+    }
+}
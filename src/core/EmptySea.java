@@ -1,6 +1,8 @@
 package core;
 
 class EmptySea extends Ship {
+    static final EmptySea INSTANCE = new EmptySea();    // Shared by all empty cells, it never changes
+
     EmptySea() {
         length = 1;
         damaged = true;     // Empty sea is always "damaged" so it will never enter this state again
@@ -26,6 +28,13 @@ class EmptySea extends Ship {
         return false;
     }
 
+    /**
+     * Empty sea has no hits to clear, so the shared instance stays unchanged
+     */
+    @Override
+    void reset() {
+    }
+
     /**
      * Check, if the ship is sunk (always false)
      * @return always false
@@ -0,0 +1,109 @@
+package core;
+
+/**
+ * Generator of random legal fleet layouts for simulations.
+ * A layout is stored as one placement code (see PlacementMasks) per ship, in the order
+ * of the fleet's lengths, one unsigned byte each. Generating does not allocate any objects
+ * and uses its own random generator, so separate instances can be used from separate threads.
+ * An instance itself is not thread-safe
+ */
+public class FleetGenerator {
+    private static final int MAX_RESTARTS = 1000;   // Layouts started over before the fleet is taken not to fit
+
+    private final PlacementMasks masks;     // Placement table of the battlefield
+    private final int[] fleet;              // Lengths of ships, in order of placement
+    private final long[] anchors = new long[4];     // Buffer for masks of legal placements of one ship
+    private long state;                     // State of the random generator
+
+    /**
+     * Create generator for the standard 10x10 battlefield and fleet
+     * @param seed seed of the random generator
+     */
+    public FleetGenerator(long seed) {
+        this(GameRules.CLASSIC, seed);
+    }
+
+    /**
+     * Create generator for the given battlefield and fleet. Ships are placed longest first
+     * @param rules game rules, battlefield must not be larger than PlacementMasks.MAX_SIZE
+     * @param seed seed of the random generator
+     */
+    public FleetGenerator(GameRules rules, long seed) {
+        masks = PlacementMasks.forSize(rules.getSize());
+        fleet = rules.getShipLengths();
+        state = seed;
+    }
+
+    /**
+     * Get number of bytes taken by one layout
+     * @return number of ships in the fleet
+     */
+    public int getLayoutSize() {
+        return fleet.length;
+    }
+
+    /**
+     * Get the placement table the codes refer to
+     * @return placement table
+     */
+    public PlacementMasks getMasks() {
+        return masks;
+    }
+
+    /**
+     * Get next pseudo-random number (SplitMix64)
+     * @return next 64 random bits
+     */
+    private long nextLong() {
+        long z = (state += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Get next pseudo-random number in range [0, bound)
+     * @param bound upper bound, exclusive
+     * @return random number
+     */
+    private int nextInt(int bound) {
+        return (int)(((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    /**
+     * Generate one layout. If some ship cannot be placed, the layout is started over
+     * @param out array to store the layout to
+     * @param offset index of the first byte of the layout
+     * @throws IllegalStateException if no layout has been found after MAX_RESTARTS tries, e.g. the fleet
+     * does not fit the battlefield
+     */
+    public void generate(byte[] out, int offset) {
+        restart:
+        for (int attempt = 0; attempt < MAX_RESTARTS; ++attempt) {
+            long forbiddenLo = 0, forbiddenHi = 0;
+            for (int i = 0; i < fleet.length; ++i) {
+                int length = fleet[i];
+                int available = masks.legalAnchorMasks(length, forbiddenLo, forbiddenHi, anchors);
+                if (available == 0)
+                    continue restart;
+                int code = PlacementMasks.selectAnchor(anchors, nextInt(available));
+                forbiddenLo |= masks.getHaloLo(length, code);
+                forbiddenHi |= masks.getHaloHi(length, code);
+                out[offset + i] = (byte)code;
+            }
+            return;
+        }
+        throw new IllegalStateException("There is no room for the fleet");
+    }
+
+    /**
+     * Generate several layouts one after another
+     * @param out array to store layouts to, at least offset + count * getLayoutSize() long
+     * @param offset index of the first byte of the first layout
+     * @param count number of layouts to generate
+     */
+    public void fill(byte[] out, int offset, int count) {
+        for (int i = 0; i < count; ++i)
+            generate(out, offset + i * fleet.length);
+    }
+}
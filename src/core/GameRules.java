@@ -0,0 +1,119 @@
+package core;
+
+/**
+ * Configuration of a game: size of the battlefield, composition of the fleet
+ * and the way Ocean stores the battlefield. Instances are immutable
+ */
+public class GameRules {
+    public static final int DENSE_LIMIT = 100;      // Largest battlefield stored densely by default
+    public static final int MAX_SIZE = 46340;       // Largest battlefield whose cell indices fit into int
+
+    /**
+     * Classic rules: 10x10 battlefield, 4 submarines, 3 destroyers, 2 cruisers and a battleship
+     */
+    public static final GameRules CLASSIC = new GameRules(10, new int[]{4, 3, 2, 1});
+
+    private final int size;             // Size of battlefield along one axis
+    private final int[] shipCounts;     // Numbers of ships, by length
+    private final int fleetSize;        // Total number of ships
+    private final boolean sparse;       // true, if only ships and shots are stored, not every cell
+
+    /**
+     * Create rules, storing the battlefield sparsely if it is larger than DENSE_LIMIT along one axis
+     * @param size size of battlefield along one axis
+     * @param shipCounts numbers of ships, by length: element i is the number of ships of length i + 1
+     */
+    public GameRules(int size, int[] shipCounts) {
+        this(size, shipCounts, size > DENSE_LIMIT);
+    }
+
+    /**
+     * Create rules
+     * @param size size of battlefield along one axis
+     * @param shipCounts numbers of ships, by length: element i is the number of ships of length i + 1
+     * @param sparse pass true to store only ships and shots, so memory does not depend on battlefield size;
+     *               pass false to store every cell
+     */
+    public GameRules(int size, int[] shipCounts, boolean sparse) {
+        if (size < 1 || size > MAX_SIZE)
+            throw new IllegalArgumentException("Battlefield size must be from 1 to " + MAX_SIZE);
+        if (shipCounts.length > size)
+            throw new IllegalArgumentException("Ships must not be longer than the battlefield");
+        int total = 0;
+        for (int count : shipCounts) {
+            if (count < 0)
+                throw new IllegalArgumentException("Numbers of ships must not be negative");
+            total += count;
+        }
+        if (total == 0)
+            throw new IllegalArgumentException("Fleet must have at least one ship");
+        this.size = size;
+        this.shipCounts = shipCounts.clone();
+        this.fleetSize = total;
+        this.sparse = sparse;
+    }
+
+    /**
+     * Get size of the battlefield along one axis
+     * @return battlefield size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get total number of ships in the fleet
+     * @return fleet size
+     */
+    public int getFleetSize() {
+        return fleetSize;
+    }
+
+    /**
+     * Get length of the longest ship in the fleet
+     * @return maximum ship length
+     */
+    public int getMaxShipLength() {
+        return shipCounts.length;
+    }
+
+    /**
+     * Get number of ships of given length
+     * @param length length of ships
+     * @return number of ships, 0 if there are no ships of such length
+     */
+    public int getShipCount(int length) {
+        if (length < 1 || length > shipCounts.length)
+            return 0;
+        return shipCounts[length - 1];
+    }
+
+    /**
+     * Get numbers of ships by length
+     * @return new array, element i is the number of ships of length i + 1
+     */
+    public int[] getShipCounts() {
+        return shipCounts.clone();
+    }
+
+    /**
+     * Get lengths of all ships, longest first. This is the order ships are placed randomly in
+     * @return new array with one element per ship
+     */
+    public int[] getShipLengths() {
+        int[] lengths = new int[fleetSize];
+        int index = 0;
+        for (int length = shipCounts.length; length >= 1; --length)
+            for (int i = 0; i < shipCounts[length - 1]; ++i)
+                lengths[index++] = length;
+        return lengths;
+    }
+
+    /**
+     * Check, if Ocean should store only ships and shots instead of every cell
+     * @return true for sparse storage, false for dense storage
+     */
+    public boolean isSparse() {
+        return sparse;
+    }
+}
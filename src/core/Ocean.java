@@ -1,11 +1,21 @@
 package core;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Random;
 
-public class Ocean {
-    public final int OCEAN_SIZE = 10;      // Size of battlefield along one axis
-    public final int FLEET_SIZE = 10;      // Size of the fleet
+/**
+ * Battlefield of any rules keeping a Ship object per cell, with ships that can be placed and removed by hand
+ */
+public class Ocean implements Battlefield {
+    public final int OCEAN_SIZE;            // Size of battlefield along one axis
+    public final int FLEET_SIZE;            // Size of the fleet
+
+    private static final int MAX_PLACEMENT_ATTEMPTS = 1000;    // Random tries before looking through all cells
 
     /**
      * Status of a battlefield's cell
@@ -33,72 +43,148 @@ public class Ocean {
         }
     }
 
+    private final GameRules rules;  // Size of battlefield and composition of the fleet
+    private Random rnd;             // Random instance
+    private Ship[][] ships;         // Represents the battlefield, null for sparse storage
+    private boolean[][] shotAt;     // Contains true if cell has been shot at, or false otherwise; null for sparse storage
+    private HashMap<Integer, Ship> shipCells;   // Ships by cell index, for sparse storage
+    private HashSet<Integer> shotCells;         // Indices of cells that have been shot at, for sparse storage
+    private int shipsSunk;          // Number of ships sunk by player
+    private int[] shipsLeft;        // Numbers of ships left to place, by length
+    private final int[] shipLengths;                // Lengths of ships in order of random placement
+    private final ArrayList<Ship> placedShips;      // Ships placed by this object, to be pooled on reset
+    private final ArrayList<ArrayDeque<Ship>> pool; // Ships ready for reuse, by length
+    private final PlacementMasks masks;     // Placements of ships, null if the battlefield does not fit 128 bits
+    private long occupiedLo, occupiedHi;    // Cells with ships in the layout of PlacementMasks, kept with masks only
+    private int[] anchors;          // Buffer for legal placements, see placeOneShipRandomly
+    private int nextShipId;         // Number to give to the next placed ship
+    private ShotListener shotListener;  // Receiver of shot results, may be null
+
     /**
-     * The position of a ship's bow
+     * Constructor, initialize variables before new game with classic rules
      */
-    static class Position {
-        int x;                  // row
-        int y;                  // column
-        boolean horizontal;     // whether ship is aligned horizontally or not
+    public Ocean() {
+        this(GameRules.CLASSIC);
+    }
 
-        Position(int x, int y, boolean horizontal) {
-            this.x = x;
-            this.y = y;
-            this.horizontal = horizontal;
+    /**
+     * Constructor, initialize variables before new game
+     * @param rules size of battlefield, composition of the fleet and storage mode
+     */
+    public Ocean(GameRules rules) {
+        this.rules = rules;
+        OCEAN_SIZE = rules.getSize();
+        FLEET_SIZE = rules.getFleetSize();
+        if (rules.isSparse()) {
+            shipCells = new HashMap<>();
+            shotCells = new HashSet<>();
+        }
+        else {
+            ships = new Ship[OCEAN_SIZE][OCEAN_SIZE];
+            shotAt = new boolean[OCEAN_SIZE][OCEAN_SIZE];
         }
+        masks = OCEAN_SIZE <= PlacementMasks.MAX_SIZE ? PlacementMasks.forSize(OCEAN_SIZE) : null;
+        rnd = new Random();
+        shipsLeft = new int[rules.getMaxShipLength()];
+        shipLengths = rules.getShipLengths();
+        placedShips = new ArrayList<>(FLEET_SIZE);
+        pool = new ArrayList<>(rules.getMaxShipLength());
+        for (int i = 0; i < rules.getMaxShipLength(); ++i)
+            pool.add(new ArrayDeque<>(rules.getShipCount(i + 1)));
+        reset();
     }
 
-    private Random rnd;             // Random instance
-    private Ship[][] ships;         // Represents the battlefield
-    private boolean[][] shotAt;     // Contains true if cell has been shot at, or false otherwise
-    private int shipsSunk;          // Number of ships sunk by player
-    private int[] shipsLeft;        // Numbers of ships left to place, by length
-
     /**
-     * Constructor, initialize variables before new game
+     * Return the battlefield to the state right after construction: no ships and no shots.
+     * Ships placed by this object are kept for reuse, so once the fleet has been placed once,
+     * resetting and placing it again does not allocate anything (for dense storage)
      */
-    public Ocean() {
-        ships = new Ship[OCEAN_SIZE][OCEAN_SIZE];
-        shotAt = new boolean[OCEAN_SIZE][OCEAN_SIZE];
-        for (int i = 0; i < OCEAN_SIZE; ++i) {
-            for (int j = 0; j < OCEAN_SIZE; ++j) {
-                ships[i][j] = new EmptySea();
-                shotAt[i][j] = false;
+    public void reset() {
+        if (ships != null) {
+            for (int i = 0; i < OCEAN_SIZE; ++i) {
+                Arrays.fill(ships[i], EmptySea.INSTANCE);
+                Arrays.fill(shotAt[i], false);
             }
         }
+        else {
+            shipCells.clear();
+            shotCells.clear();
+        }
+        occupiedLo = 0;
+        occupiedHi = 0;
+        for (Ship ship : placedShips)
+            releaseShip(ship);
+        placedShips.clear();
+        nextShipId = 0;
         shipsSunk = 0;
-        rnd = new Random();
-        shipsLeft = new int[]{4, 3, 2, 1};
+        for (int i = 0; i < shipsLeft.length; ++i)
+            shipsLeft[i] = rules.getShipCount(i + 1);
+    }
+
+    /**
+     * Get a ship of given length, reusing a pooled one if there is any
+     * @param length length of the ship
+     * @return ship that is not placed anywhere, with no hits
+     */
+    private Ship obtainShip(int length) {
+        Ship ship = length <= pool.size() ? pool.get(length - 1).poll() : null;
+        if (ship == null)
+            return Ship.create(length);
+        ship.reset();
+        return ship;
+    }
+
+    /**
+     * Put the ship into the pool for reuse
+     * @param ship ship that is no longer on the battlefield
+     */
+    private void releaseShip(Ship ship) {
+        if (ship.getLength() <= pool.size())
+            pool.get(ship.getLength() - 1).push(ship);
+    }
+
+    /**
+     * Place the ship and remember it, so it is pooled on reset
+     */
+    private void placeShip(Ship ship, int row, int column, boolean horizontal) {
+        ship.setId(nextShipId++);
+        ship.placeShipAt(row, column, horizontal, this);
+        placedShips.add(ship);
+    }
+
+    /**
+     * Get rules the battlefield was created with
+     * @return game rules
+     */
+    public GameRules getRules() {
+        return rules;
     }
 
+    /**
+     * Remove the ship from the battlefield. The ship goes back to the pool, so the caller
+     * should only read it right away and not keep the reference
+     * @param row row of any cell of the ship
+     * @param column column of any cell of the ship
+     * @return removed ship
+     */
     public Ship removeShipFrom(int row, int column) {
-        Ship toRemove = ships[row][column];
+        Ship toRemove = getShipAt(row, column);
         toRemove.removeShip(this);
         ++shipsLeft[toRemove.getLength() - 1];
+        if (placedShips.remove(toRemove))
+            releaseShip(toRemove);
         return toRemove;
     }
 
     public boolean tryPlaceShipAt(int row, int column, boolean isHorizontal, int size) {
-        Ship toPlace = null;
-        switch (size) {
-            case 1:
-                toPlace = new Submarine();
-                break;
-
-            case 2:
-                toPlace = new Destroyer();
-                break;
-
-            case 3:
-                toPlace = new Cruiser();
-                break;
-
-            case 4:
-                toPlace = new Battleship();
-        }
-        if (shipsLeft[size - 1] > 0 && toPlace.okToPlaceShipAt(row, column, isHorizontal, this)) {
-            toPlace.placeShipAt(row, column, isHorizontal, this);
-            --shipsLeft[size - 1];
+        if (size >= 1 && size <= shipsLeft.length && shipsLeft[size - 1] > 0) {
+            Ship toPlace = obtainShip(size);
+            if (toPlace.okToPlaceShipAt(row, column, isHorizontal, this)) {
+                placeShip(toPlace, row, column, isHorizontal);
+                --shipsLeft[size - 1];
+            }
+            else
+                releaseShip(toPlace);
         }
         for (int val : shipsLeft) {
             if (val != 0)
@@ -107,42 +193,132 @@ public class Ocean {
         return true;
     }
 
+    /**
+     * Get the ship at the given cell
+     * @param row       cell's row
+     * @param column    cell's column
+     * @return ship at the cell, or EmptySea if there is no ship
+     */
+    public Ship getShipAt(int row, int column) {
+        if (ships != null)
+            return ships[row][column];
+        Ship ship = shipCells.get(row * OCEAN_SIZE + column);
+        return ship == null ? EmptySea.INSTANCE : ship;
+    }
+
+    /**
+     * Put the ship to the given cell
+     * @param row       cell's row
+     * @param column    cell's column
+     * @param ship      ship to put
+     */
+    void setShipAt(int row, int column, Ship ship) {
+        if (ships != null)
+            ships[row][column] = ship;
+        else
+            shipCells.put(row * OCEAN_SIZE + column, ship);
+        if (masks != null) {
+            int cell = row * OCEAN_SIZE + column;
+            if (cell < Long.SIZE)
+                occupiedLo |= 1L << cell;
+            else
+                occupiedHi |= 1L << (cell - Long.SIZE);
+        }
+    }
+
+    /**
+     * Remove any ship from the given cell
+     * @param row       cell's row
+     * @param column    cell's column
+     */
+    void clearShipAt(int row, int column) {
+        if (ships != null)
+            ships[row][column] = EmptySea.INSTANCE;
+        else
+            shipCells.remove(row * OCEAN_SIZE + column);
+        if (masks != null) {
+            int cell = row * OCEAN_SIZE + column;
+            if (cell < Long.SIZE)
+                occupiedLo &= ~(1L << cell);
+            else
+                occupiedHi &= ~(1L << (cell - Long.SIZE));
+        }
+    }
+
+    /**
+     * Check a placement against the occupied cells with one lookup of PlacementMasks
+     * @param length length of the ship
+     * @return true, if the ship fits into the battlefield and touches no other ship
+     * @throws IllegalStateException if the battlefield is too large for PlacementMasks, see hasPlacementMasks
+     */
+    boolean isLegalPlacement(int row, int column, boolean horizontal, int length) {
+        if (masks == null)
+            throw new IllegalStateException("Battlefield is too large for placement masks");
+        if (row < 0 || column < 0 || row >= OCEAN_SIZE || column >= OCEAN_SIZE)
+            return false;
+        return masks.isLegal(length, masks.encode(row, column, horizontal), occupiedLo, occupiedHi);
+    }
+
+    /**
+     * Check, whether placements are checked by isLegalPlacement, which needs a battlefield of 128 cells at most
+     * @return true, if the battlefield fits PlacementMasks
+     */
+    boolean hasPlacementMasks() {
+        return masks != null;
+    }
+
     /**
      * Randomly place given ship on the battlefield
      * @param ship ship to place
      */
     private void placeOneShipRandomly(Ship ship) {
-        ArrayList<Position> available = new ArrayList<>();
+        if (masks != null) {
+            if (anchors == null)
+                anchors = new int[masks.getPlacementCount()];
+            int count = masks.legalAnchors(ship.getLength(), occupiedLo, occupiedHi, anchors);
+            if (count == 0)
+                throw new IllegalStateException("There is no room for a ship of length " + ship.getLength());
+            int code = anchors[rnd.nextInt(count)];
+            placeShip(ship, masks.getRow(code), masks.getColumn(code), masks.isHorizontal(code));
+            return;
+        }
+        // Large battlefield: try random positions, so the cost does not depend on its area
+        for (int attempt = 0; attempt < MAX_PLACEMENT_ATTEMPTS; ++attempt) {
+            int row = rnd.nextInt(OCEAN_SIZE), column = rnd.nextInt(OCEAN_SIZE);
+            boolean horizontal = rnd.nextBoolean();
+            if (ship.okToPlaceShipAt(row, column, horizontal, this)) {
+                placeShip(ship, row, column, horizontal);
+                return;
+            }
+        }
+        // The battlefield is crowded, count all legal positions and take a random one
+        int count = 0;
+        for (int i = 0; i < OCEAN_SIZE; ++i)
+            for (int j = 0; j < OCEAN_SIZE; ++j)
+                for (int k = 0; k < 2; ++k)
+                    if (ship.okToPlaceShipAt(i, j, k == 0, this))
+                        ++count;
+        if (count == 0)
+            throw new IllegalStateException("There is no room for a ship of length " + ship.getLength());
+        int randInd = rnd.nextInt(count);
         for (int i = 0; i < OCEAN_SIZE; ++i) {
             for (int j = 0; j < OCEAN_SIZE; ++j) {
-                if (ship.okToPlaceShipAt(i, j, true, this))
-                    available.add(new Position(i, j, true));
-                if (ship.okToPlaceShipAt(i, j, false, this))
-                    available.add(new Position(i, j, false));
+                for (int k = 0; k < 2; ++k) {
+                    if (ship.okToPlaceShipAt(i, j, k == 0, this) && randInd-- == 0) {
+                        placeShip(ship, i, j, k == 0);
+                        return;
+                    }
+                }
             }
         }
-        int randInd = rnd.nextInt(available.size());
-        Position pos = available.get(randInd);
-        ship.placeShipAt(pos.x, pos.y, pos.horizontal, this);
     }
 
     /**
-     * Randomly place all 10 ships on the battlefield
+     * Randomly place all ships of the fleet on the battlefield, longest first
      */
     public void placeAllShipsRandomly() {
-        placeOneShipRandomly(new Battleship());
-
-        placeOneShipRandomly(new Cruiser());
-        placeOneShipRandomly(new Cruiser());
-
-        placeOneShipRandomly(new Destroyer());
-        placeOneShipRandomly(new Destroyer());
-        placeOneShipRandomly(new Destroyer());
-
-        placeOneShipRandomly(new Submarine());
-        placeOneShipRandomly(new Submarine());
-        placeOneShipRandomly(new Submarine());
-        placeOneShipRandomly(new Submarine());
+        for (int length : shipLengths)
+            placeOneShipRandomly(obtainShip(length));
     }
 
     /**
@@ -154,7 +330,7 @@ public class Ocean {
     boolean isOccupied(int row, int column) {
         if (row < 0 || column < 0 || row >= OCEAN_SIZE || column >= OCEAN_SIZE)
             return false;
-        return ships[row][column].getClass() != EmptySea.class;
+        return !(getShipAt(row, column) instanceof EmptySea);
     }
 
     /**
@@ -164,36 +340,86 @@ public class Ocean {
      * @return true, if shot hit any ship, false otherwise
      */
     public boolean shootAt(int row, int column) {
-        Ship ship = ships[row][column];
+        long outcome = shoot(row, column);
+        if (ShotOutcome.getKind(outcome) == ShotOutcome.DUPLICATE) {
+            // Repeated shot at a ship counts as a hit until the ship is sunk
+            Ship ship = getShipAt(row, column);
+            return !(ship instanceof EmptySea) && !ship.isSunk();
+        }
+        return ShotOutcome.isHit(outcome);
+    }
+
+    /**
+     * Make a shot at the given cell and tell the shot listener about its result
+     * @param row       cell's row
+     * @param column    cell's column
+     * @return result of the shot packed by ShotOutcome
+     */
+    public long shoot(int row, int column) {
+        boolean duplicate = hasShotAt(row, column);
+        Ship ship = getShipAt(row, column);
         boolean shot = ship.shootAt(row, column);
-        shotAt[row][column] = true;
-        if (shot && ship.isSunk()) {
-            ++shipsSunk;
+        if (shotAt != null)
+            shotAt[row][column] = true;
+        else
+            shotCells.add(row * OCEAN_SIZE + column);
+        long outcome;
+        if (duplicate)
+            outcome = ShotOutcome.of(ShotOutcome.DUPLICATE, 0, 0, false);
+        else if (!shot)
+            outcome = ShotOutcome.of(ShotOutcome.MISS, 0, 0, false);
+        else {
+            int kind = ShotOutcome.HIT;
+            if (ship.isSunk()) {
+                ++shipsSunk;
+                kind = ShotOutcome.SUNK;
+            }
+            outcome = ShotOutcome.of(kind, ship.getId(), ship.getLength(), ship.isHorizontal());
         }
-        return shot;
+        if (shotListener != null)
+            shotListener.onShot(row, column, outcome);
+        return outcome;
+    }
+
+    /**
+     * Get number of ships of the fleet that have not been sunk yet
+     * @return ships afloat
+     */
+    public int getShipsAfloat() {
+        return FLEET_SIZE - shipsSunk;
+    }
+
+    /**
+     * Set the receiver of results of all following shots
+     * @param listener listener to notify, or null to stop notifying
+     */
+    public void setShotListener(ShotListener listener) {
+        shotListener = listener;
     }
 
     public boolean hasShipAt(int row, int column) {
-        return !(ships[row][column] instanceof EmptySea);
+        return !(getShipAt(row, column) instanceof EmptySea);
     }
 
     public boolean isHorizontalAt(int row, int column) {
-        return ships[row][column].isHorizontal();
+        return getShipAt(row, column).isHorizontal();
     }
 
     /**
      * Check, if the game is over
-     * @return true if player have sunk all 10 ships, false otherwise
+     * @return true if player have sunk all ships of the fleet, false otherwise
      */
     public boolean isGameOver() {
         return shipsSunk == FLEET_SIZE;
     }
 
     /**
-     * Get the array representing the battlefield
+     * Get the array representing the battlefield. Not available for sparse storage, use getShipAt instead
      * @return array representing the battlefield
      */
     public Ship[][] getShipArray() {
+        if (ships == null)
+            throw new IllegalStateException("Sparse battlefield has no ship array");
         return ships;
     }
 
@@ -208,7 +434,7 @@ public class Ocean {
         for (int i = 0; i < OCEAN_SIZE; ++i) {
             System.out.print(i + " ");
             for (int j = 0; j < OCEAN_SIZE; ++j) {
-                System.out.print(ships[i][j] + " ");
+                System.out.print(getShipAt(i, j) + " ");
             }
             System.out.println();
         }
@@ -223,11 +449,12 @@ public class Ocean {
     public CellStatus getCellStatus(int row, int column) {
         if (row < 0 || column < 0 || row >= OCEAN_SIZE || column >= OCEAN_SIZE)
             return CellStatus.Unknown;
-        if (!shotAt[row][column])
+        if (!hasShotAt(row, column))
             return CellStatus.Unknown;
-        if (isOccupied(row, column)) {
-            if (ships[row][column].isSunk())
-                return ships[row][column].isHorizontal() ? CellStatus.DestroyedHor : CellStatus.DestroyedVer;
+        Ship ship = getShipAt(row, column);
+        if (!(ship instanceof EmptySea)) {
+            if (ship.isSunk())
+                return ship.isHorizontal() ? CellStatus.DestroyedHor : CellStatus.DestroyedVer;
             return CellStatus.Damaged;
         }
         return CellStatus.Missed;
@@ -240,14 +467,83 @@ public class Ocean {
      * @return true, if player has shot, false otherwise
      */
     public boolean hasShotAt(int row, int column) {
-        return shotAt[row][column];
+        if (shotAt != null)
+            return shotAt[row][column];
+        return shotCells.contains(row * OCEAN_SIZE + column);
+    }
+
+    /**
+     * Write ships and shots at two bits per cell, four cells per byte in row-major order:
+     * the low bit is set if a ship is at the cell, the high bit if the cell has been shot at.
+     * Ships are told apart by the rule that they do not touch, so placement order and orientation
+     * of one-cell ships are not kept. Takes (OCEAN_SIZE^2 + 3) / 4 bytes
+     * @param out buffer to write to
+     */
+    public void pack(ByteBuffer out) {
+        int bits = 0, count = 0;
+        for (int row = 0; row < OCEAN_SIZE; ++row) {
+            for (int column = 0; column < OCEAN_SIZE; ++column) {
+                int cell = (hasShipAt(row, column) ? 1 : 0) | (hasShotAt(row, column) ? 2 : 0);
+                bits |= cell << (count * 2);
+                if (++count == 4) {
+                    out.put((byte)bits);
+                    bits = 0;
+                    count = 0;
+                }
+            }
+        }
+        if (count > 0)
+            out.put((byte)bits);
+    }
+
+    /**
+     * Place ships and replay shots written by pack. The battlefield must be empty, e.g. right after reset
+     * @param in buffer to read from
+     * @throws IllegalArgumentException if the ships break the rules or are not the whole fleet
+     */
+    public void unpack(ByteBuffer in) {
+        if (!placedShips.isEmpty())
+            throw new IllegalStateException("Battlefield must be empty");
+        boolean[] ship = new boolean[OCEAN_SIZE * OCEAN_SIZE], shot = new boolean[ship.length];
+        int bits = 0;
+        for (int cell = 0; cell < ship.length; ++cell) {
+            if (cell % 4 == 0)
+                bits = in.get();
+            ship[cell] = (bits >> (cell % 4 * 2) & 1) != 0;
+            shot[cell] = (bits >> (cell % 4 * 2) & 2) != 0;
+        }
+        boolean complete = false;
+        for (int row = 0; row < OCEAN_SIZE; ++row) {
+            for (int column = 0; column < OCEAN_SIZE; ++column) {
+                int cell = row * OCEAN_SIZE + column;
+                // Place every ship from its bow, its top or left cell
+                if (!ship[cell] || (row > 0 && ship[cell - OCEAN_SIZE]) || (column > 0 && ship[cell - 1]))
+                    continue;
+                boolean horizontal = row + 1 == OCEAN_SIZE || !ship[cell + OCEAN_SIZE];
+                int length = 1;
+                while (horizontal ? column + length < OCEAN_SIZE && ship[cell + length]
+                        : row + length < OCEAN_SIZE && ship[cell + length * OCEAN_SIZE])
+                    ++length;
+                complete = tryPlaceShipAt(row, column, horizontal, length);
+                if (!hasShipAt(row, column))
+                    throw new IllegalArgumentException("Ship at " + row + ", " + column + " breaks the rules");
+            }
+        }
+        for (int cell = 0; cell < ship.length; ++cell)
+            if (ship[cell] != hasShipAt(cell / OCEAN_SIZE, cell % OCEAN_SIZE))
+                throw new IllegalArgumentException("Ships touch each other");
+        if (!complete)
+            throw new IllegalArgumentException("Fleet is incomplete");
+        for (int cell = 0; cell < shot.length; ++cell)
+            if (shot[cell])
+                shoot(cell / OCEAN_SIZE, cell % OCEAN_SIZE);
     }
 
     /**
-     * Sets seed for Random's instance for testing purposes
+     * Sets seed for Random's instance, so random placement can be reproduced in tests and simulations
      * @param seed seed to set
      */
-    void setRndSeed(long seed) {
+    public void setRndSeed(long seed) {
         rnd.setSeed(seed);
     }
 }
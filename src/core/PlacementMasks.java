@@ -0,0 +1,317 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed bit masks of every possible ship placement on a square battlefield.
+ * Cell (row, column) is bit (row * size + column) of a 128-bit mask stored as two longs,
+ * the same layout BitOcean uses. A placement is encoded as (row * size + column) * 2 + d,
+ * where d is 0 for horizontal and 1 for vertical ships, so codes go in the same order
+ * as Ocean enumerates positions.
+ * For every (length, placement) the table keeps the footprint of the ship and its halo,
+ * i.e. the footprint together with all adjacent cells that no other ship may touch.
+ * Tables are built lazily, once per battlefield size, and are immutable afterwards
+ */
+public final class PlacementMasks {
+    public static final int MAX_SIZE = 11;      // Largest battlefield that fits into 128 bits
+
+    private static final PlacementMasks[] tables = new PlacementMasks[MAX_SIZE + 1];
+
+    private final int size;                 // Size of battlefield along one axis
+    private final int placementCount;       // Number of placement codes, size * size * 2
+    private final long[] footprintLo, footprintHi;  // Cells of the ship, by (length - 1) * placementCount + code
+    private final long[] haloLo, haloHi;            // Cells of the ship and its neighbours, indexed the same way
+    private final int[][] candidates;       // Codes of placements that fit into the battlefield, by length - 1
+    private final long[] anchorLo, anchorHi;        // Bow cells of fitting placements, by (length - 1) * 2 + d
+
+    /**
+     * Get the table for the battlefield of given size, building it on first use
+     * @param size size of battlefield along one axis
+     * @return placement table
+     */
+    public static PlacementMasks forSize(int size) {
+        if (size < 1 || size > MAX_SIZE)
+            throw new IllegalArgumentException("Battlefield size must be from 1 to " + MAX_SIZE);
+        PlacementMasks table = tables[size];
+        if (table == null) {
+            synchronized (tables) {
+                table = tables[size];
+                if (table == null)
+                    tables[size] = table = new PlacementMasks(size);
+            }
+        }
+        return table;
+    }
+
+    private PlacementMasks(int size) {
+        this.size = size;
+        placementCount = size * size * 2;
+        footprintLo = new long[size * placementCount];
+        footprintHi = new long[size * placementCount];
+        haloLo = new long[size * placementCount];
+        haloHi = new long[size * placementCount];
+        candidates = new int[size][];
+        anchorLo = new long[size * 2];
+        anchorHi = new long[size * 2];
+        int[] buffer = new int[placementCount];
+        for (int length = 1; length <= size; ++length) {
+            int count = 0;
+            for (int code = 0; code < placementCount; ++code) {
+                int row = getRow(code), column = getColumn(code);
+                boolean horizontal = isHorizontal(code);
+                int bottom = horizontal ? row : row + length - 1,
+                        right = horizontal ? column + length - 1 : column;
+                if (bottom >= size || right >= size)
+                    continue;
+                int index = (length - 1) * placementCount + code;
+                footprintLo[index] = rectMask(row, column, bottom, right, 0);
+                footprintHi[index] = rectMask(row, column, bottom, right, 1);
+                haloLo[index] = rectMask(row - 1, column - 1, bottom + 1, right + 1, 0);
+                haloHi[index] = rectMask(row - 1, column - 1, bottom + 1, right + 1, 1);
+                buffer[count++] = code;
+                int anchor = (length - 1) * 2 + (code & 1), cell = code >> 1;
+                if (cell < Long.SIZE)
+                    anchorLo[anchor] |= 1L << cell;
+                else
+                    anchorHi[anchor] |= 1L << (cell - Long.SIZE);
+            }
+            candidates[length - 1] = Arrays.copyOf(buffer, count);
+        }
+    }
+
+    /**
+     * Get one word of the mask covering the given rectangle of cells, clipped to the battlefield
+     * @param top       top row of the rectangle
+     * @param left      left column of the rectangle
+     * @param bottom    bottom row of the rectangle, inclusive
+     * @param right     right column of the rectangle, inclusive
+     * @param word      0 for the low word, 1 for the high word
+     * @return requested word of the mask
+     */
+    private long rectMask(int top, int left, int bottom, int right, int word) {
+        long mask = 0;
+        for (int i = Math.max(top, 0); i <= Math.min(bottom, size - 1); ++i) {
+            for (int j = Math.max(left, 0); j <= Math.min(right, size - 1); ++j) {
+                int bit = i * size + j - word * Long.SIZE;
+                if (bit >= 0 && bit < Long.SIZE)
+                    mask |= 1L << bit;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Get size of the battlefield along one axis
+     * @return battlefield size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get number of placement codes, including the ones that do not fit into the battlefield
+     * @return number of placement codes
+     */
+    public int getPlacementCount() {
+        return placementCount;
+    }
+
+    /**
+     * Encode the position of a ship's bow
+     * @param row row of ship's bow
+     * @param column column of ship's bow
+     * @param horizontal true, if ship is aligned horizontally, false otherwise
+     * @return placement code
+     */
+    public int encode(int row, int column, boolean horizontal) {
+        return (row * size + column) * 2 + (horizontal ? 0 : 1);
+    }
+
+    /**
+     * Get row of ship's bow from the placement code
+     * @param code placement code
+     * @return row of ship's bow
+     */
+    public int getRow(int code) {
+        return (code >> 1) / size;
+    }
+
+    /**
+     * Get column of ship's bow from the placement code
+     * @param code placement code
+     * @return column of ship's bow
+     */
+    public int getColumn(int code) {
+        return (code >> 1) % size;
+    }
+
+    /**
+     * Get alignment of the ship from the placement code
+     * @param code placement code
+     * @return true, if ship is aligned horizontally, false otherwise
+     */
+    public boolean isHorizontal(int code) {
+        return (code & 1) == 0;
+    }
+
+    /**
+     * Check, if the ship of given length placed by the code lies within the battlefield
+     * @param length length of the ship
+     * @param code placement code
+     * @return true, if the whole ship is inside the battlefield, false otherwise
+     */
+    public boolean fits(int length, int code) {
+        if (length < 1 || length > size || code < 0 || code >= placementCount)
+            return false;
+        int index = (length - 1) * placementCount + code;
+        return (footprintLo[index] | footprintHi[index]) != 0;
+    }
+
+    /**
+     * Get number of placements of the ship that fit into the battlefield
+     * @param length length of the ship
+     * @return number of placements
+     */
+    public int getCandidateCount(int length) {
+        return candidates[length - 1].length;
+    }
+
+    /**
+     * Get code of a placement of the ship that fits into the battlefield
+     * @param length length of the ship
+     * @param index index of the placement, from 0 to getCandidateCount(length) exclusive
+     * @return placement code, codes go in increasing order
+     */
+    public int getCandidate(int length, int index) {
+        return candidates[length - 1][index];
+    }
+
+    public long getFootprintLo(int length, int code) {
+        return footprintLo[(length - 1) * placementCount + code];
+    }
+
+    public long getFootprintHi(int length, int code) {
+        return footprintHi[(length - 1) * placementCount + code];
+    }
+
+    public long getHaloLo(int length, int code) {
+        return haloLo[(length - 1) * placementCount + code];
+    }
+
+    public long getHaloHi(int length, int code) {
+        return haloHi[(length - 1) * placementCount + code];
+    }
+
+    /**
+     * Check, if the ship fits into the battlefield and does not touch any occupied cell
+     * @param length length of the ship
+     * @param code placement code
+     * @param occupiedLo low word of the mask of occupied cells
+     * @param occupiedHi high word of the mask of occupied cells
+     * @return true, if ship can be placed according to the rules, false otherwise
+     */
+    public boolean isLegal(int length, int code, long occupiedLo, long occupiedHi) {
+        if (!fits(length, code))
+            return false;
+        int index = (length - 1) * placementCount + code;
+        return (haloLo[index] & occupiedLo) == 0 && (haloHi[index] & occupiedHi) == 0;
+    }
+
+    /**
+     * Find all legal placements of the ship in one pass
+     * @param length length of the ship
+     * @param occupiedLo low word of the mask of occupied cells
+     * @param occupiedHi high word of the mask of occupied cells
+     * @param out array to store codes of legal placements to, at least getPlacementCount() long
+     * @return number of codes stored, in increasing order
+     */
+    public int legalAnchors(int length, long occupiedLo, long occupiedHi, int[] out) {
+        int[] codes = candidates[length - 1];
+        int offset = (length - 1) * placementCount;
+        int count = 0;
+        for (int code : codes) {
+            if ((haloLo[offset + code] & occupiedLo) == 0 && (haloHi[offset + code] & occupiedHi) == 0)
+                out[count++] = code;
+        }
+        return count;
+    }
+
+    /**
+     * Find all legal placements of the ship as masks of their bow cells. Unlike legalAnchors,
+     * takes the union of halos of the placed ships (cells no new ship may cover) and does not
+     * look at every placement, which makes it much cheaper when only a count or one random
+     * placement is needed
+     * @param length length of the ship
+     * @param forbiddenLo low word of the union of halos of the placed ships
+     * @param forbiddenHi high word of the union of halos of the placed ships
+     * @param out array of 4 words to store masks to: horizontal low and high words, then vertical ones
+     * @return total number of legal placements
+     */
+    public int legalAnchorMasks(int length, long forbiddenLo, long forbiddenHi, long[] out) {
+        long freeLo = ~forbiddenLo, freeHi = ~forbiddenHi;
+        long horLo = anchorLo[(length - 1) * 2], horHi = anchorHi[(length - 1) * 2],
+                verLo = anchorLo[(length - 1) * 2 + 1], verHi = anchorHi[(length - 1) * 2 + 1];
+        // A bow cell is legal if it and the next length - 1 cells towards the stern are free
+        for (int i = 0; i < length; ++i) {
+            horLo &= shiftRightLo(freeLo, freeHi, i);
+            horHi &= freeHi >>> i;
+            verLo &= shiftRightLo(freeLo, freeHi, i * size);
+            verHi &= i * size < Long.SIZE ? freeHi >>> (i * size) : 0;
+        }
+        out[0] = horLo;
+        out[1] = horHi;
+        out[2] = verLo;
+        out[3] = verHi;
+        return Long.bitCount(horLo) + Long.bitCount(horHi) + Long.bitCount(verLo) + Long.bitCount(verHi);
+    }
+
+    /**
+     * Get the low word of the 128-bit mask shifted right
+     * @param lo low word of the mask
+     * @param hi high word of the mask
+     * @param shift number of bits to shift by, from 0 to 127
+     * @return low word of the shifted mask
+     */
+    private static long shiftRightLo(long lo, long hi, int shift) {
+        if (shift == 0)
+            return lo;
+        if (shift < Long.SIZE)
+            return lo >>> shift | hi << (Long.SIZE - shift);
+        return hi >>> (shift - Long.SIZE);
+    }
+
+    /**
+     * Get placement code of the n-th legal placement from the masks made by legalAnchorMasks
+     * @param masks masks of bow cells of legal placements
+     * @param n index of the placement, from 0 to their total number exclusive
+     * @return placement code
+     */
+    public static int selectAnchor(long[] masks, int n) {
+        for (int i = 0; i < 4; ++i) {
+            int count = Long.bitCount(masks[i]);
+            if (n < count)
+                return (selectBit(masks[i], n) + (i & 1) * Long.SIZE) * 2 + (i >> 1);
+            n -= count;
+        }
+        throw new IllegalArgumentException("There are less than n legal placements");
+    }
+
+    /**
+     * Get position of the n-th set bit of the word
+     * @param word word to look through
+     * @param n index of the set bit, less than number of set bits in the word
+     * @return position of the bit
+     */
+    private static int selectBit(long word, int n) {
+        int position = 0;
+        for (int width = Long.SIZE / 2; width > 0; width >>= 1) {
+            int count = Long.bitCount(word & ((1L << width) - 1));
+            if (n >= count) {
+                n -= count;
+                word >>>= width;
+                position += width;
+            }
+        }
+        return position;
+    }
+}
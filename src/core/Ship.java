@@ -1,13 +1,43 @@
 package core;
 
+import java.util.Arrays;
+
 public abstract class Ship {
-    final int MAX_SHIP_LENGTH = 4;                              // Maximum length of a ship
+    final int MAX_SHIP_LENGTH = 4;                              // Maximum length of a classic ship, see Carrier
 
     private int bowRow, bowColumn;                              // Row and column of ship's bow
     protected int length;                                       // Length of ship
     private boolean horizontal;                                 // true, if ship is aligned horizontally, false, if vertically
     protected boolean[] hit = new boolean[MAX_SHIP_LENGTH];     // Represents cells of the ship that were hit by player
     protected boolean damaged = false;                          // true, if ship was shot at, false otherwise
+    private int hitCount;                                       // Number of distinct cells that were hit
+    private int id;                                             // Number of the ship in order of placement
+
+    /**
+     * Create a ship of given length
+     * @param length length of the ship, at least 1
+     * @return new ship of the type matching the length
+     */
+    static Ship create(int length) {
+        switch (length) {
+            case 1:
+                return new Submarine();
+
+            case 2:
+                return new Destroyer();
+
+            case 3:
+                return new Cruiser();
+
+            case 4:
+                return new Battleship();
+
+            default:
+                if (length < 1)
+                    throw new IllegalArgumentException("Ship length must be positive");
+                return new Carrier(length);
+        }
+    }
 
     /**
      * Get the length of ship
@@ -72,14 +102,13 @@ public abstract class Ship {
     public abstract String getShipType();
 
     void removeShip(Ocean ocean) {
-        Ship[][] ships = ocean.getShipArray();
         if (horizontal) {
             for (int i = 0; i < length; ++i)
-                ships[bowRow][bowColumn + i] = new EmptySea();
+                ocean.clearShipAt(bowRow, bowColumn + i);
         }
         else {
             for (int i = 0; i < length; ++i)
-                ships[bowRow + i][bowColumn] = new EmptySea();
+                ocean.clearShipAt(bowRow + i, bowColumn);
         }
     }
 
@@ -92,6 +121,9 @@ public abstract class Ship {
      * @return true, if ship can be placed according to the rules, false otherwise
      */
     boolean okToPlaceShipAt(int row, int column, boolean horizontal, Ocean ocean) {
+        if (ocean.hasPlacementMasks())
+            return ocean.isLegalPlacement(row, column, horizontal, length);
+        // Large battlefield: look at the cells of the ship and around it
         if (horizontal) {
             if (column + length > ocean.OCEAN_SIZE)
                 return false;
@@ -125,14 +157,13 @@ public abstract class Ship {
         bowRow = row;
         bowColumn = column;
         this.horizontal = horizontal;
-        Ship[][] ships = ocean.getShipArray();
         if (horizontal) {
             for (int i = 0; i < length; ++i)
-                ships[row][column + i] = this;
+                ocean.setShipAt(row, column + i, this);
         }
         else {
             for (int i = 0; i < length; ++i)
-                ships[row + i][column] = this;
+                ocean.setShipAt(row + i, column, this);
         }
     }
 
@@ -151,16 +182,28 @@ public abstract class Ship {
             int dist = column - bowColumn;
             if (dist >= length || dist < 0)
                 return false;
-            damaged = true;
-            return hit[dist] = true;
+            return markHit(dist);
         }
         if (column != bowColumn)
             return false;
         int dist = row - bowRow;
-        if (dist > length || dist < 0)
+        if (dist >= length || dist < 0)
             return false;
+        return markHit(dist);
+    }
+
+    /**
+     * Mark the cell of the ship as hit
+     * @param dist distance from the bow to the cell
+     * @return always true
+     */
+    private boolean markHit(int dist) {
         damaged = true;
-        return hit[dist] = true;
+        if (!hit[dist]) {
+            hit[dist] = true;
+            ++hitCount;
+        }
+        return true;
     }
 
     /**
@@ -168,10 +211,32 @@ public abstract class Ship {
      * @return true, if ship has been sunk, false otherwise
      */
     public boolean isSunk() {
-        for (int i = 0; i < length; i++)
-            if (!hit[i])
-                return false;
-        return true;
+        return hitCount == length;
+    }
+
+    /**
+     * Clear all hits, so the ship can be placed again in a new game
+     */
+    void reset() {
+        Arrays.fill(hit, false);
+        hitCount = 0;
+        damaged = false;
+    }
+
+    /**
+     * Get number of the ship, unique within the battlefield
+     * @return ship's number in order of placement
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Set number of the ship
+     * @param id new value of ship's number
+     */
+    void setId(int id) {
+        this.id = id;
     }
 
     /**
@@ -0,0 +1,151 @@
+package core;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * What a player knows about the partner's battlefield: results of own shots.
+ * When a ship is destroyed, its damaged cells are marked destroyed as well
+ */
+public class ShotBoard {
+    private final int size;                     // Size of battlefield along one axis
+    private final Ocean.CellStatus[][] cells;   // Results of shots, Unknown where player hasn't shot
+    private int shots;                          // Number of shots recorded
+    private int shipsDestroyed;                 // Number of partner's ships destroyed
+
+    /**
+     * Create board with all cells unknown
+     * @param size size of battlefield along one axis
+     */
+    public ShotBoard(int size) {
+        this.size = size;
+        cells = new Ocean.CellStatus[size][size];
+        reset();
+    }
+
+    /**
+     * Mark all cells unknown again
+     */
+    public void reset() {
+        for (int i = 0; i < size; ++i)
+            Arrays.fill(cells[i], Ocean.CellStatus.Unknown);
+        shots = 0;
+        shipsDestroyed = 0;
+    }
+
+    /**
+     * Get size of the battlefield along one axis
+     * @return battlefield size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get results of shots. The array is owned by the board and must not be changed
+     * @return array of results, by row and column
+     */
+    public Ocean.CellStatus[][] getCells() {
+        return cells;
+    }
+
+    /**
+     * Get result of the shot at the cell
+     * @param row cell's row
+     * @param column cell's column
+     * @return result of the shot, Unknown if player hasn't shot there
+     */
+    public Ocean.CellStatus getStatus(int row, int column) {
+        return cells[row][column];
+    }
+
+    /**
+     * Get number of shots recorded, including duplicates
+     * @return number of shots
+     */
+    public int getShots() {
+        return shots;
+    }
+
+    /**
+     * Get number of partner's ships destroyed
+     * @return number of destroyed ships
+     */
+    public int getShipsDestroyed() {
+        return shipsDestroyed;
+    }
+
+    /**
+     * Record the result of a shot. Duplicate shots do not change the cell
+     * @param row row of the shot
+     * @param column column of the shot
+     * @param result result reported by the partner
+     * @return true, if the shot destroyed a ship, false otherwise
+     */
+    public boolean record(int row, int column, Ocean.CellStatus result) {
+        ++shots;
+        if (result == Ocean.CellStatus.Duplicate)
+            return false;
+        cells[row][column] = result;
+        if (!result.isDestroyed())
+            return false;
+        if (result == Ocean.CellStatus.DestroyedVer) {
+            for (int i = row - 1; i >= 0 && cells[i][column] == Ocean.CellStatus.Damaged; --i)
+                cells[i][column] = Ocean.CellStatus.DestroyedVer;
+            for (int i = row + 1; i < size && cells[i][column] == Ocean.CellStatus.Damaged; ++i)
+                cells[i][column] = Ocean.CellStatus.DestroyedVer;
+        }
+        else {
+            for (int i = column - 1; i >= 0 && cells[row][i] == Ocean.CellStatus.Damaged; --i)
+                cells[row][i] = Ocean.CellStatus.DestroyedHor;
+            for (int i = column + 1; i < size && cells[row][i] == Ocean.CellStatus.Damaged; ++i)
+                cells[row][i] = Ocean.CellStatus.DestroyedHor;
+        }
+        ++shipsDestroyed;
+        return true;
+    }
+
+    /**
+     * Write results of shots at four bits per cell, two cells per byte in row-major order,
+     * the low half first. Takes (size^2 + 1) / 2 bytes; the number of shots is not written
+     * @param out buffer to write to
+     */
+    public void pack(ByteBuffer out) {
+        int cells = size * size;
+        for (int cell = 0; cell < cells; cell += 2) {
+            int low = this.cells[cell / size][cell % size].getValue(),
+                    high = cell + 1 < cells ? this.cells[(cell + 1) / size][(cell + 1) % size].getValue() : 0;
+            out.put((byte)(low | high << 4));
+        }
+    }
+
+    /**
+     * Read results written by pack, replacing everything the board knows
+     * @param in buffer to read from
+     * @param shots number of shots recorded, see getShots
+     * @throws IllegalArgumentException if a cell holds no valid result
+     */
+    public void unpack(ByteBuffer in, int shots) {
+        Ocean.CellStatus[] statuses = Ocean.CellStatus.values();
+        int cells = size * size, bits = 0;
+        for (int cell = 0; cell < cells; ++cell) {
+            if (cell % 2 == 0)
+                bits = in.get() & 0xFF;
+            int value = cell % 2 == 0 ? bits & 0x0F : bits >> 4;
+            if (value >= statuses.length)
+                throw new IllegalArgumentException("Unknown shot result " + value);
+            this.cells[cell / size][cell % size] = statuses[value];
+        }
+        this.shots = shots;
+        // Count destroyed ships by their bows, the top or left cells
+        shipsDestroyed = 0;
+        for (int row = 0; row < size; ++row) {
+            for (int column = 0; column < size; ++column) {
+                Ocean.CellStatus status = this.cells[row][column];
+                if (status == Ocean.CellStatus.DestroyedHor && (column == 0 || this.cells[row][column - 1] != status) ||
+                        status == Ocean.CellStatus.DestroyedVer && (row == 0 || this.cells[row - 1][column] != status))
+                    ++shipsDestroyed;
+            }
+        }
+    }
+}
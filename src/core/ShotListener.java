@@ -0,0 +1,14 @@
+package core;
+
+/**
+ * Receiver of results of shots made at an Ocean
+ */
+public interface ShotListener {
+    /**
+     * Called after every shot
+     * @param row row of the shot
+     * @param column column of the shot
+     * @param outcome result of the shot packed by ShotOutcome
+     */
+    void onShot(int row, int column, long outcome);
+}
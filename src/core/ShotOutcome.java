@@ -0,0 +1,116 @@
+package core;
+
+/**
+ * Result of a shot packed into a long, so it can be returned and passed around without allocation.
+ * Bits 0-1 hold the kind of the result, bit 2 is set for horizontal ships, bits 3-18 hold the length
+ * of the ship and bits 32-63 hold its number (see Ship.getId). Misses and duplicate shots carry no ship
+ */
+public final class ShotOutcome {
+    public static final int MISS = 0;           // The shot missed
+    public static final int HIT = 1;            // The shot damaged a ship
+    public static final int SUNK = 2;           // The shot destroyed a ship
+    public static final int DUPLICATE = 3;      // The cell has already been shot at
+
+    private ShotOutcome() {
+    }
+
+    /**
+     * Pack the result of a shot
+     * @param kind one of MISS, HIT, SUNK, DUPLICATE
+     * @param shipId number of the ship that was shot
+     * @param length length of the ship, less than 65536
+     * @param horizontal true, if ship is aligned horizontally, false otherwise
+     * @return packed result
+     */
+    public static long of(int kind, int shipId, int length, boolean horizontal) {
+        return (long)shipId << 32 | (long)length << 3 | (horizontal ? 4 : 0) | kind;
+    }
+
+    /**
+     * Get kind of the result
+     * @param outcome packed result
+     * @return one of MISS, HIT, SUNK, DUPLICATE
+     */
+    public static int getKind(long outcome) {
+        return (int)(outcome & 3);
+    }
+
+    /**
+     * Check, if the shot damaged or destroyed a ship
+     * @param outcome packed result
+     * @return true for HIT and SUNK, false otherwise
+     */
+    public static boolean isHit(long outcome) {
+        int kind = getKind(outcome);
+        return kind == HIT || kind == SUNK;
+    }
+
+    /**
+     * Get number of the ship that was shot
+     * @param outcome packed result of HIT or SUNK kind
+     * @return ship's number
+     */
+    public static int getShipId(long outcome) {
+        return (int)(outcome >>> 32);
+    }
+
+    /**
+     * Get length of the ship that was shot
+     * @param outcome packed result of HIT or SUNK kind
+     * @return ship's length
+     */
+    public static int getLength(long outcome) {
+        return (int)(outcome >>> 3) & 0xFFFF;
+    }
+
+    /**
+     * Check, if the ship that was shot is aligned horizontally
+     * @param outcome packed result of HIT or SUNK kind
+     * @return true, if ship is horizontal, false otherwise
+     */
+    public static boolean isHorizontal(long outcome) {
+        return (outcome & 4) != 0;
+    }
+
+    /**
+     * Get status the shot cell has from the shooter's point of view
+     * @param outcome packed result
+     * @return status of the cell
+     */
+    public static Ocean.CellStatus toCellStatus(long outcome) {
+        switch (getKind(outcome)) {
+            case MISS:
+                return Ocean.CellStatus.Missed;
+
+            case HIT:
+                return Ocean.CellStatus.Damaged;
+
+            case SUNK:
+                return isHorizontal(outcome) ? Ocean.CellStatus.DestroyedHor : Ocean.CellStatus.DestroyedVer;
+
+            default:
+                return Ocean.CellStatus.Duplicate;
+        }
+    }
+
+    /**
+     * Get the result as text for logs
+     * @param outcome packed result
+     * @return "missed", "ship damaged", "ship destroyed" or "duplicate shot"
+     */
+    public static String toString(long outcome) {
+        switch (getKind(outcome)) {
+            case MISS:
+                return "missed";
+
+            case HIT:
+                return "ship damaged";
+
+            case SUNK:
+                return "ship destroyed";
+
+            default:
+                return "duplicate shot";
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package core.sim;
+
+import core.GameRules;
+import core.Ocean;
+import core.PlacementMasks;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Monte Carlo estimate of where the partner's ships are. Samples random fleet layouts that agree
+ * with the results of shots, i.e. cover no missed cells, cover all damaged cells, keep destroyed ships
+ * where they were found and leave no other ship fully damaged, and counts how often each cell is covered by ships afloat.
+ * Layouts are built ship by ship with the masks of PlacementMasks and rejected if they do not explain
+ * damaged cells. Sampling is split into chunks with their own seeds run on a fork/join pool,
+ * so the result depends only on the seed, not on the number of threads
+ */
+public class FleetSampler {
+    private static final int CHUNK_SIZE = 256;  // Layouts sampled by one task without splitting
+    private static final int MAX_ATTEMPTS = 64; // Attempts per requested layout before the chunk gives up
+
+    private final PlacementMasks masks;         // Placement table of the battlefield
+    private final GameRules rules;
+    private final ForkJoinPool pool;
+
+    /**
+     * Create sampler that uses the common fork/join pool
+     * @param rules game rules, battlefield must not be larger than PlacementMasks.MAX_SIZE
+     */
+    public FleetSampler(GameRules rules) {
+        this(rules, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create sampler
+     * @param rules game rules, battlefield must not be larger than PlacementMasks.MAX_SIZE
+     * @param pool pool to sample on
+     */
+    public FleetSampler(GameRules rules, ForkJoinPool pool) {
+        if (rules.getSize() > PlacementMasks.MAX_SIZE)
+            throw new IllegalArgumentException("Battlefield must not be larger than " + PlacementMasks.MAX_SIZE);
+        this.rules = rules;
+        this.masks = PlacementMasks.forSize(rules.getSize());
+        this.pool = pool;
+    }
+
+    /**
+     * Sample layouts that agree with the results of shots
+     * @param shotResults results of shots, by row and column
+     * @param layouts number of layouts to sample
+     * @param seed seed of random generators
+     * @return heat map of sampled layouts; it is built from fewer layouts if they are hard to find,
+     *         and from none if the results cannot be explained by the fleet
+     */
+    public Heatmap sample(Ocean.CellStatus[][] shotResults, int layouts, long seed) {
+        int size = rules.getSize();
+        Observation observation = observe(shotResults);
+        if (observation == null || layouts <= 0)
+            return new Heatmap(size, new int[size * size], 0);
+        int chunks = (layouts + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        int[] counts = pool.invoke(new Chunk(observation, 0, chunks, layouts, seed));
+        return new Heatmap(size, counts, counts[size * size]);
+    }
+
+    /**
+     * Collect masks of what is known and ships that are still afloat
+     * @return observation, or null if destroyed ships do not match the fleet
+     */
+    private Observation observe(Ocean.CellStatus[][] shotResults) {
+        int size = rules.getSize();
+        int[] remaining = rules.getShipCounts();
+        long forbiddenLo = 0, forbiddenHi = 0, damagedLo = 0, damagedHi = 0;
+        for (int row = 0; row < size; ++row) {
+            for (int column = 0; column < size; ++column) {
+                Ocean.CellStatus status = shotResults[row][column];
+                int cell = row * size + column;
+                long bitLo = cell < Long.SIZE ? 1L << cell : 0,
+                        bitHi = cell < Long.SIZE ? 0 : 1L << (cell - Long.SIZE);
+                if (status == Ocean.CellStatus.Damaged) {
+                    damagedLo |= bitLo;
+                    damagedHi |= bitHi;
+                }
+                else if (status == Ocean.CellStatus.Missed) {
+                    forbiddenLo |= bitLo;
+                    forbiddenHi |= bitHi;
+                }
+                else if (status.isDestroyed()) {
+                    boolean horizontal = status == Ocean.CellStatus.DestroyedHor;
+                    int dRow = horizontal ? 0 : 1, dColumn = 1 - dRow;
+                    // Count the ship at its bow only, i.e. at its top or left cell
+                    if (row - dRow >= 0 && column - dColumn >= 0 && shotResults[row - dRow][column - dColumn] == status)
+                        continue;
+                    int length = 1;
+                    while (row + length * dRow < size && column + length * dColumn < size &&
+                            shotResults[row + length * dRow][column + length * dColumn] == status)
+                        ++length;
+                    if (length > remaining.length || remaining[length - 1] == 0)
+                        return null;
+                    --remaining[length - 1];
+                    // Destroyed ship stays where it is, and other ships must not touch it
+                    int code = masks.encode(row, column, horizontal);
+                    forbiddenLo |= masks.getHaloLo(length, code);
+                    forbiddenHi |= masks.getHaloHi(length, code);
+                }
+            }
+        }
+        int afloat = 0;
+        for (int count : remaining)
+            afloat += count;
+        int[] fleet = new int[afloat];
+        int index = 0;
+        for (int length = remaining.length; length >= 1; --length)
+            for (int i = 0; i < remaining[length - 1]; ++i)
+                fleet[index++] = length;
+        if (fleet.length == 0 && (damagedLo | damagedHi) != 0)
+            return null;
+        return new Observation(fleet, forbiddenLo, forbiddenHi, damagedLo, damagedHi);
+    }
+
+    /**
+     * Masks of what is known, shared by all tasks of one call
+     */
+    private static final class Observation {
+        final int[] fleet;                      // Lengths of ships afloat, longest first
+        final long forbiddenLo, forbiddenHi;    // Cells ships afloat must not cover
+        final long damagedLo, damagedHi;        // Cells ships afloat must cover
+
+        Observation(int[] fleet, long forbiddenLo, long forbiddenHi, long damagedLo, long damagedHi) {
+            this.fleet = fleet;
+            this.forbiddenLo = forbiddenLo;
+            this.forbiddenHi = forbiddenHi;
+            this.damagedLo = damagedLo;
+            this.damagedHi = damagedHi;
+        }
+    }
+
+    /**
+     * Task sampling a range of chunks, splitting itself while the range is large.
+     * Returns counts of layouts by cell index, followed by the number of layouts
+     */
+    private class Chunk extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final Observation observation;
+        private final int from, to;             // Numbers of chunks to sample, to is exclusive
+        private final int layouts;              // Layouts requested from all chunks
+        private final long seed;                // Master seed
+        private final long[] anchors = new long[4];     // Buffer for masks of legal placements of one ship
+        private long state;                     // State of the random generator
+
+        Chunk(Observation observation, int from, int to, int layouts, long seed) {
+            this.observation = observation;
+            this.from = from;
+            this.to = to;
+            this.layouts = layouts;
+            this.seed = seed;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                Chunk left = new Chunk(observation, from, middle, layouts, seed);
+                left.fork();
+                int[] counts = new Chunk(observation, middle, to, layouts, seed).compute();
+                int[] other = left.join();
+                for (int i = 0; i < counts.length; ++i)
+                    counts[i] += other[i];
+                return counts;
+            }
+            int area = masks.getSize() * masks.getSize();
+            int[] counts = new int[area + 1];
+            state = GameSimulator.mix(seed, from);
+            int quota = Math.min(CHUNK_SIZE, layouts - from * CHUNK_SIZE);
+            for (int attempt = 0; attempt < quota * MAX_ATTEMPTS && counts[area] < quota; ++attempt)
+                sampleLayout(counts);
+            return counts;
+        }
+
+        /**
+         * Try to build one layout and add it to counts
+         */
+        private void sampleLayout(int[] counts) {
+            long forbiddenLo = observation.forbiddenLo, forbiddenHi = observation.forbiddenHi;
+            long occupiedLo = 0, occupiedHi = 0;
+            for (int length : observation.fleet) {
+                int available = masks.legalAnchorMasks(length, forbiddenLo, forbiddenHi, anchors);
+                if (available == 0)
+                    return;
+                int code = PlacementMasks.selectAnchor(anchors, nextInt(available));
+                long footLo = masks.getFootprintLo(length, code), footHi = masks.getFootprintHi(length, code);
+                // A ship whose every cell has been hit would have been reported destroyed
+                if ((footLo & ~observation.damagedLo) == 0 && (footHi & ~observation.damagedHi) == 0)
+                    return;
+                occupiedLo |= footLo;
+                occupiedHi |= footHi;
+                forbiddenLo |= masks.getHaloLo(length, code);
+                forbiddenHi |= masks.getHaloHi(length, code);
+            }
+            if ((observation.damagedLo & ~occupiedLo) != 0 || (observation.damagedHi & ~occupiedHi) != 0)
+                return;
+            for (long bits = occupiedLo; bits != 0; bits &= bits - 1)
+                ++counts[Long.numberOfTrailingZeros(bits)];
+            for (long bits = occupiedHi; bits != 0; bits &= bits - 1)
+                ++counts[Long.SIZE + Long.numberOfTrailingZeros(bits)];
+            ++counts[counts.length - 1];
+        }
+
+        /**
+         * Get next pseudo-random number in range [0, bound), SplitMix64
+         */
+        private int nextInt(int bound) {
+            long z = (state += 0x9E3779B97F4A7C15L);
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            z ^= z >>> 31;
+            return (int)(((z >>> 32) * bound) >>> 32);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package core.sim;
+
+import core.Battlefield;
+import core.GameRules;
+import core.ShotBoard;
+import core.ShotOutcome;
+
+import java.util.Random;
+
+/**
+ * Plays complete games between two shooters in memory, with randomly placed fleets.
+ * Reuses its oceans and boards between games, so it is meant to be used from one thread
+ */
+public class GameSimulator {
+    private final GameRules rules;
+    private final Shooter[] shooters = new Shooter[2];
+    private final Battlefield[] oceans = new Battlefield[2];    // oceans[i] holds the fleet of player i
+    private final ShotBoard[] boards = new ShotBoard[2];    // boards[i] is what player i knows about the partner
+    private final Random[] rnds = {new Random(), new Random()};     // Random instances of shooters
+    private final int maxShots;                             // Shots a player may make before the game is stopped
+
+    /**
+     * Create simulator
+     * @param rules rules of games
+     * @param first shooter of player 0
+     * @param second shooter of player 1
+     */
+    public GameSimulator(GameRules rules, Shooter first, Shooter second) {
+        this.rules = rules;
+        shooters[0] = first;
+        shooters[1] = second;
+        for (int i = 0; i < 2; ++i) {
+            oceans[i] = Battlefield.create(rules);
+            boards[i] = new ShotBoard(rules.getSize());
+        }
+        maxShots = rules.getSize() * rules.getSize() * 2;
+    }
+
+    /**
+     * Mix the seed with a number, to get independent seeds for different purposes (SplitMix64)
+     * @param seed original seed
+     * @param salt number to mix in
+     * @return new seed
+     */
+    static long mix(long seed, long salt) {
+        long z = seed + (salt + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Play one game. The same seed and first player always give the same game
+     * @param seed seed for fleets and shooters
+     * @param firstToMove index of the player who shoots first
+     * @return index of the winner
+     */
+    public int play(long seed, int firstToMove) {
+        for (int i = 0; i < 2; ++i) {
+            oceans[i].reset();
+            oceans[i].setRndSeed(mix(seed, i));
+            oceans[i].placeAllShipsRandomly();
+            boards[i].reset();
+            rnds[i].setSeed(mix(seed, i + 2));
+            shooters[i].newGame(rules, rnds[i]);
+        }
+        int size = rules.getSize();
+        int player = firstToMove;
+        while (true) {
+            int partner = 1 - player;
+            int cell = shooters[player].selectShot(boards[player].getCells());
+            int row = cell / size, column = cell % size;
+            if (cell < 0 || row >= size)
+                throw new IllegalStateException("Shooter chose a cell outside the battlefield: " + cell);
+            long outcome = oceans[partner].shoot(row, column);
+            boards[player].record(row, column, ShotOutcome.toCellStatus(outcome));
+            if (oceans[partner].isGameOver())
+                return player;
+            if (boards[player].getShots() > maxShots)
+                throw new IllegalStateException("Shooter has not won after " + maxShots + " shots");
+            player = partner;
+        }
+    }
+
+    /**
+     * Get number of shots the player made in the last game
+     * @param player index of the player
+     * @return number of shots, including duplicates
+     */
+    public int getShots(int player) {
+        return boards[player].getShots();
+    }
+}
@@ -0,0 +1,46 @@
+package core.sim;
+
+/**
+ * Probabilities of cells to hold a ship that is still afloat, estimated from sampled fleet layouts. Immutable
+ */
+public class Heatmap {
+    private final int size;             // Size of battlefield along one axis
+    private final float[] probability;  // Share of layouts with a ship afloat on the cell, by cell index
+    private final int samples;          // Number of layouts the map was built from
+
+    /**
+     * Create heat map from counts of layouts
+     * @param size size of battlefield along one axis
+     * @param counts numbers of layouts with a ship on the cell, by cell index
+     * @param samples total number of layouts
+     */
+    Heatmap(int size, int[] counts, int samples) {
+        this.size = size;
+        this.samples = samples;
+        probability = new float[size * size];
+        if (samples > 0)
+            for (int i = 0; i < probability.length; ++i)
+                probability[i] = (float)counts[i] / samples;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get number of layouts the map was built from
+     * @return number of layouts, 0 if no layout agrees with the observations
+     */
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * Get estimated probability that the cell holds a ship
+     * @param cell index of the cell, row * size + column
+     * @return probability from 0 to 1
+     */
+    public float getProbability(int cell) {
+        return probability[cell];
+    }
+}
@@ -0,0 +1,62 @@
+package core.sim;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of heat maps keyed by Zobrist hashes of observation grids, least recently used
+ * maps are evicted first. Thread-safe, so one cache can be shared by all shooters of a simulation.
+ * Hashes do not include the rules, so a cache should only be shared by games with the same rules
+ */
+public class HeatmapCache {
+    private final LinkedHashMap<Long, Heatmap> maps;    // Maps in access order
+    private long hits, misses;
+
+    /**
+     * Create empty cache
+     * @param capacity maximum number of maps to keep
+     */
+    public HeatmapCache(int capacity) {
+        maps = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Heatmap> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the map for the grid
+     * @param hash Zobrist hash of the grid
+     * @return cached map, or null if there is none
+     */
+    public synchronized Heatmap get(long hash) {
+        Heatmap map = maps.get(hash);
+        if (map == null)
+            ++misses;
+        else
+            ++hits;
+        return map;
+    }
+
+    /**
+     * Store the map for the grid
+     * @param hash Zobrist hash of the grid
+     * @param map heat map
+     */
+    public synchronized void put(long hash, Heatmap map) {
+        maps.put(hash, map);
+    }
+
+    public synchronized int size() {
+        return maps.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
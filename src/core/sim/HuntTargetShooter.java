@@ -0,0 +1,101 @@
+package core.sim;
+
+import core.GameRules;
+import core.Ocean;
+
+import java.util.Random;
+
+/**
+ * Classic hunt/target strategy. While there is a damaged ship, shoots next to it, along its axis
+ * once two of its cells are known. Otherwise shoots at random cells of a checkerboard pattern.
+ * Never shoots next to destroyed ships or diagonally to damaged cells, as ships cannot touch
+ */
+public class HuntTargetShooter implements Shooter {
+    private Random rnd;         // Random instance of the current game
+    private int[] candidates;   // Buffer for cells to choose from
+
+    @Override
+    public void newGame(GameRules rules, Random rnd) {
+        this.rnd = rnd;
+        int area = rules.getSize() * rules.getSize();
+        if (candidates == null || candidates.length < area)
+            candidates = new int[area];
+    }
+
+    /**
+     * Get status of the cell, Missed for cells outside the battlefield
+     */
+    private static Ocean.CellStatus statusAt(Ocean.CellStatus[][] shotResults, int row, int column) {
+        if (row < 0 || column < 0 || row >= shotResults.length || column >= shotResults.length)
+            return Ocean.CellStatus.Missed;
+        return shotResults[row][column];
+    }
+
+    /**
+     * Check, if the rules allow a ship at the unknown cell, judging by its neighbours
+     */
+    private static boolean mayHoldShip(Ocean.CellStatus[][] shotResults, int row, int column) {
+        for (int i = -1; i <= 1; ++i) {
+            for (int j = -1; j <= 1; ++j) {
+                Ocean.CellStatus status = statusAt(shotResults, row + i, column + j);
+                if (status.isDestroyed())
+                    return false;
+                if (status == Ocean.CellStatus.Damaged && i != 0 && j != 0)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int selectShot(Ocean.CellStatus[][] shotResults) {
+        int size = shotResults.length;
+        int count = 0;
+        // Target: unknown cells next to damaged ones
+        for (int row = 0; row < size; ++row) {
+            for (int column = 0; column < size; ++column) {
+                if (shotResults[row][column] != Ocean.CellStatus.Damaged)
+                    continue;
+                boolean horizontal = statusAt(shotResults, row, column - 1) == Ocean.CellStatus.Damaged ||
+                        statusAt(shotResults, row, column + 1) == Ocean.CellStatus.Damaged;
+                boolean vertical = statusAt(shotResults, row - 1, column) == Ocean.CellStatus.Damaged ||
+                        statusAt(shotResults, row + 1, column) == Ocean.CellStatus.Damaged;
+                if (!vertical) {
+                    count = addIfPossible(shotResults, row, column - 1, count);
+                    count = addIfPossible(shotResults, row, column + 1, count);
+                }
+                if (!horizontal) {
+                    count = addIfPossible(shotResults, row - 1, column, count);
+                    count = addIfPossible(shotResults, row + 1, column, count);
+                }
+            }
+        }
+        if (count > 0)
+            return candidates[rnd.nextInt(count)];
+        // Hunt: every ship longer than one cell covers both colors of a checkerboard,
+        // so shoot one color first and the other one after it runs out
+        for (int parity = 0; parity < 2 && count == 0; ++parity) {
+            for (int row = 0; row < size; ++row)
+                for (int column = (row + parity) % 2; column < size; column += 2)
+                    count = addIfPossible(shotResults, row, column, count);
+        }
+        if (count > 0)
+            return candidates[rnd.nextInt(count)];
+        // Nothing looks possible: the partner's answers contradict the rules, shoot anywhere unknown
+        for (int cell = 0; cell < size * size; ++cell)
+            if (shotResults[cell / size][cell % size] == Ocean.CellStatus.Unknown)
+                return cell;
+        return 0;
+    }
+
+    /**
+     * Add the cell to candidates if it is unknown and may hold a ship
+     * @return new number of candidates
+     */
+    private int addIfPossible(Ocean.CellStatus[][] shotResults, int row, int column, int count) {
+        if (statusAt(shotResults, row, column) == Ocean.CellStatus.Unknown &&
+                mayHoldShip(shotResults, row, column))
+            candidates[count++] = row * shotResults.length + column;
+        return count;
+    }
+}
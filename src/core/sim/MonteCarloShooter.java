@@ -0,0 +1,179 @@
+package core.sim;
+
+import core.GameRules;
+import core.Ocean;
+import core.PlacementMasks;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Monte Carlo strategy: samples fleet layouts that agree with the results of shots and shoots
+ * at the unknown cell covered by the largest share of them. Heat maps are cached by the Zobrist hash
+ * of the results and sampled with the hash as the seed, so a cached map is exactly the map that
+ * would have been sampled, and games stay reproducible whether the cache hits or not.
+ * The grid is scanned once per game, then the hash is updated only for the cells the shooter has chosen since
+ * its previous move and for the rest of a ship they sank, so a move does not look at every cell.
+ * When no layout is found, and on battlefields larger than PlacementMasks.MAX_SIZE,
+ * moves are made by ProbabilityShooter
+ */
+public class MonteCarloShooter implements Shooter {
+    public static final int DEFAULT_LAYOUTS = 1024;     // Layouts sampled per move by default
+
+    private final HeatmapCache cache;                   // Heat maps of this and other shooters
+    private final int layouts;                          // Layouts sampled per move
+    private final ProbabilityShooter fallback = new ProbabilityShooter();
+    private GameRules rules;                            // Rules of the current game
+    private Random rnd;                                 // Random instance of the current game
+    private FleetSampler sampler;                       // Sampler, null if the battlefield is too large for it
+    private ZobristHash zobrist;
+    private Ocean.CellStatus[] seen;                    // Results of shots the hash was computed from, by cell index
+    private long hash;                                  // Hash of seen
+    private boolean isScanned;                          // seen has been filled from a grid in this game
+    private int[] chosen;                               // Cells chosen since seen was last updated
+    private int chosenCount;
+
+    /**
+     * Create shooter sampling DEFAULT_LAYOUTS layouts per move
+     * @param cache cache of heat maps, shared by shooters playing by the same rules
+     */
+    public MonteCarloShooter(HeatmapCache cache) {
+        this(cache, DEFAULT_LAYOUTS);
+    }
+
+    /**
+     * Create shooter
+     * @param cache cache of heat maps, shared by shooters playing by the same rules
+     * @param layouts number of layouts sampled per move
+     */
+    public MonteCarloShooter(HeatmapCache cache, int layouts) {
+        this.cache = cache;
+        this.layouts = layouts;
+    }
+
+    @Override
+    public void newGame(GameRules rules, Random rnd) {
+        this.rnd = rnd;
+        fallback.newGame(rules, rnd);
+        if (rules.getSize() > PlacementMasks.MAX_SIZE) {
+            this.rules = rules;
+            sampler = null;
+            return;
+        }
+        if (rules != this.rules || sampler == null) {
+            sampler = new FleetSampler(rules);
+            zobrist = new ZobristHash(rules.getSize());
+            seen = new Ocean.CellStatus[rules.getSize() * rules.getSize()];
+            chosen = new int[seen.length];
+        }
+        this.rules = rules;
+        Arrays.fill(seen, Ocean.CellStatus.Unknown);
+        hash = 0;
+        // A game may be resumed with shots made already, so the first move takes the whole grid
+        isScanned = false;
+        chosenCount = 0;
+    }
+
+    @Override
+    public int selectShot(Ocean.CellStatus[][] shotResults) {
+        if (sampler == null)
+            return fallback.selectShot(shotResults);
+        int size = shotResults.length;
+        if (!isScanned) {
+            for (int cell = 0; cell < seen.length; ++cell)
+                see(shotResults, cell);
+            isScanned = true;
+        }
+        else {
+            for (int i = 0; i < chosenCount; ++i)
+                seeShot(shotResults, chosen[i], size);
+        }
+        chosenCount = 0;
+
+        Heatmap heatmap = cache.get(hash);
+        if (heatmap == null) {
+            heatmap = sampler.sample(shotResults, layouts, hash);
+            cache.put(hash, heatmap);
+        }
+        if (heatmap.getSamples() == 0) {
+            int cell = fallback.selectShot(shotResults);
+            chosen[chosenCount++] = cell;
+            return cell;
+        }
+
+        // Choose the unknown cell with the largest probability, breaking ties randomly
+        int best = -1, ties = 0;
+        float bestProbability = -1;
+        for (int cell = 0; cell < seen.length; ++cell) {
+            if (seen[cell] != Ocean.CellStatus.Unknown)
+                continue;
+            float probability = heatmap.getProbability(cell);
+            if (probability > bestProbability) {
+                best = cell;
+                bestProbability = probability;
+                ties = 1;
+            }
+            else if (probability == bestProbability && rnd.nextInt(++ties) == 0)
+                best = cell;
+        }
+        best = best < 0 ? 0 : best;
+        chosen[chosenCount++] = best;
+        return best;
+    }
+
+    @Override
+    public int selectShots(Ocean.CellStatus[][] shotResults, int[] cells, int count) {
+        int selected = Shooter.super.selectShots(shotResults, cells, count);
+        if (sampler != null) {
+            // seen holds the guessed misses now, the next grid gets the real results of all the cells
+            System.arraycopy(cells, 0, chosen, 0, selected);
+            chosenCount = selected;
+        }
+        return selected;
+    }
+
+    /**
+     * Get hash of the results seen on the last move, for testing purposes
+     * @return hash of seen
+     */
+    long getHash() {
+        return hash;
+    }
+
+    /**
+     * Update the hash with the result of a shot at the cell. When the shot has sunk a ship,
+     * the rest of the ship has changed from Damaged to destroyed as well
+     */
+    private void seeShot(Ocean.CellStatus[][] shotResults, int cell, int size) {
+        if (!see(shotResults, cell) || !seen[cell].isDestroyed())
+            return;
+        int row = cell / size, column = cell % size;
+        Ocean.CellStatus status = seen[cell];
+        if (status == Ocean.CellStatus.DestroyedVer) {
+            for (int i = row - 1; i >= 0 && shotResults[i][column] == status; --i)
+                see(shotResults, i * size + column);
+            for (int i = row + 1; i < size && shotResults[i][column] == status; ++i)
+                see(shotResults, i * size + column);
+        }
+        else {
+            for (int i = column - 1; i >= 0 && shotResults[row][i] == status; --i)
+                see(shotResults, row * size + i);
+            for (int i = column + 1; i < size && shotResults[row][i] == status; ++i)
+                see(shotResults, row * size + i);
+        }
+    }
+
+    /**
+     * Update the hash with the status of the cell
+     * @return true, if the status has changed
+     */
+    private boolean see(Ocean.CellStatus[][] shotResults, int cell) {
+        int size = shotResults.length;
+        Ocean.CellStatus status = shotResults[cell / size][cell % size];
+        if (status == seen[cell])
+            return false;
+        hash = zobrist.update(hash, cell, seen[cell], status);
+        seen[cell] = status;
+        return true;
+    }
+}
@@ -0,0 +1,41 @@
+package core.sim;
+
+import core.GameRules;
+import core.Ocean;
+
+import java.util.Random;
+
+/**
+ * Shoots at random cells it hasn't shot at yet
+ */
+public class RandomShooter implements Shooter {
+    private Random rnd;     // Random instance of the current game
+
+    @Override
+    public void newGame(GameRules rules, Random rnd) {
+        this.rnd = rnd;
+    }
+
+    @Override
+    public int selectShot(Ocean.CellStatus[][] shotResults) {
+        int size = shotResults.length;
+        // Most of the game there are plenty of unknown cells, so guessing is cheaper than counting them
+        for (int attempt = 0; attempt < 16; ++attempt) {
+            int cell = rnd.nextInt(size * size);
+            if (shotResults[cell / size][cell % size] == Ocean.CellStatus.Unknown)
+                return cell;
+        }
+        int unknown = 0;
+        for (Ocean.CellStatus[] row : shotResults)
+            for (Ocean.CellStatus status : row)
+                if (status == Ocean.CellStatus.Unknown)
+                    ++unknown;
+        if (unknown == 0)
+            return 0;
+        int randInd = rnd.nextInt(unknown);
+        for (int cell = 0; ; ++cell) {
+            if (shotResults[cell / size][cell % size] == Ocean.CellStatus.Unknown && randInd-- == 0)
+                return cell;
+        }
+    }
+}
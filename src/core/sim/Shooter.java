@@ -0,0 +1,49 @@
+package core.sim;
+
+import core.GameRules;
+import core.Ocean;
+
+import java.util.Random;
+
+/**
+ * Strategy of choosing cells to shoot at. An instance plays one game at a time
+ * and is used from one thread only
+ */
+public interface Shooter {
+    /**
+     * Prepare for a new game
+     * @param rules rules of the game
+     * @param rnd random generator to use for the whole game, so games can be reproduced
+     */
+    void newGame(GameRules rules, Random rnd);
+
+    /**
+     * Choose the next cell to shoot at
+     * @param shotResults results of previous shots, as ShotBoard keeps them
+     * @return index of the cell, row * size + column
+     */
+    int selectShot(Ocean.CellStatus[][] shotResults);
+
+    /**
+     * Choose cells for a salvo one by one, as if the cells chosen before had been misses
+     * @param shotResults results of previous shots, as ShotBoard keeps them; not changed
+     * @param cells array receiving indices of the cells, row * size + column
+     * @param count number of cells to choose
+     * @return number of cells chosen, less than count if fewer cells are left unknown
+     */
+    default int selectShots(Ocean.CellStatus[][] shotResults, int[] cells, int count) {
+        int size = shotResults.length;
+        Ocean.CellStatus[][] guess = new Ocean.CellStatus[size][];
+        for (int i = 0; i < size; ++i)
+            guess[i] = shotResults[i].clone();
+        int chosen = 0;
+        while (chosen < count) {
+            int cell = selectShot(guess);
+            if (guess[cell / size][cell % size] != Ocean.CellStatus.Unknown)
+                break;      // Every cell has been chosen
+            guess[cell / size][cell % size] = Ocean.CellStatus.Missed;
+            cells[chosen++] = cell;
+        }
+        return chosen;
+    }
+}
@@ -0,0 +1,95 @@
+package core.sim;
+
+import core.GameRules;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays many games between two strategies in parallel on a fork/join pool.
+ * Every game gets its own seed derived from the master seed and the game's number, and players
+ * take turns to move first, so the report does not depend on how games are spread over threads
+ */
+public class SimulationEngine {
+    private static final int BATCH_SIZE = 64;   // Games played by one task without splitting
+
+    private final GameRules rules;
+    private final Strategy first, second;
+    private final ForkJoinPool pool;
+
+    /**
+     * Create engine that uses the common fork/join pool, i.e. all cores
+     * @param rules rules of games
+     * @param first strategy of player 0
+     * @param second strategy of player 1
+     */
+    public SimulationEngine(GameRules rules, Strategy first, Strategy second) {
+        this(rules, first, second, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create engine
+     * @param rules rules of games
+     * @param first strategy of player 0
+     * @param second strategy of player 1
+     * @param pool pool to run games on
+     */
+    public SimulationEngine(GameRules rules, Strategy first, Strategy second, ForkJoinPool pool) {
+        this.rules = rules;
+        this.first = first;
+        this.second = second;
+        this.pool = pool;
+    }
+
+    /**
+     * Play games and collect statistics
+     * @param games number of games to play
+     * @param seed master seed
+     * @return report on the games
+     */
+    public SimulationReport run(int games, long seed) {
+        long start = System.nanoTime();
+        SimulationReport report = pool.invoke(new Batch(0, games, seed));
+        report.setElapsedNanos(System.nanoTime() - start);
+        return report;
+    }
+
+    private SimulationReport newReport() {
+        return new SimulationReport(first.getName(), second.getName(), rules.getSize() * rules.getSize() * 2);
+    }
+
+    /**
+     * Task playing a range of games, splitting itself while the range is large
+     */
+    private class Batch extends RecursiveTask<SimulationReport> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;     // Numbers of games to play, to is exclusive
+        private final long seed;        // Master seed
+
+        Batch(int from, int to, long seed) {
+            this.from = from;
+            this.to = to;
+            this.seed = seed;
+        }
+
+        @Override
+        protected SimulationReport compute() {
+            if (to - from > BATCH_SIZE) {
+                int middle = (from + to) >>> 1;
+                Batch left = new Batch(from, middle, seed);
+                left.fork();
+                SimulationReport report = new Batch(middle, to, seed).compute();
+                report.add(left.join());
+                return report;
+            }
+            SimulationReport report = newReport();
+            GameSimulator simulator = new GameSimulator(rules, first.createShooter(), second.createShooter());
+            for (int game = from; game < to; ++game) {
+                int winner = simulator.play(GameSimulator.mix(seed, game), game % 2);
+                report.record(winner, simulator.getShots(winner), simulator.getShots(0) + simulator.getShots(1));
+            }
+            return report;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package core.sim;
+
+import java.util.Arrays;
+
+/**
+ * Results of a batch of simulated games: speed, wins of each strategy and distribution
+ * of the number of shots per game (made by both players together)
+ */
+public class SimulationReport {
+    private final String[] names;           // Names of strategies of both players
+    private final long[] wins = new long[2];            // Games won, by player
+    private final long[] winningShots = new long[2];    // Total shots made in won games, by player
+    private long[] shotsHistogram;          // Number of games, by number of shots in a game
+    private long games;                     // Number of games played
+    private long elapsedNanos;              // Time spent playing
+
+    SimulationReport(String firstName, String secondName, int maxShotsPerGame) {
+        names = new String[]{firstName, secondName};
+        shotsHistogram = new long[maxShotsPerGame + 1];
+    }
+
+    /**
+     * Add the result of one game
+     * @param winner index of the winner
+     * @param winnerShots shots made by the winner
+     * @param totalShots shots made by both players
+     */
+    void record(int winner, int winnerShots, int totalShots) {
+        ++games;
+        ++wins[winner];
+        winningShots[winner] += winnerShots;
+        if (totalShots >= shotsHistogram.length)
+            shotsHistogram = Arrays.copyOf(shotsHistogram, totalShots * 2);
+        ++shotsHistogram[totalShots];
+    }
+
+    /**
+     * Add results of another part of the same simulation
+     * @param other report to add
+     */
+    void add(SimulationReport other) {
+        games += other.games;
+        for (int i = 0; i < 2; ++i) {
+            wins[i] += other.wins[i];
+            winningShots[i] += other.winningShots[i];
+        }
+        if (other.shotsHistogram.length > shotsHistogram.length)
+            shotsHistogram = Arrays.copyOf(shotsHistogram, other.shotsHistogram.length);
+        for (int i = 0; i < other.shotsHistogram.length; ++i)
+            shotsHistogram[i] += other.shotsHistogram[i];
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Get speed of the simulation
+     * @return games played per second
+     */
+    public double getGamesPerSecond() {
+        return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Get name of the player's strategy
+     * @param player index of the player
+     * @return strategy name
+     */
+    public String getName(int player) {
+        return names[player];
+    }
+
+    /**
+     * Get number of games the player won
+     * @param player index of the player
+     * @return number of wins
+     */
+    public long getWins(int player) {
+        return wins[player];
+    }
+
+    /**
+     * Get share of games the player won
+     * @param player index of the player
+     * @return win rate from 0 to 1
+     */
+    public double getWinRate(int player) {
+        return games == 0 ? 0 : (double)wins[player] / games;
+    }
+
+    /**
+     * Get average number of shots the player needed to win
+     * @param player index of the player
+     * @return mean shots in won games, 0 if the player never won
+     */
+    public double getMeanShotsToWin(int player) {
+        return wins[player] == 0 ? 0 : (double)winningShots[player] / wins[player];
+    }
+
+    /**
+     * Get number of games with the given number of shots
+     * @param shots number of shots made by both players
+     * @return number of games
+     */
+    public long getGamesWithShots(int shots) {
+        return shots < shotsHistogram.length ? shotsHistogram[shots] : 0;
+    }
+
+    /**
+     * Get percentile of the number of shots per game
+     * @param percentile percentile from 0 to 100
+     * @return smallest number of shots such that the given share of games took no more shots
+     */
+    public int getShotsPercentile(double percentile) {
+        long threshold = (long)Math.ceil(games * percentile / 100), seen = 0;
+        for (int i = 0; i < shotsHistogram.length; ++i) {
+            seen += shotsHistogram[i];
+            if (seen >= threshold && seen > 0)
+                return i;
+        }
+        return 0;
+    }
+
+    /**
+     * Get average number of shots per game
+     * @return mean shots made by both players
+     */
+    public double getMeanShots() {
+        long total = 0;
+        for (int i = 0; i < shotsHistogram.length; ++i)
+            total += shotsHistogram[i] * i;
+        return games == 0 ? 0 : (double)total / games;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("%d games in %.3f s, %.0f games/s%n", games, elapsedNanos / 1e9, getGamesPerSecond()));
+        for (int i = 0; i < 2; ++i) {
+            result.append(String.format("%s: %d wins (%.1f%%), %.1f shots to win on average%n",
+                    names[i], wins[i], getWinRate(i) * 100, getMeanShotsToWin(i)));
+        }
+        result.append(String.format("shots per game: min %d, p50 %d, p90 %d, p99 %d, max %d, mean %.1f",
+                getShotsPercentile(0), getShotsPercentile(50), getShotsPercentile(90),
+                getShotsPercentile(99), getShotsPercentile(100), getMeanShots()));
+        return result.toString();
+    }
+}
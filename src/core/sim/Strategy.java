@@ -0,0 +1,40 @@
+package core.sim;
+
+import java.util.function.Supplier;
+
+/**
+ * Named source of shooters, one shooter per simulation thread
+ */
+public interface Strategy {
+    /**
+     * Get name of the strategy for reports
+     * @return strategy name
+     */
+    String getName();
+
+    /**
+     * Create a new shooter following the strategy
+     * @return new shooter
+     */
+    Shooter createShooter();
+
+    /**
+     * Create strategy from a name and a constructor of shooters
+     * @param name strategy name
+     * @param factory constructor of shooters
+     * @return new strategy
+     */
+    static Strategy of(String name, Supplier<Shooter> factory) {
+        return new Strategy() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public Shooter createShooter() {
+                return factory.get();
+            }
+        };
+    }
+}
@@ -0,0 +1,66 @@
+package core.sim;
+
+import core.Ocean;
+
+/**
+ * Zobrist hash of a grid of shot results: XOR of random keys, one key per (cell, status).
+ * Unknown cells have no key, so the empty grid hashes to 0, and recording a shot changes
+ * the hash with one or two XORs instead of rehashing the whole grid.
+ * Keys depend only on the battlefield size, so all instances of the same size agree
+ */
+public class ZobristHash {
+    private static final int STATUSES = 4;      // Statuses with keys: Missed, Damaged, DestroyedHor, DestroyedVer
+
+    private final int size;
+    private final long[] keys;                  // Keys by cell * STATUSES + status value - 1
+
+    /**
+     * Create keys for the battlefield
+     * @param size size of battlefield along one axis
+     */
+    public ZobristHash(int size) {
+        this.size = size;
+        keys = new long[size * size * STATUSES];
+        long seed = size;
+        for (int i = 0; i < keys.length; ++i)
+            keys[i] = GameSimulator.mix(seed, i);
+    }
+
+    /**
+     * Get key of the status at the cell
+     * @param cell index of the cell, row * size + column
+     * @param status status of the cell
+     * @return key, 0 for statuses that are not stored in grids
+     */
+    public long key(int cell, Ocean.CellStatus status) {
+        int value = status.getValue();
+        if (value < 1 || value > STATUSES)
+            return 0;
+        return keys[cell * STATUSES + value - 1];
+    }
+
+    /**
+     * Hash the whole grid
+     * @param grid results of shots, by row and column
+     * @return hash of the grid
+     */
+    public long hash(Ocean.CellStatus[][] grid) {
+        long hash = 0;
+        for (int row = 0; row < size; ++row)
+            for (int column = 0; column < size; ++column)
+                hash ^= key(row * size + column, grid[row][column]);
+        return hash;
+    }
+
+    /**
+     * Get hash of the grid after one cell has changed
+     * @param hash hash of the grid before the change
+     * @param cell index of the changed cell
+     * @param oldStatus status of the cell before the change
+     * @param newStatus status of the cell after the change
+     * @return hash of the changed grid
+     */
+    public long update(long hash, int cell, Ocean.CellStatus oldStatus, Ocean.CellStatus newStatus) {
+        return hash ^ key(cell, oldStatus) ^ key(cell, newStatus);
+    }
+}
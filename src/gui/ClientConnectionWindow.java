@@ -47,6 +47,8 @@ public class ClientConnectionWindow extends Application implements AlertDisplay
 
     @Override
     public void start(Stage primaryStage) {
+        // Images of the game window are decoded while the player fills in the form
+        ImageCache.preload();
         stage = primaryStage;
         primaryStage.setTitle("Battleship client");
 
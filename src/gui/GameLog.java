@@ -0,0 +1,99 @@
+package gui;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lines of the game log for a ListView, which lays out only the rows it shows. The lines are kept in a ring
+ * buffer of fixed capacity, so the oldest lines are dropped once it is full and memory stays the same however
+ * long the game goes on. Appended lines wait until flush, which shows all of them with one change of the list,
+ * e.g. once per frame. Not thread-safe, used on the JavaFX thread only
+ */
+public class GameLog extends ObservableListBase<String> {
+    private final String[] lines;           // Ring buffer of shown lines
+    private int head, size;                 // Index of the oldest line and number of lines
+    private final List<String> pending = new ArrayList<>();     // Lines appended since the last flush
+
+    /**
+     * Create empty log
+     * @param capacity greatest number of lines kept
+     */
+    public GameLog(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity should be positive");
+        lines = new String[capacity];
+    }
+
+    public int getCapacity() {
+        return lines.length;
+    }
+
+    /**
+     * Add a line, it is shown on the next flush
+     * @param line text of the line without line break
+     */
+    public void append(String line) {
+        pending.add(line);
+    }
+
+    /**
+     * Show the lines appended since the last flush, dropping as many of the oldest lines as needed
+     * @return true, if the list has changed
+     */
+    public boolean flush() {
+        if (pending.isEmpty())
+            return false;
+        // Of more pending lines than fit, only the last ones are ever seen
+        int skip = Math.max(0, pending.size() - lines.length), added = pending.size() - skip;
+        int dropped = Math.max(0, size + added - lines.length);
+        beginChange();
+        if (dropped > 0) {
+            List<String> removed = new ArrayList<>(dropped);
+            for (int i = 0; i < dropped; ++i) {
+                removed.add(get(i));
+                lines[(head + i) % lines.length] = null;
+            }
+            head = (head + dropped) % lines.length;
+            size -= dropped;
+            nextRemove(0, removed);
+        }
+        for (int i = skip; i < pending.size(); ++i)
+            lines[(head + size++) % lines.length] = pending.get(i);
+        nextAdd(size - added, size);
+        endChange();
+        pending.clear();
+        return true;
+    }
+
+    /**
+     * Remove all lines, pending ones too
+     */
+    @Override
+    public void clear() {
+        pending.clear();
+        if (size == 0)
+            return;
+        List<String> removed = new ArrayList<>(this);
+        Arrays.fill(lines, null);
+        head = 0;
+        size = 0;
+        beginChange();
+        nextRemove(0, removed);
+        endChange();
+    }
+
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(index);
+        return lines[(head + index) % lines.length];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
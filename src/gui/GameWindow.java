@@ -2,6 +2,7 @@ package gui;
 
 import core.Ocean;
 import core.Ship;
+import core.ShotOutcome;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
@@ -9,26 +10,34 @@ import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
+import net.AsyncTransport;
+import net.BatchingExecutor;
+import net.Connection;
+import net.GameSession;
 
 import java.io.*;
 import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.BitSet;
 import java.util.Optional;
-import java.util.Scanner;
-
-public class GameWindow implements AlertDisplay {
-    private enum GameState {
-        Connect,    // Connection
-        Setup,      // Setting up the fleet
-        WaitSetup,  // Wait for partner to setup
-        Game,       // Game itself
-        EndOfGame   // Game has ended
-    }
 
-    private final int CELL_SIZE = 30;   // Size of battlefield cell on screen
+import static gui.ImageCache.DAMAGED;
+import static gui.ImageCache.DESTROYED_HOR;
+import static gui.ImageCache.DESTROYED_VER;
+import static gui.ImageCache.MISSED;
+import static gui.ImageCache.SHIP_HOR;
+import static gui.ImageCache.SHIP_VER;
+
+public class GameWindow implements AlertDisplay, GameSession.Listener {
+    private final int CELL_SIZE = ImageCache.SPRITE_SIZE;   // Size of battlefield cell on screen
+    private final int RECONNECT_TIMEOUT = 5000;     // Longest wait for the server when resuming, in milliseconds
+    private static final int[][] STEPS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};  // Directions along a ship
     private final double WIDTH = 400,   // Width of battlefield canvas
             HEIGHT = 400;   // Height of battlefield canvas
 
@@ -37,91 +46,63 @@ public class GameWindow implements AlertDisplay {
     private Stage stage;                    // Main stage (required for closing)
     private Canvas myCanvas, partnerCanvas;                  // Canvas to draw the battlefield on
     private Ocean ocean;                    // Ocean object for performing the game logic
-    private TextArea logDisplay;            // TextArea for logs
-    private boolean isMyTurn;
+    private final int LOG_CAPACITY = 1000;  // Greatest number of lines in the log
+    private final GameLog log = new GameLog(LOG_CAPACITY);
+    private ListView<String> logDisplay;    // Shows the lines of the log on screen
+    private GameSession session;            // State of the game
     private Ocean.CellStatus[][] shotResults;
+    private final BitSet myDirty = new BitSet(),        // Cells to repaint on the next frame, by row * size + column
+            partnerDirty = new BitSet();
     private String myName, partnerName;
-    private int myShots, partnerShots, partnerShipsDestroyed;
-    private GameState state;
     private int shipSize;
     private boolean shipDirection;
     private Button playButton;
 
     // Images
-    private Image background,       // Background for battlefield
-            missed,         // Missed shot
-            damaged,        // Damaged part of the ship
-            destroyedHor,       // Part of destroyed horizontal ship
-            destroyedVer,       // Part of destroyed vertical ship
-            shipHor,
-            shipVer;
+    private Image battlefield,      // Background, labels and grid, rendered once for both battlefields
+            sprites;                // Atlas of cell images shared by all windows, null until it is loaded
+    private ImageView myBattlefield, partnerBattlefield;    // Show the battlefield image under the cells
 
-    private Scanner socketReader;
-    private PrintWriter socketWriter;
+    private Connection connection;          // Connection to the partner
+    private AsyncTransport transport;       // Sends messages of the session over the connection off the FX thread
+    private final BatchingExecutor dispatcher = new BatchingExecutor(Platform::runLater, this::flushFrame);
+    private SocketAddress serverAddress;    // Address to resume the game at if the connection is lost
 
     /**
      * Initialize the game
      */
     private void initializeGame() {
         ocean = new Ocean();
-        logDisplay.clear();
-        shotResults = new Ocean.CellStatus[ocean.OCEAN_SIZE][ocean.OCEAN_SIZE];
-        for (int i = 0; i < ocean.OCEAN_SIZE; ++i)
-            for (int j = 0; j < ocean.OCEAN_SIZE; ++j)
-                shotResults[i][j] = Ocean.CellStatus.Unknown;
-        myShots = partnerShots = 0;
+        log.clear();
+        transport = sendTo(connection);
+        session = new GameSession(ocean, transport, connection.movesFirst());
+        session.setListener(this);
+        shotResults = session.getBoard().getCells();
     }
 
     /**
-     * Draw the ocean
+     * Render what does not change during the game into an image shown under the cells of both battlefields:
+     * background, labels and the grid
+     * @param background background image, null for a plain placeholder while the image is loaded
      */
-    private void drawMyOcean() {
-        GraphicsContext gc = myCanvas.getGraphicsContext2D();
-        gc.drawImage(background, 0, 0, WIDTH, HEIGHT);
+    private Image renderBattlefield(Image background) {
+        Canvas canvas = new Canvas(WIDTH, HEIGHT);
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        if (background != null)
+            gc.drawImage(background, 0, 0, WIDTH, HEIGHT);
+        else {
+            gc.setFill(Color.LIGHTSTEELBLUE);
+            gc.fillRect(0, 0, WIDTH, HEIGHT);
+        }
+        gc.setFill(Color.BLACK);
         for (int i = 0; i < ocean.OCEAN_SIZE; ++i) {
-            gc.setFill(Color.BLACK);
             gc.fillText(String.valueOf(i),
                     leftBound + CELL_SIZE * i + CELL_SIZE / 2 - 3,
                     topBound - 5);
             gc.fillText(String.valueOf(i),
                     leftBound - 12,
                     topBound + CELL_SIZE * i + CELL_SIZE / 2 + 4);
-
-            for (int j = 0; j < ocean.OCEAN_SIZE; ++j) {
-                Image toDraw = null;
-                if (ocean.hasShipAt(i, j)) {
-                    gc.drawImage(ocean.isHorizontalAt(i, j) ? shipHor : shipVer,
-                            leftBound + j * CELL_SIZE,
-                            topBound + i * CELL_SIZE,
-                            CELL_SIZE, CELL_SIZE);
-                }
-                switch (ocean.getCellStatus(i, j)) {
-                    case Missed:
-                        toDraw = missed;
-                        break;
-
-                    case Damaged:
-                        toDraw = damaged;
-                        break;
-
-                    case DestroyedHor:
-                        toDraw = destroyedHor;
-                        break;
-
-                    case DestroyedVer:
-                        toDraw = destroyedVer;
-                        break;
-                }
-                if (toDraw != null) {
-                    gc.drawImage(toDraw,
-                            leftBound + j * CELL_SIZE,
-                            topBound + i * CELL_SIZE,
-                            CELL_SIZE, CELL_SIZE);
-                }
-            }
         }
-
-        gc.setFill(Color.BLACK);
         gc.setLineWidth(1.5);
         for (int i = 0; i <= ocean.OCEAN_SIZE; ++i) {
             gc.strokeLine(leftBound, topBound + CELL_SIZE * i,
@@ -129,59 +110,139 @@ public class GameWindow implements AlertDisplay {
             gc.strokeLine(leftBound + CELL_SIZE * i, topBound,
                     leftBound + CELL_SIZE * i, bottomBound);
         }
+        return canvas.snapshot(null, null);
+    }
+
+    /**
+     * Repaint cells of the ocean that have changed since the last frame, they stay to repaint until the images load
+     */
+    private void drawMyOcean() {
+        if (sprites == null)
+            return;
+        GraphicsContext gc = myCanvas.getGraphicsContext2D();
+        for (int cell = myDirty.nextSetBit(0); cell >= 0; cell = myDirty.nextSetBit(cell + 1)) {
+            int row = cell / ocean.OCEAN_SIZE, column = cell % ocean.OCEAN_SIZE;
+            int ship = -1;
+            if (ocean.hasShipAt(row, column))
+                ship = ocean.isHorizontalAt(row, column) ? SHIP_HOR : SHIP_VER;
+            drawCell(gc, row, column, ship, ocean.getCellStatus(row, column));
+        }
+        myDirty.clear();
     }
 
+    /**
+     * Repaint cells of the partner's battlefield that have changed since the last frame
+     */
     private void drawPartnerOcean() {
+        if (sprites == null)
+            return;
         GraphicsContext gc = partnerCanvas.getGraphicsContext2D();
-        gc.drawImage(background, 0, 0, WIDTH, HEIGHT);
-        for (int i = 0; i < ocean.OCEAN_SIZE; ++i) {
-            gc.setFill(Color.BLACK);
-            gc.fillText(String.valueOf(i),
-                    leftBound + CELL_SIZE * i + CELL_SIZE / 2 - 3,
-                    topBound - 5);
-            gc.fillText(String.valueOf(i),
-                    leftBound - 12,
-                    topBound + CELL_SIZE * i + CELL_SIZE / 2 + 4);
-
-            for (int j = 0; j < ocean.OCEAN_SIZE; ++j) {
-                Image toDraw = null;
-                switch (shotResults[i][j]) {
-                    case Missed:
-                        toDraw = missed;
-                        break;
+        for (int cell = partnerDirty.nextSetBit(0); cell >= 0; cell = partnerDirty.nextSetBit(cell + 1)) {
+            int row = cell / ocean.OCEAN_SIZE, column = cell % ocean.OCEAN_SIZE;
+            drawCell(gc, row, column, -1, shotResults[row][column]);
+        }
+        partnerDirty.clear();
+    }
 
-                    case Damaged:
-                        toDraw = damaged;
-                        break;
+    /**
+     * Paint one cell of the cell layer over what was there: the ship, the shot and the grid lines around them.
+     * The layer is transparent where a cell is empty, so the battlefield image under it shows through.
+     * Drawing is clipped to the cell, so the neighbours and their halves of the lines stay untouched
+     * @param ship sprite of the ship at the cell, -1 if there is none
+     * @param status status of the cell
+     */
+    private void drawCell(GraphicsContext gc, int row, int column, int ship, Ocean.CellStatus status) {
+        double x = leftBound + column * CELL_SIZE, y = topBound + row * CELL_SIZE;
+        gc.save();
+        gc.beginPath();
+        gc.rect(x, y, CELL_SIZE, CELL_SIZE);
+        gc.clip();
+        gc.clearRect(x, y, CELL_SIZE, CELL_SIZE);
+        int shot = -1;
+        switch (status) {
+            case Missed:
+                shot = MISSED;
+                break;
+
+            case Damaged:
+                shot = DAMAGED;
+                break;
+
+            case DestroyedHor:
+                shot = DESTROYED_HOR;
+                break;
+
+            case DestroyedVer:
+                shot = DESTROYED_VER;
+                break;
+        }
+        if (ship >= 0)
+            drawSprite(gc, ship, x, y);
+        if (shot >= 0)
+            drawSprite(gc, shot, x, y);
+        // The grid is under the sprites, so it is drawn again over them
+        if (ship >= 0 || shot >= 0) {
+            gc.setLineWidth(1.5);
+            gc.strokeRect(x, y, CELL_SIZE, CELL_SIZE);
+        }
+        gc.restore();
+    }
 
-                    case DestroyedHor:
-                        toDraw = destroyedHor;
-                        break;
+    /**
+     * Copy a sprite from the atlas without scaling
+     */
+    private void drawSprite(GraphicsContext gc, int sprite, double x, double y) {
+        gc.drawImage(sprites, sprite * CELL_SIZE, 0, CELL_SIZE, CELL_SIZE, x, y, CELL_SIZE, CELL_SIZE);
+    }
 
-                    case DestroyedVer:
-                        toDraw = destroyedVer;
-                        break;
-                }
-                if (toDraw != null) {
-                    gc.drawImage(toDraw,
-                            leftBound + j * CELL_SIZE,
-                            topBound + i * CELL_SIZE,
-                            CELL_SIZE, CELL_SIZE);
-                }
+    /**
+     * Mark all cells of a ship to be repainted: cells of the line through the given cell
+     * up to the first cell without the ship, ships never touch each other
+     * @param dirty cells of the battlefield to repaint
+     * @param row row of a cell of the ship
+     * @param column column of a cell of the ship
+     * @param onMyOcean true for own ship, false for a destroyed ship of the partner
+     */
+    private void markShip(BitSet dirty, int row, int column, boolean onMyOcean) {
+        int size = ocean.OCEAN_SIZE;
+        dirty.set(row * size + column);
+        for (int[] step : STEPS) {
+            int r = row + step[0], c = column + step[1];
+            while (r >= 0 && r < size && c >= 0 && c < size &&
+                    (onMyOcean ? ocean.hasShipAt(r, c) : shotResults[r][c].isDestroyed())) {
+                dirty.set(r * size + c);
+                r += step[0];
+                c += step[1];
             }
         }
+    }
 
-        gc.setFill(Color.BLACK);
-        gc.setLineWidth(1.5);
-        for (int i = 0; i <= ocean.OCEAN_SIZE; ++i) {
-            gc.strokeLine(leftBound, topBound + CELL_SIZE * i,
-                    rightBound, topBound + CELL_SIZE * i);
-            gc.strokeLine(leftBound + CELL_SIZE * i, topBound,
-                    leftBound + CELL_SIZE * i, bottomBound);
-        }
+    /**
+     * Create transport sending the messages of the session over a connection without blocking the JavaFX thread.
+     * An error ends the game on the JavaFX thread, unless the connection has been replaced by then
+     */
+    private AsyncTransport sendTo(Connection target) {
+        return new AsyncTransport(target, e -> dispatcher.execute(() -> {
+            if (connection == target)
+                session.disconnect();
+        }));
+    }
+
+    /**
+     * Show what the messages of one batch have changed: append their log lines at once and repaint their cells.
+     * Runs on the JavaFX thread after every batch of the dispatcher, i.e. at most once per pulse
+     */
+    private void flushFrame() {
+        if (log.flush())
+            logDisplay.scrollTo(log.size() - 1);
+        drawMyOcean();
+        drawPartnerOcean();
     }
 
     private void endGame(boolean isDisconnect, boolean didIWon) {
+        // The dialogs below block the batch, so show its moves before them
+        flushFrame();
+        transport.close();
         if (isDisconnect) {
             showError("Connection to your partner is lost. Game is closing.");
             stage.close();
@@ -190,109 +251,131 @@ public class GameWindow implements AlertDisplay {
             showInfo(String.format("Game over! Player %s wins.\n" +
                     "%s (you) has made %d shots\n" +
                     "%s (partner) has made %d shots",
-                    (didIWon ? myName : partnerName), myName, myShots, partnerName, partnerShots));
+                    (didIWon ? myName : partnerName), myName, session.getMyShots(), partnerName, session.getPartnerShots()));
         }
-        state = GameState.EndOfGame;
     }
 
-    /**
-     * Receive shot from partner
-     */
-    private void getPartnerTurn() {
-        if (state != GameState.Game) {
+    @Override
+    public void onPartnerShot(int row, int column, long outcome) {
+        log.append(String.format("%s: (%d, %d) = %s", partnerName, row, column, ShotOutcome.toString(outcome)));
+        int kind = ShotOutcome.getKind(outcome);
+        if (kind == ShotOutcome.DUPLICATE)
             return;
+        // A sunk ship changes its look in all its cells
+        if (kind == ShotOutcome.SUNK)
+            markShip(myDirty, row, column, true);
+        else
+            myDirty.set(row * ocean.OCEAN_SIZE + column);
+    }
+
+    @Override
+    public void onShotResult(int row, int column, Ocean.CellStatus result) {
+        String resString;
+        switch (result) {
+            case Missed:
+                resString = "missed";
+                break;
+
+            case Damaged:
+                resString = "ship damaged";
+                break;
+
+            case Duplicate:
+                resString = "duplicate shot";
+                break;
+
+            default:
+                resString = "ship destroyed";
         }
-        if (isMyTurn) {
+        log.append(String.format("%s: (%d, %d) = %s", myName, row, column, resString));
+        if (result.isDestroyed())
+            markShip(partnerDirty, row, column, false);
+        else if (result != Ocean.CellStatus.Duplicate)
+            partnerDirty.set(row * ocean.OCEAN_SIZE + column);
+    }
+
+    @Override
+    public void onGameOver(boolean won) {
+        if (!won)
+            log.append("Game over!");
+        endGame(false, won);
+    }
+
+    @Override
+    public void onDisconnected() {
+        String token = connection.getResumeToken();
+        if (token != null && session.isSuspended()) {
+            // The server keeps the game for a while, so try to go on with it on a new connection
+            log.append("Connection is lost, reconnecting");
+            Thread reconnect = new Thread(() -> reconnect(token), "reconnect");
+            reconnect.setDaemon(true);
+            reconnect.start();
             return;
         }
-        int row = 0, column = 0;
+        // Socket is closed, notify the player and end the game
+        endGame(true, false);
+    }
+
+    /**
+     * Connect to the server again and resume the game on the JavaFX thread, or end it if the server has lost it.
+     * Runs on its own thread, the session is not touched by anything else while it is suspended
+     * @param token session token received by the first connection
+     */
+    private void reconnect(String token) {
+        Socket socket = new Socket();
         try {
-            row = socketReader.nextInt();
-            column = socketReader.nextInt();
-        }
-        catch (Exception e) {
-            // Socket is closed, notify the player and end the game
-            Platform.runLater(() -> endGame(true, false));
-        }
-        if (ocean.isGameOver())
-            return;
-        if (ocean.hasShotAt(row, column)){
-            logDisplay.appendText(String.format("%s: (%d, %d) = %s\n", partnerName, row, column, "duplicate shot"));
-            socketWriter.println(Ocean.CellStatus.Duplicate.getValue());
-            return;
-        }
-        String resString;
-        if (ocean.shootAt(row, column)) {
-            var ship = ocean.getShipArray()[row][column];
-            resString = ship.isSunk() ? "ship destroyed" : "ship damaged";
+            socket.connect(serverAddress, RECONNECT_TIMEOUT);
+            Connection resumed = Connection.reconnect(socket.getInputStream(), socket.getOutputStream(),
+                    myName, token, session);
+            dispatcher.execute(() -> {
+                transport.close();
+                try {
+                    connection.close();
+                }
+                catch (IOException e) {
+                    // The old connection is gone anyway
+                }
+                connection = resumed;
+                transport = sendTo(resumed);
+                try {
+                    session.resume(transport, resumed.getPartnerShotsReceived(), resumed.getPartnerResultsReceived());
+                }
+                catch (IOException e) {
+                    closeQuietly(socket);
+                    endGame(true, false);
+                    return;
+                }
+                log.append("Game is resumed");
+                session.listen(resumed, dispatcher);
+            });
         }
-        else
-            resString = "missed";
-        logDisplay.appendText(String.format("%s: (%d, %d) = %s\n", partnerName, row, column, resString));
-        ++partnerShots;
-        drawMyOcean();
-        socketWriter.println(ocean.getCellStatus(row, column).getValue());
-        if (ocean.isGameOver()) {
-            logDisplay.appendText("Game over!\n");
-            Platform.runLater(() -> endGame(false, false));
+        catch (IOException e) {
+            closeQuietly(socket);
+            dispatcher.execute(() -> endGame(true, false));
         }
-        isMyTurn = true;
     }
 
-    private void updateDestroyed(int row, int column) {
-        if (shotResults[row][column] == Ocean.CellStatus.DestroyedVer) {
-            for (int i = row - 1; i >= 0 && shotResults[i][column] == Ocean.CellStatus.Damaged; --i)
-                shotResults[i][column] = Ocean.CellStatus.DestroyedVer;
-            for (int i = row + 1; i < ocean.OCEAN_SIZE && shotResults[i][column] == Ocean.CellStatus.Damaged; ++i)
-                shotResults[i][column] = Ocean.CellStatus.DestroyedVer;
-        }
-        else {
-            for (int i = column - 1; i >= 0 && shotResults[row][i] == Ocean.CellStatus.Damaged; --i)
-                shotResults[row][i] = Ocean.CellStatus.DestroyedHor;
-            for (int i = column + 1; i < ocean.OCEAN_SIZE && shotResults[row][i] == Ocean.CellStatus.Damaged; ++i)
-                shotResults[row][i] = Ocean.CellStatus.DestroyedHor;
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
         }
-        if (++partnerShipsDestroyed >= ocean.FLEET_SIZE) {
-            // We destroyed all partner's ships, end game
-            drawPartnerOcean();
-            endGame(false, true);
+        catch (IOException e) {
+            // Nothing to do, the game is over
         }
     }
 
     private void performShot(int row, int column) {
-        if (state == GameState.WaitSetup)
+        if (session.getState() == GameSession.State.WaitSetup)
             showInfo("Your partner has not placed all of their ships yet");
-        if (state != GameState.Game)
+        if (session.getState() != GameSession.State.Game)
             return;
-        if (isMyTurn) {
-            isMyTurn = false;
-            socketWriter.printf("%d %d\n", row, column);
-            Ocean.CellStatus result = Ocean.CellStatus.values()[socketReader.nextInt()];
-            shotResults[row][column] = result;
-            String resString;
-            switch (result) {
-                case Missed:
-                    resString = "missed";
-                    break;
-
-                case Damaged:
-                    resString = "ship damaged";
-                    break;
-
-                case Duplicate:
-                    resString = "duplicate shot";
-                    break;
-
-                default:
-                    resString = "ship destroyed";
+        if (session.isMyTurn()) {
+            try {
+                session.shoot(row, column);
             }
-            logDisplay.appendText(String.format("%s: (%d, %d) = %s\n", myName, row, column, resString));
-            ++myShots;
-            if (result.isDestroyed()) {
-                updateDestroyed(row, column);
+            catch (IOException e) {
+                session.disconnect();
             }
-            drawPartnerOcean();
-            new Thread(this::getPartnerTurn).start();
         }
         else {
             showInfo("Please wait for your partner's turn");
@@ -303,13 +386,27 @@ public class GameWindow implements AlertDisplay {
      * Load images from resource files
      */
     private void loadImages() {
-        background = new Image(gui.GameWindow.class.getResourceAsStream("/background.jpg"));
-        missed = new Image(gui.GameWindow.class.getResourceAsStream("/missed.png"));
-        damaged = new Image(gui.GameWindow.class.getResourceAsStream("/damaged.png"));
-        destroyedHor = new Image(gui.GameWindow.class.getResourceAsStream("/destroyed_hor.png"));
-        destroyedVer = new Image(gui.GameWindow.class.getResourceAsStream("/destroyed_ver.png"));
-        shipHor = new Image(gui.GameWindow.class.getResourceAsStream("/ship_hor.png"));
-        shipVer = new Image(gui.GameWindow.class.getResourceAsStream("/ship_ver.png"));
+        ImageCache.get().whenComplete((images, e) -> Platform.runLater(() -> {
+            if (e != null) {
+                showError("Failed to load images: " + e.getMessage());
+                return;
+            }
+            showImages(images.getBackground(), images.getSprites());
+        }));
+    }
+
+    /**
+     * Show the battlefields with the given images and paint all cells with them
+     */
+    private void showImages(Image background, Image sprites) {
+        battlefield = renderBattlefield(background);
+        myBattlefield.setImage(battlefield);
+        partnerBattlefield.setImage(battlefield);
+        this.sprites = sprites;
+        myDirty.set(0, ocean.OCEAN_SIZE * ocean.OCEAN_SIZE);
+        partnerDirty.set(0, ocean.OCEAN_SIZE * ocean.OCEAN_SIZE);
+        drawMyOcean();
+        drawPartnerOcean();
     }
 
     /**
@@ -355,20 +452,6 @@ public class GameWindow implements AlertDisplay {
         return menu;
     }
 
-    private void waitForPartner() {
-        try {
-            socketReader.nextLine();
-            state = GameState.Game;
-        }
-        catch (Exception e) {
-            // Partner disconnected
-            Platform.runLater(() -> endGame(true, false));
-        }
-        if (!isMyTurn) {
-            new Thread(this::getPartnerTurn).start();
-        }
-    }
-
     private GridPane createAllocatorPane() {
         GridPane allocatePane = new GridPane();
         allocatePane.setHgap(10);
@@ -394,7 +477,7 @@ public class GameWindow implements AlertDisplay {
         rotate.setOnAction(e -> shipDirection = !shipDirection);
 
         allocate.setOnAction(e -> {
-            state = GameState.Setup;
+            session.beginSetup();
             allocate.setDisable(true);
             shipSize = 0;
             for (int i = 0; i < 4; ++i)
@@ -405,26 +488,30 @@ public class GameWindow implements AlertDisplay {
         });
 
         playButton.setOnAction( e-> {
-            state = GameState.WaitSetup;
             for (int i = 0; i < 4; ++i)
                 place[i].setDisable(true);
             rotate.setDisable(true);
             edit.setDisable(true);
             playButton.setDisable(true);
-            socketWriter.println(); // Send an empty message just to notify
-            new Thread(this::waitForPartner).start();
+            try {
+                session.ready();
+            }
+            catch (IOException exc) {
+                session.disconnect();
+            }
         });
 
         return allocatePane;
     }
 
     private void editPlaceShip(int row, int column) {
-        if (state != GameState.Setup)
+        if (session.getState() != GameSession.State.Setup)
             return;
         if (shipSize == 0) {
             // Try to select (= remove) ship at cell
             if (!ocean.hasShipAt(row, column))
                 return;
+            markShip(myDirty, row, column, true);
             Ship removed = ocean.removeShipFrom(row, column);
             shipDirection = removed.isHorizontal();
             shipSize = removed.getLength();
@@ -432,6 +519,8 @@ public class GameWindow implements AlertDisplay {
         else {
             // Try to place selected ship
             playButton.setDisable(!ocean.tryPlaceShipAt(row, column, shipDirection, shipSize));
+            if (ocean.hasShipAt(row, column))
+                markShip(myDirty, row, column, true);
         }
         drawMyOcean();
     }
@@ -439,8 +528,6 @@ public class GameWindow implements AlertDisplay {
     public boolean runGame(Stage primaryStage, Socket socket, String myName, boolean isClient) {
         stage = primaryStage;
         try {
-            socketReader = new Scanner(socket.getInputStream());
-            socketWriter = new PrintWriter(socket.getOutputStream(), true);
             if (isClient) {
                 if (socket.getInputStream().available() > 0) {
                     // Server is busy
@@ -448,22 +535,21 @@ public class GameWindow implements AlertDisplay {
                     stage.close();
                     return false;
                 }
-                socketWriter.println(myName);
-                partnerName = socketReader.nextLine();
+                connection = Connection.connect(socket, myName);
             } else {
-                partnerName = socketReader.nextLine();
-                socketWriter.println(myName);
+                connection = Connection.accept(socket, myName);
             }
+            partnerName = connection.getPartnerName();
+            serverAddress = socket.getRemoteSocketAddress();
         }
         catch (IOException e) {
             showError(e.toString());
-            endGame(true, false);
+            stage.close();
+            return false;
         }
         this.myName = myName;
-        isMyTurn = isClient;
 
         primaryStage.setTitle(isClient ? "Battleship client" : "Battleship server");
-        loadImages();
 
         BorderPane root = new BorderPane();
         GridPane game = new GridPane();
@@ -475,9 +561,12 @@ public class GameWindow implements AlertDisplay {
 
         root.setTop(createMenu());
 
+        // Each battlefield is the static image with the layer of cells over it
+        myBattlefield = new ImageView();
+        partnerBattlefield = new ImageView();
         myCanvas = new Canvas(WIDTH, HEIGHT);
         game.add(new Label("me"), 0, 0);
-        game.add(myCanvas, 0, 1);
+        game.add(new StackPane(myBattlefield, myCanvas), 0, 1);
 
         myCanvas.setOnMouseClicked(event -> {
             int x = (int)(event.getX() - leftBound) / CELL_SIZE,
@@ -492,19 +581,21 @@ public class GameWindow implements AlertDisplay {
         GridPane allocPane = createAllocatorPane();
         game.add(allocPane, 0, 2);
 
-        logDisplay = new TextArea();
-        logDisplay.setEditable(false);
+        logDisplay = new ListView<>(log);
+        logDisplay.setFocusTraversable(false);
+        // About as tall as the ten rows of text the log used to have
+        logDisplay.setPrefHeight(CELL_SIZE * 6);
         root.setBottom(logDisplay);
         BorderPane.setMargin(logDisplay, new Insets(20, 20, 20, 20));
 
         partnerCanvas = new Canvas(WIDTH, HEIGHT);
         game.add(new Label("partner"), 1, 0);
-        game.add(partnerCanvas, 1, 1);
+        game.add(new StackPane(partnerBattlefield, partnerCanvas), 1, 1);
 
         TextField noMouseInput = new TextField();
         game.add(noMouseInput, 1, 2);
         noMouseInput.setOnAction(e -> {
-            if (state == GameState.EndOfGame)
+            if (session.getState() == GameSession.State.EndOfGame)
                 return;
             String[] input = noMouseInput.getText().split(" ");
             int row, column;
@@ -513,19 +604,19 @@ public class GameWindow implements AlertDisplay {
                 column = Integer.parseInt(input[1]);
             }
             catch (NumberFormatException | ArrayIndexOutOfBoundsException exc) {
-                showError("You should enter 2 numbers separated by one space\n");
+                showError("You should enter 2 numbers separated by one space");
                 return;
             }
             if (row < 0 || row >= ocean.OCEAN_SIZE || column < 0 || column >= ocean.OCEAN_SIZE) {
-                showError("Coordinates should be from 0 to 9 inclusive\n");
+                showError("Coordinates should be from 0 to 9 inclusive");
                 return;
             }
             noMouseInput.clear();
-            if (state == GameState.Setup) {
+            if (session.getState() == GameSession.State.Setup) {
                 editPlaceShip(row, column);
                 drawMyOcean();
             }
-            else if (state == GameState.Game) {
+            else if (session.getState() == GameSession.State.Game) {
                 performShot(row, column);
                 drawPartnerOcean();
             }
@@ -537,8 +628,9 @@ public class GameWindow implements AlertDisplay {
         rightBound = WIDTH / 2 + 5 * CELL_SIZE;
 
         initializeGame();
-        drawMyOcean();
-        drawPartnerOcean();
+        // The window shows up at once with plain battlefields, the images come when they are decoded
+        showImages(null, null);
+        loadImages();
 
         partnerCanvas.setOnMouseClicked(event -> {
             int x = (int)(event.getX() - leftBound) / CELL_SIZE,
@@ -554,7 +646,7 @@ public class GameWindow implements AlertDisplay {
         primaryStage.setScene(scene);
         primaryStage.show();
 
-        state = GameState.Connect;
+        session.listen(connection, dispatcher);
         return true;
     }
 }
\ No newline at end of file
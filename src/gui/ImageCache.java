@@ -0,0 +1,97 @@
+package gui;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Images of the game windows, decoded from resources once per process on a background thread and shared
+ * by all windows. Loading starts with the first call of preload or get, e.g. when the connection window
+ * starts, so the images are usually ready by the time a game begins. Thread-safe
+ */
+class ImageCache {
+    static final int SPRITE_SIZE = 30;      // Side of a cell image in the atlas, in pixels
+    static final int MISSED = 0,            // Missed shot
+            DAMAGED = 1,                    // Damaged part of the ship
+            DESTROYED_HOR = 2,              // Part of destroyed horizontal ship
+            DESTROYED_VER = 3,              // Part of destroyed vertical ship
+            SHIP_HOR = 4,
+            SHIP_VER = 5;
+    private static final String BACKGROUND = "/background.jpg";
+    private static final String[] SPRITES = {"/missed.png", "/damaged.png", "/destroyed_hor.png",
+            "/destroyed_ver.png", "/ship_hor.png", "/ship_ver.png"};
+
+    private static CompletableFuture<ImageCache> images;
+
+    private final Image background,         // Background of a battlefield
+            sprites;                        // Cell images at SPRITE_SIZE side by side, in the order of SPRITES
+
+    private ImageCache(Image background, Image sprites) {
+        this.background = background;
+        this.sprites = sprites;
+    }
+
+    public Image getBackground() {
+        return background;
+    }
+
+    public Image getSprites() {
+        return sprites;
+    }
+
+    /**
+     * Start loading the images, unless it has been started already
+     */
+    static void preload() {
+        get();
+    }
+
+    /**
+     * Get the images, starting to load them if needed
+     * @return images, completed on the loader thread, or exceptionally if a resource cannot be read
+     */
+    static synchronized CompletableFuture<ImageCache> get() {
+        if (images == null) {
+            images = new CompletableFuture<>();
+            Thread loader = new Thread(ImageCache::load, "image-loader");
+            loader.setDaemon(true);
+            loader.start();
+        }
+        return images;
+    }
+
+    private static void load() {
+        try {
+            Image background = decode(BACKGROUND, 0);
+            // Cell images are scaled once while loading, and drawing copies them as they are
+            WritableImage atlas = new WritableImage(SPRITE_SIZE * SPRITES.length, SPRITE_SIZE);
+            for (int i = 0; i < SPRITES.length; ++i) {
+                Image sprite = decode(SPRITES[i], SPRITE_SIZE);
+                atlas.getPixelWriter().setPixels(i * SPRITE_SIZE, 0, SPRITE_SIZE, SPRITE_SIZE,
+                        sprite.getPixelReader(), 0, 0);
+            }
+            images.complete(new ImageCache(background, atlas));
+        }
+        catch (IOException | RuntimeException e) {
+            images.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Decode a resource image on the calling thread
+     * @param size side of the square to scale the image to, 0 to keep its size
+     */
+    private static Image decode(String name, int size) throws IOException {
+        try (InputStream stream = ImageCache.class.getResourceAsStream(name)) {
+            if (stream == null)
+                throw new IOException("Resource " + name + " is not found");
+            Image image = new Image(stream, size, size, false, true);
+            if (image.isError())
+                throw new IOException("Resource " + name + " cannot be decoded", image.getException());
+            return image;
+        }
+    }
+}
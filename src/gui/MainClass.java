@@ -1,16 +1,28 @@
 package gui;
 
+import server.GameServer;
+import server.LoadGenerator;
+
+import java.io.IOException;
+import java.util.Arrays;
+
 public class MainClass {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
         if (args.length == 0) {
-            System.err.println("Please specify \"client\" or \"server\" option");
+            System.err.println("Please specify \"Client\", \"Server\", \"Headless\" or \"Load\" option");
             return;
         }
         if (args[0].equals("Client"))
             ClientConnectionWindow.start(args);
         else if (args[0].equals("Server"))
             ServerConnectionWindow.start(args);
+        else if (args[0].equals("Headless"))
+            // Server without windows, JavaFX is not loaded. Arguments: Headless [port] [number of selector threads] [lobby band width] [journal directory]
+            GameServer.main(Arrays.copyOfRange(args, 1, args.length));
+        else if (args[0].equals("Load"))
+            // Clients playing a server on loopback. Arguments: Load [port] [games] [concurrent games] [strategy] [protocol]
+            LoadGenerator.main(Arrays.copyOfRange(args, 1, args.length));
         else
-            System.err.println("Please specify \"Client\" or \"Server\" option");
+            System.err.println("Please specify \"Client\", \"Server\", \"Headless\" or \"Load\" option");
     }
 }
@@ -55,6 +55,8 @@ public class ServerConnectionWindow extends Application implements AlertDisplay
 
     @Override
     public void start(Stage primaryStage) {
+        // Images of the game window are decoded while the player fills in the form
+        ImageCache.preload();
         stage = primaryStage;
         primaryStage.setTitle("Battleship server");
 
@@ -0,0 +1,110 @@
+package net;
+
+import core.Ocean;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Transport sending messages on its own thread, so the thread driving a GameSession, e.g. the JavaFX thread,
+ * never waits for the socket. Messages are sent in the order they are passed; after the first error nothing
+ * more is sent and the error goes to the handler once, on the sender thread. Arrays are copied, the caller
+ * may reuse them right away
+ */
+public class AsyncTransport implements GameSession.Transport, Closeable {
+    private interface Send {
+        void run() throws IOException;
+    }
+
+    private final GameSession.Transport target;
+    private final Consumer<IOException> onError;
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "partner-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean failed;
+
+    /**
+     * Create transport
+     * @param target transport sending messages, e.g. a Connection
+     * @param onError handler of the first error, e.g. passing GameSession.disconnect to the driving thread
+     */
+    public AsyncTransport(GameSession.Transport target, Consumer<IOException> onError) {
+        this.target = target;
+        this.onError = onError;
+    }
+
+    private void submit(Send send) {
+        if (failed)
+            return;
+        try {
+            sender.execute(() -> {
+                if (failed)
+                    return;
+                try {
+                    send.run();
+                }
+                catch (IOException e) {
+                    failed = true;
+                    onError.accept(e);
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            // Closed, the game is over
+        }
+    }
+
+    @Override
+    public void sendShot(int row, int column) {
+        submit(() -> target.sendShot(row, column));
+    }
+
+    @Override
+    public void sendResult(Ocean.CellStatus result) {
+        submit(() -> target.sendResult(result));
+    }
+
+    @Override
+    public void sendReady() {
+        submit(target::sendReady);
+    }
+
+    @Override
+    public void sendSalvo(int[] shots, int count) {
+        int[] copy = Arrays.copyOf(shots, count);
+        submit(() -> target.sendSalvo(copy, count));
+    }
+
+    @Override
+    public void sendResults(Ocean.CellStatus[] results, int count) {
+        Ocean.CellStatus[] copy = Arrays.copyOf(results, count);
+        submit(() -> target.sendResults(copy, count));
+    }
+
+    /**
+     * Send what has been passed so far and stop the sender thread, later messages are dropped
+     */
+    @Override
+    public void close() {
+        sender.shutdown();
+    }
+
+    /**
+     * Wait until the messages passed before close have been sent or dropped after an error
+     * @param timeout longest time to wait
+     * @param unit unit of the timeout
+     * @return true, if the sender thread has stopped
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return sender.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,71 @@
+package net;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executor running tasks in batches on another executor, e.g. Platform::runLater: tasks added from any thread
+ * wait in a queue, and only the first one of a batch schedules a drain, which runs all tasks queued by then
+ * and the batch action after them. With JavaFX this is one runnable per pulse however many messages arrive,
+ * and the batch action applies what the tasks have changed to the screen once. A task that throws does not stop
+ * the batch: the rest of the tasks and the batch action still run, then the exception is thrown to the target.
+ * Thread-safe
+ */
+public class BatchingExecutor implements Executor {
+    private final Executor target;
+    private final Runnable afterBatch;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isScheduled = new AtomicBoolean();     // A drain is scheduled and has not started
+
+    /**
+     * Create executor
+     * @param target executor the batches run on, tasks of a batch run on its thread
+     * @param afterBatch action run on the target after the tasks of every batch
+     */
+    public BatchingExecutor(Executor target, Runnable afterBatch) {
+        this.target = target;
+        this.afterBatch = afterBatch;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (isScheduled.compareAndSet(false, true))
+            target.execute(this::drain);
+    }
+
+    private void drain() {
+        // A task added from now on schedules the next drain, even if this one runs it
+        isScheduled.set(false);
+        RuntimeException failure = null;
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            }
+            catch (RuntimeException e) {
+                failure = addFailure(failure, e);
+            }
+        }
+        try {
+            afterBatch.run();
+        }
+        catch (RuntimeException e) {
+            failure = addFailure(failure, e);
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Keep the first exception of a batch, and the later ones as suppressed by it
+     */
+    private static RuntimeException addFailure(RuntimeException failure, RuntimeException e) {
+        if (failure == null)
+            return e;
+        failure.addSuppressed(e);
+        return failure;
+    }
+}
@@ -0,0 +1,196 @@
+package net;
+
+import core.Ocean;
+
+import java.io.*;
+import java.net.ProtocolException;
+
+/**
+ * Binary protocol. Every frame starts with a tag byte: a shot frame is the tag followed by
+ * row and column as unsigned 16-bit numbers, a result frame is a single byte holding the value
+ * of CellStatus, control frames are the tag alone. In a salvo game a move is a salvo frame: the tag, the number
+ * of shots as a byte, then the shots; it is answered with one frame of the tag, the number and the results
+ */
+class BinaryConnection extends Connection {
+    static final int SHOT = 0x01;       // Shot, followed by row and column
+    static final int READY = 0x02;      // Fleet is placed
+    static final int BYE = 0x03;        // Player leaves the game
+    static final int SALVO = 0x04;      // Shots of one move, followed by their number and the shots
+    static final int RESULTS = 0x05;    // Results of a salvo, followed by their number and the values of CellStatus
+    static final int RESULT = 0x10;     // Result of a shot, the low bits hold the value of CellStatus
+
+    private final DataInputStream reader;
+    private final DataOutputStream writer;
+
+    BinaryConnection(InputStream in, OutputStream out, String partnerName) {
+        super(partnerName);
+        reader = new DataInputStream(new BufferedInputStream(in));
+        writer = new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    @Override
+    public boolean isBinary() {
+        return true;
+    }
+
+    /**
+     * Read the tag of the next frame
+     * @param expected tag the caller waits for
+     * @throws EOFException if the partner has left
+     * @throws ProtocolException if the partner has sent another frame
+     */
+    private int readTag(int expected) throws IOException {
+        int tag = reader.readUnsignedByte();
+        if (tag == BYE)
+            throw new EOFException("Partner has left");
+        if (expected == RESULT ? (tag & ~0x0F) != RESULT : tag != expected)
+            throw new ProtocolException(String.format("Unexpected frame 0x%02x", tag));
+        return tag;
+    }
+
+    @Override
+    public void sendShot(int row, int column) throws IOException {
+        writer.writeByte(SHOT);
+        writer.writeShort(row);
+        writer.writeShort(column);
+        writer.flush();
+    }
+
+    @Override
+    public int readShot() throws IOException {
+        readTag(SHOT);
+        int row = reader.readUnsignedShort();
+        return packShot(row, reader.readUnsignedShort());
+    }
+
+    @Override
+    public void sendResult(Ocean.CellStatus result) throws IOException {
+        writer.writeByte(RESULT | result.getValue());
+        writer.flush();
+    }
+
+    @Override
+    public Ocean.CellStatus readResult() throws IOException {
+        int value = readTag(RESULT) & 0x0F;
+        if (value >= Ocean.CellStatus.values().length)
+            throw new ProtocolException("Unknown shot result");
+        return Ocean.CellStatus.values()[value];
+    }
+
+    @Override
+    public void sendSalvo(int[] shots, int count) throws IOException {
+        writer.writeByte(SALVO);
+        writer.writeByte(count);
+        for (int i = 0; i < count; ++i) {
+            writer.writeShort(getRow(shots[i]));
+            writer.writeShort(getColumn(shots[i]));
+        }
+        writer.flush();
+    }
+
+    @Override
+    public int readSalvo(int[] shots) throws IOException {
+        readTag(SALVO);
+        int count = readCount();
+        for (int i = 0; i < count; ++i) {
+            int row = reader.readUnsignedShort();
+            shots[i] = packShot(row, reader.readUnsignedShort());
+        }
+        return count;
+    }
+
+    @Override
+    public void sendResults(Ocean.CellStatus[] results, int count) throws IOException {
+        writer.writeByte(RESULTS);
+        writer.writeByte(count);
+        for (int i = 0; i < count; ++i)
+            writer.writeByte(results[i].getValue());
+        writer.flush();
+    }
+
+    @Override
+    public int readResults(Ocean.CellStatus[] results) throws IOException {
+        readTag(RESULTS);
+        int count = readCount();
+        for (int i = 0; i < count; ++i) {
+            int value = reader.readUnsignedByte();
+            if (value >= Ocean.CellStatus.values().length)
+                throw new ProtocolException("Unknown shot result");
+            results[i] = Ocean.CellStatus.values()[value];
+        }
+        return count;
+    }
+
+    /**
+     * Read the number of shots or results of a salvo frame
+     * @throws ProtocolException if the number is out of range
+     */
+    private int readCount() throws IOException {
+        int count = reader.readUnsignedByte();
+        if (count == 0 || count > Codec.MAX_SALVO)
+            throw new ProtocolException("Salvo of " + count + " shots");
+        return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int tag = reader.readUnsignedByte();
+        if (tag == SALVO || tag == RESULTS) {
+            count = readCount();
+            for (int i = 0; i < count; ++i) {
+                if (tag == SALVO) {
+                    int row = reader.readUnsignedShort();
+                    salvo[i] = packShot(row, reader.readUnsignedShort());
+                }
+                else {
+                    int value = reader.readUnsignedByte();
+                    if (value >= Ocean.CellStatus.values().length)
+                        throw new ProtocolException("Unknown shot result");
+                    results[i] = Ocean.CellStatus.values()[value];
+                }
+            }
+            return tag == SALVO ? Codec.SALVO : Codec.RESULTS;
+        }
+        if (tag == SHOT) {
+            int row = reader.readUnsignedShort();
+            shot = packShot(row, reader.readUnsignedShort());
+            return Codec.SHOT;
+        }
+        if (tag == READY)
+            return Codec.READY;
+        if (tag == BYE)
+            throw new EOFException("Partner has left");
+        if ((tag & ~0x0F) == RESULT && (tag & 0x0F) < Ocean.CellStatus.values().length) {
+            result = Ocean.CellStatus.values()[tag & 0x0F];
+            return Codec.RESULT;
+        }
+        throw new ProtocolException(String.format("Unexpected frame 0x%02x", tag));
+    }
+
+    @Override
+    public void sendReady() throws IOException {
+        writer.writeByte(READY);
+        writer.flush();
+    }
+
+    @Override
+    public void readReady() throws IOException {
+        readTag(READY);
+    }
+
+    /**
+     * Tell the partner that the player leaves and close the streams
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.writeByte(BYE);
+            writer.flush();
+        }
+        catch (IOException e) {
+            // Partner is already gone
+        }
+        writer.close();
+        reader.close();
+    }
+}
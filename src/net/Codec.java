@@ -0,0 +1,286 @@
+package net;
+
+import core.Ocean;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * Non-blocking encoder and decoder of the messages Connection exchanges, for selector-based servers.
+ * Messages are put into and taken from byte buffers; a message that has not fully arrived
+ * is left in the buffer. Instances keep the last decoded message, so each connection needs its own
+ */
+public abstract class Codec {
+    public static final int INCOMPLETE = 0;     // Message has not fully arrived
+    public static final int SHOT = 1;           // Shot, see getShot
+    public static final int RESULT = 2;         // Result of a shot, see getResult
+    public static final int READY = 3;          // Fleet is placed
+    public static final int BYE = 4;            // Partner leaves, binary protocol only
+    public static final int SALVO = 5;          // Several shots of one move, see getSalvo; binary protocol only
+    public static final int RESULTS = 6;        // Results of a salvo, see getResults; binary protocol only
+    public static final int MAX_SALVO = 64;     // Most shots in one salvo
+
+    int shot;                                   // Last decoded shot, packed by Connection.packShot
+    Ocean.CellStatus result;                    // Last decoded result
+    final int[] salvo = new int[MAX_SALVO];     // Last decoded salvo, shots packed by Connection.packShot
+    final Ocean.CellStatus[] results = new Ocean.CellStatus[MAX_SALVO];    // Last decoded results of a salvo
+    int count;                                  // Number of shots or results in the last salvo frame
+
+    /**
+     * Create codec of the protocol agreed in the handshake
+     * @param binary pass true for binary frames, false for text lines
+     * @return new codec
+     */
+    public static Codec create(boolean binary) {
+        return binary ? new BinaryCodec() : new TextCodec();
+    }
+
+    /**
+     * Get the last decoded shot
+     * @return shot packed by Connection.packShot
+     */
+    public int getShot() {
+        return shot;
+    }
+
+    /**
+     * Get the last decoded result
+     * @return result of a shot
+     */
+    public Ocean.CellStatus getResult() {
+        return result;
+    }
+
+    /**
+     * Get shots of the last decoded salvo. The array is owned by the codec and reused by the next salvo
+     * @return shots packed by Connection.packShot, the first getCount elements are valid
+     */
+    public int[] getSalvo() {
+        return salvo;
+    }
+
+    /**
+     * Get results of the last decoded salvo. The array is owned by the codec and reused by the next results
+     * @return results of the shots in the order of the salvo, the first getCount elements are valid
+     */
+    public Ocean.CellStatus[] getResults() {
+        return results;
+    }
+
+    /**
+     * Get number of shots or results in the last decoded salvo frame
+     * @return number of shots or results
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Decode the next message
+     * @param in buffer in read mode; the position is moved past the message if it is complete
+     * @return kind of the message, INCOMPLETE if it has not fully arrived
+     * @throws ProtocolException if the bytes are not a message
+     */
+    public abstract int decode(ByteBuffer in) throws ProtocolException;
+
+    public abstract void putShot(ByteBuffer out, int row, int column);
+
+    public abstract void putResult(ByteBuffer out, Ocean.CellStatus result);
+
+    public abstract void putReady(ByteBuffer out);
+
+    /**
+     * Put several shots of one move
+     * @param out buffer in write mode
+     * @param shots shots packed by Connection.packShot
+     * @param count number of shots, at most MAX_SALVO
+     * @throws IllegalStateException if the protocol has no salvos
+     */
+    public abstract void putSalvo(ByteBuffer out, int[] shots, int count);
+
+    /**
+     * Put results of a salvo
+     * @param out buffer in write mode
+     * @param results results in the order of the salvo
+     * @param count number of results, at most MAX_SALVO
+     * @throws IllegalStateException if the protocol has no salvos
+     */
+    public abstract void putResults(ByteBuffer out, Ocean.CellStatus[] results, int count);
+
+    /**
+     * Frames of BinaryConnection
+     */
+    private static class BinaryCodec extends Codec {
+        @Override
+        public int decode(ByteBuffer in) throws ProtocolException {
+            if (!in.hasRemaining())
+                return INCOMPLETE;
+            int tag = in.get(in.position()) & 0xFF;
+            if (tag == BinaryConnection.SHOT) {
+                if (in.remaining() < 5)
+                    return INCOMPLETE;
+                in.get();
+                int row = in.getShort() & 0xFFFF;
+                shot = Connection.packShot(row, in.getShort() & 0xFFFF);
+                return SHOT;
+            }
+            if (tag == BinaryConnection.SALVO || tag == BinaryConnection.RESULTS) {
+                if (in.remaining() < 2)
+                    return INCOMPLETE;
+                int size = in.get(in.position() + 1) & 0xFF;
+                if (size == 0 || size > MAX_SALVO)
+                    throw new ProtocolException("Salvo of " + size + " shots");
+                if (in.remaining() < 2 + size * (tag == BinaryConnection.SALVO ? 4 : 1))
+                    return INCOMPLETE;
+                in.position(in.position() + 2);
+                count = size;
+                if (tag == BinaryConnection.SALVO) {
+                    for (int i = 0; i < size; ++i) {
+                        int row = in.getShort() & 0xFFFF;
+                        salvo[i] = Connection.packShot(row, in.getShort() & 0xFFFF);
+                    }
+                    return SALVO;
+                }
+                for (int i = 0; i < size; ++i) {
+                    int value = in.get() & 0xFF;
+                    if (value >= Ocean.CellStatus.values().length)
+                        throw new ProtocolException("Unknown shot result");
+                    results[i] = Ocean.CellStatus.values()[value];
+                }
+                return RESULTS;
+            }
+            in.get();
+            if (tag == BinaryConnection.READY)
+                return READY;
+            if (tag == BinaryConnection.BYE)
+                return BYE;
+            if ((tag & ~0x0F) == BinaryConnection.RESULT && (tag & 0x0F) < Ocean.CellStatus.values().length) {
+                result = Ocean.CellStatus.values()[tag & 0x0F];
+                return RESULT;
+            }
+            throw new ProtocolException(String.format("Unexpected frame 0x%02x", tag));
+        }
+
+        @Override
+        public void putShot(ByteBuffer out, int row, int column) {
+            out.put((byte)BinaryConnection.SHOT).putShort((short)row).putShort((short)column);
+        }
+
+        @Override
+        public void putResult(ByteBuffer out, Ocean.CellStatus result) {
+            out.put((byte)(BinaryConnection.RESULT | result.getValue()));
+        }
+
+        @Override
+        public void putReady(ByteBuffer out) {
+            out.put((byte)BinaryConnection.READY);
+        }
+
+        @Override
+        public void putSalvo(ByteBuffer out, int[] shots, int count) {
+            out.put((byte)BinaryConnection.SALVO).put((byte)count);
+            for (int i = 0; i < count; ++i)
+                out.putShort((short)Connection.getRow(shots[i])).putShort((short)Connection.getColumn(shots[i]));
+        }
+
+        @Override
+        public void putResults(ByteBuffer out, Ocean.CellStatus[] results, int count) {
+            out.put((byte)BinaryConnection.RESULTS).put((byte)count);
+            for (int i = 0; i < count; ++i)
+                out.put((byte)results[i].getValue());
+        }
+    }
+
+    /**
+     * Lines of TextConnection: "row column" is a shot, a single number is a result,
+     * an empty line means the fleet is placed
+     */
+    private static class TextCodec extends Codec {
+        private static final int MAX_LINE = 32;     // Longest line of a valid message
+
+        @Override
+        public int decode(ByteBuffer in) throws ProtocolException {
+            int start = in.position(), end = start;
+            while (end < in.limit() && in.get(end) != '\n')
+                ++end;
+            if (end - start > MAX_LINE)
+                throw new ProtocolException("Line is too long");
+            if (end == in.limit())
+                return INCOMPLETE;
+            in.position(end + 1);
+            if (end > start && in.get(end - 1) == '\r')
+                --end;
+            // Parse at most two non-negative numbers separated by spaces
+            int count = 0, first = 0, second = 0;
+            boolean inNumber = false;
+            for (int i = start; i < end; ++i) {
+                int c = in.get(i);
+                if (c == ' ') {
+                    inNumber = false;
+                    continue;
+                }
+                if (c < '0' || c > '9')
+                    throw new ProtocolException("Unexpected character in message");
+                if (!inNumber) {
+                    inNumber = true;
+                    if (++count > 2)
+                        throw new ProtocolException("Too many numbers in message");
+                }
+                if (count == 1)
+                    first = first * 10 + c - '0';
+                else
+                    second = second * 10 + c - '0';
+                if (first > 0xFFFF || second > 0xFFFF)
+                    throw new ProtocolException("Number is too large");
+            }
+            if (count == 0)
+                return READY;
+            if (count == 2) {
+                shot = Connection.packShot(first, second);
+                return SHOT;
+            }
+            if (first >= Ocean.CellStatus.values().length)
+                throw new ProtocolException("Unknown shot result");
+            result = Ocean.CellStatus.values()[first];
+            return RESULT;
+        }
+
+        /**
+         * Put a non-negative number as decimal digits
+         */
+        private static void putNumber(ByteBuffer out, int number) {
+            if (number >= 10)
+                putNumber(out, number / 10);
+            out.put((byte)('0' + number % 10));
+        }
+
+        @Override
+        public void putShot(ByteBuffer out, int row, int column) {
+            putNumber(out, row);
+            out.put((byte)' ');
+            putNumber(out, column);
+            out.put((byte)'\n');
+        }
+
+        @Override
+        public void putResult(ByteBuffer out, Ocean.CellStatus result) {
+            putNumber(out, result.getValue());
+            out.put((byte)'\n');
+        }
+
+        @Override
+        public void putReady(ByteBuffer out) {
+            out.put((byte)'\n');
+        }
+
+        @Override
+        public void putSalvo(ByteBuffer out, int[] shots, int count) {
+            throw new IllegalStateException("Salvos need the binary protocol");
+        }
+
+        @Override
+        public void putResults(ByteBuffer out, Ocean.CellStatus[] results, int count) {
+            throw new IllegalStateException("Salvos need the binary protocol");
+        }
+    }
+}
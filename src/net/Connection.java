@@ -0,0 +1,428 @@
+package net;
+
+import core.Ocean;
+
+import java.io.*;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.nio.charset.Charset;
+
+/**
+ * Connection between two players. Players exchange names first, one line each, the client first.
+ * A client that supports the binary protocol appends BINARY_OFFER to its name; a server that supports it
+ * answers with the same suffix, and both switch to binary frames. Otherwise the connection stays
+ * in the text mode of old clients: shots are "row column" lines, results are values of CellStatus
+ * and readiness is an empty line. A client that wants to play another player rather than the server
+ * inserts MATCH_OFFER with its rating before the binary offer; a lobby server answers once a partner is found,
+ * with the partner's name followed by TURN and 1 or 2, the order of moves. A binary client may also insert
+ * SALVO_OFFER before the binary offer to play the salvo variant, and the server accepts it by inserting it
+ * into the answer the same way. A binary client also inserts RESUME_OFFER after the rating; a server that can keep
+ * a game over a dropped connection inserts TOKEN with the session token after the order of moves, and the client
+ * gets the game back with reconnect
+ */
+public abstract class Connection implements Closeable, GameSession.Transport {
+    public static final String BINARY_OFFER = "\tproto=bin1";   // Suffix of the name offering binary frames
+    public static final String MATCH_OFFER = "\tmatch=";        // Suffix of the name asking for a partner, before rating
+    public static final String TURN = "\tturn=";                // Suffix of the partner's name, before the order of moves
+    public static final String SALVO_OFFER = "\tsalvo";         // Suffix of the name offering the salvo variant
+    public static final String RESUME_OFFER = "\tresume";       // Suffix of the name asking for a session token
+    public static final String RESUME = "\tresume=";            // Suffix of the name resuming a game, before the token
+    public static final String TOKEN = "\ttoken=";              // Suffix of the partner's name, before the token
+
+    private final String partnerName;
+    boolean movesFirst;                 // true, if the player shoots first
+    boolean isSalvo;                    // true, if a move is a salvo of several shots
+    int shot;                           // Last shot received by read
+    Ocean.CellStatus result;            // Last result received by read
+    final int[] salvo = new int[Codec.MAX_SALVO];   // Last salvo received by read
+    final Ocean.CellStatus[] results = new Ocean.CellStatus[Codec.MAX_SALVO];   // Last results received by read
+    int count;                          // Number of shots or results received by read
+    String resumeToken;                 // Token to resume the game on another connection, null if the server has none
+    int partnerShotsReceived, partnerResultsReceived;   // Messages the partner has handled, after reconnect
+
+    Connection(String partnerName) {
+        this.partnerName = partnerName;
+    }
+
+    /**
+     * Connect to the server, offering the binary protocol
+     * @param socket socket connected to the server
+     * @param myName name of the player
+     * @return connection, binary if the server supports it
+     * @throws IOException if the server is lost during the handshake
+     */
+    public static Connection connect(Socket socket, String myName) throws IOException {
+        return connect(socket.getInputStream(), socket.getOutputStream(), myName, true);
+    }
+
+    /**
+     * Connect to the server
+     * @param in stream from the server
+     * @param out stream to the server
+     * @param myName name of the player
+     * @param offerBinary pass true to offer the binary protocol, false to speak text like old clients
+     * @return connection, binary if both sides support it
+     * @throws IOException if the server is lost during the handshake
+     */
+    public static Connection connect(InputStream in, OutputStream out, String myName, boolean offerBinary)
+            throws IOException {
+        return connect(in, out, myName, offerBinary, -1);
+    }
+
+    /**
+     * Connect to the server, asking it for another player as a partner if the server has a lobby
+     * @param in stream from the server
+     * @param out stream to the server
+     * @param myName name of the player
+     * @param offerBinary pass true to offer the binary protocol, false to speak text like old clients
+     * @param rating rating of the player for the lobby, negative to play the server itself
+     * @return connection, binary if both sides support it
+     * @throws IOException if the server is lost during the handshake
+     */
+    public static Connection connect(InputStream in, OutputStream out, String myName, boolean offerBinary, int rating)
+            throws IOException {
+        return connect(in, out, myName, offerBinary, rating, false);
+    }
+
+    /**
+     * Connect to the server, asking for another player as a partner or for the salvo variant
+     * @param in stream from the server
+     * @param out stream to the server
+     * @param myName name of the player
+     * @param offerBinary pass true to offer the binary protocol, false to speak text like old clients
+     * @param rating rating of the player for the lobby, negative to play the server itself
+     * @param offerSalvo pass true to offer the salvo variant, it needs the binary protocol
+     * @return connection, binary and salvo if the server has accepted them
+     * @throws IOException if the server is lost during the handshake
+     */
+    public static Connection connect(InputStream in, OutputStream out, String myName, boolean offerBinary, int rating,
+                                     boolean offerSalvo) throws IOException {
+        if (offerSalvo && !offerBinary)
+            throw new IllegalArgumentException("Salvos need the binary protocol");
+        writeLine(out, myName + (rating >= 0 ? MATCH_OFFER + rating : "") + (offerBinary ? RESUME_OFFER : "") +
+                (offerSalvo ? SALVO_OFFER : "") + (offerBinary ? BINARY_OFFER : ""));
+        String reply = readLine(in);
+        boolean binary = offerBinary && reply.endsWith(BINARY_OFFER);
+        if (binary)
+            reply = reply.substring(0, reply.length() - BINARY_OFFER.length());
+        boolean salvo = binary && offerSalvo && reply.endsWith(SALVO_OFFER);
+        if (salvo)
+            reply = reply.substring(0, reply.length() - SALVO_OFFER.length());
+        String token = null;
+        int tokenAt = reply.lastIndexOf(TOKEN);
+        if (binary && tokenAt >= 0) {
+            token = reply.substring(tokenAt + TOKEN.length());
+            reply = reply.substring(0, tokenAt);
+        }
+        boolean first = true;
+        int turn = reply.lastIndexOf(TURN);
+        if (rating >= 0 && turn >= 0) {
+            first = !reply.substring(turn + TURN.length()).equals("2");
+            reply = reply.substring(0, turn);
+        }
+        Connection connection = binary ? new BinaryConnection(in, out, reply) : new TextConnection(in, out, reply);
+        connection.movesFirst = first;
+        connection.isSalvo = salvo;
+        connection.resumeToken = token;
+        return connection;
+    }
+
+    /**
+     * Connect to the server again to go on with a game whose connection is lost. The server answers
+     * with the token and with the numbers of messages it has handled, see GameSession.resume
+     * @param in stream from the server
+     * @param out stream to the server
+     * @param myName name of the player
+     * @param token session token received by the first connection
+     * @param session game to go on with
+     * @return binary connection to the server
+     * @throws ProtocolException if the server does not know the game any more
+     * @throws IOException if the server is lost during the handshake
+     */
+    public static Connection reconnect(InputStream in, OutputStream out, String myName, String token,
+                                       GameSession session) throws IOException {
+        writeLine(out, myName + RESUME + token + "." + session.getShotsReceived() + "." +
+                session.getResultsReceived() + BINARY_OFFER);
+        String reply = readLine(in);
+        int tokenAt = reply.lastIndexOf(TOKEN);
+        if (!reply.endsWith(BINARY_OFFER) || tokenAt < 0)
+            throw new ProtocolException("Game cannot be resumed");
+        String[] state = reply.substring(tokenAt + TOKEN.length(), reply.length() - BINARY_OFFER.length())
+                .split("\\.");
+        Connection connection = new BinaryConnection(in, out, reply.substring(0, tokenAt));
+        try {
+            if (state.length != 3 || !state[0].equals(token))
+                throw new NumberFormatException();
+            connection.partnerShotsReceived = Integer.parseInt(state[1]);
+            connection.partnerResultsReceived = Integer.parseInt(state[2]);
+        }
+        catch (NumberFormatException e) {
+            throw new ProtocolException("Game cannot be resumed");
+        }
+        connection.isSalvo = session.isSalvo();
+        connection.resumeToken = token;
+        return connection;
+    }
+
+    /**
+     * Accept a client connected to the server
+     * @param socket socket connected to the client
+     * @param myName name of the player
+     * @return connection, binary if the client has offered it
+     * @throws IOException if the client is lost during the handshake
+     */
+    public static Connection accept(Socket socket, String myName) throws IOException {
+        return accept(socket.getInputStream(), socket.getOutputStream(), myName);
+    }
+
+    /**
+     * Accept a client connected to the server
+     * @param in stream from the client
+     * @param out stream to the client
+     * @param myName name of the player
+     * @return connection, binary if the client has offered it
+     * @throws IOException if the client is lost during the handshake
+     */
+    public static Connection accept(InputStream in, OutputStream out, String myName) throws IOException {
+        String request = readLine(in);
+        boolean binary = request.endsWith(BINARY_OFFER);
+        if (binary)
+            request = request.substring(0, request.length() - BINARY_OFFER.length());
+        // There is no lobby and no salvo variant here: the client plays this player and moves first as usual
+        if (request.endsWith(SALVO_OFFER))
+            request = request.substring(0, request.length() - SALVO_OFFER.length());
+        if (request.endsWith(RESUME_OFFER))
+            request = request.substring(0, request.length() - RESUME_OFFER.length());
+        int match = request.lastIndexOf(MATCH_OFFER);
+        if (match >= 0)
+            request = request.substring(0, match);
+        writeLine(out, binary ? myName + BINARY_OFFER : myName);
+        return binary ? new BinaryConnection(in, out, request) : new TextConnection(in, out, request);
+    }
+
+    /**
+     * Read one handshake line byte by byte, so nothing after it is buffered
+     * @throws EOFException if the stream ends before the end of line
+     */
+    static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0)
+                throw new EOFException("Connection closed during handshake");
+            line.write(b);
+        }
+        String result = line.toString(Charset.defaultCharset().name());
+        return result.endsWith("\r") ? result.substring(0, result.length() - 1) : result;
+    }
+
+    /**
+     * Write one handshake line in the charset PrintWriter uses
+     */
+    static void writeLine(OutputStream out, String line) throws IOException {
+        out.write((line + System.lineSeparator()).getBytes(Charset.defaultCharset()));
+        out.flush();
+    }
+
+    /**
+     * Pack coordinates of a shot into one int
+     * @param row row of the shot
+     * @param column column of the shot
+     * @return packed shot
+     */
+    public static int packShot(int row, int column) {
+        return row << 16 | column;
+    }
+
+    /**
+     * Get row of a packed shot
+     * @param shot shot packed by packShot
+     * @return row of the shot
+     */
+    public static int getRow(int shot) {
+        return shot >>> 16;
+    }
+
+    /**
+     * Get column of a packed shot
+     * @param shot shot packed by packShot
+     * @return column of the shot
+     */
+    public static int getColumn(int shot) {
+        return shot & 0xFFFF;
+    }
+
+    /**
+     * Get name of the partner received during the handshake
+     * @return partner's name
+     */
+    public String getPartnerName() {
+        return partnerName;
+    }
+
+    /**
+     * Check, if the player shoots first: the client does unless the lobby server has said otherwise
+     * @return true, if the player moves first, false if the partner does
+     */
+    public boolean movesFirst() {
+        return movesFirst;
+    }
+
+    /**
+     * Check, if the game is the salvo variant, where a move is a salvo of shots, one per own ship afloat
+     * @return true for salvos, false for one shot per move
+     */
+    public boolean isSalvo() {
+        return isSalvo;
+    }
+
+    /**
+     * Get token to resume the game with reconnect if this connection is lost
+     * @return session token, null if the server cannot resume games
+     */
+    public String getResumeToken() {
+        return resumeToken;
+    }
+
+    /**
+     * Get number of own shot messages the server has handled, known after reconnect
+     * @return number of messages
+     */
+    public int getPartnerShotsReceived() {
+        return partnerShotsReceived;
+    }
+
+    /**
+     * Get number of own result messages the server has handled, known after reconnect
+     * @return number of messages
+     */
+    public int getPartnerResultsReceived() {
+        return partnerResultsReceived;
+    }
+
+    /**
+     * Check, if the connection uses binary frames
+     * @return true for binary frames, false for text lines
+     */
+    public abstract boolean isBinary();
+
+    /**
+     * Send a shot to the partner
+     * @param row row of the shot
+     * @param column column of the shot
+     * @throws IOException if the partner is lost
+     */
+    public abstract void sendShot(int row, int column) throws IOException;
+
+    /**
+     * Wait for the partner's shot
+     * @return shot packed by packShot
+     * @throws IOException if the partner is lost or has sent another message
+     */
+    public abstract int readShot() throws IOException;
+
+    /**
+     * Send the result of the partner's shot
+     * @param result result of the shot
+     * @throws IOException if the partner is lost
+     */
+    public abstract void sendResult(Ocean.CellStatus result) throws IOException;
+
+    /**
+     * Wait for the result of own shot
+     * @return result of the shot
+     * @throws IOException if the partner is lost or has sent another message
+     */
+    public abstract Ocean.CellStatus readResult() throws IOException;
+
+    /**
+     * Send shots of one move in one frame
+     * @param shots shots packed by packShot
+     * @param count number of shots, at most Codec.MAX_SALVO
+     * @throws IOException if the partner is lost or the protocol has no salvos
+     */
+    public abstract void sendSalvo(int[] shots, int count) throws IOException;
+
+    /**
+     * Wait for the partner's salvo
+     * @param shots array receiving shots packed by packShot, of at least Codec.MAX_SALVO elements
+     * @return number of shots
+     * @throws IOException if the partner is lost or has sent another message
+     */
+    public abstract int readSalvo(int[] shots) throws IOException;
+
+    /**
+     * Send results of the partner's salvo in one frame
+     * @param results results in the order of the salvo
+     * @param count number of results
+     * @throws IOException if the partner is lost or the protocol has no salvos
+     */
+    public abstract void sendResults(Ocean.CellStatus[] results, int count) throws IOException;
+
+    /**
+     * Wait for results of own salvo
+     * @param results array receiving results, of at least Codec.MAX_SALVO elements
+     * @return number of results
+     * @throws IOException if the partner is lost or has sent another message
+     */
+    public abstract int readResults(Ocean.CellStatus[] results) throws IOException;
+
+    /**
+     * Wait for the next message of any kind, for a thread that reads everything the partner sends
+     * @return Codec.SHOT, Codec.RESULT, Codec.READY, Codec.SALVO or Codec.RESULTS
+     * @throws IOException if the partner is lost or has sent something that is not a message
+     */
+    public abstract int read() throws IOException;
+
+    /**
+     * Get the shot received by the last read
+     * @return shot packed by packShot
+     */
+    public int getShot() {
+        return shot;
+    }
+
+    /**
+     * Get the result received by the last read
+     * @return result of a shot
+     */
+    public Ocean.CellStatus getResult() {
+        return result;
+    }
+
+    /**
+     * Get the salvo received by the last read. The array is reused by the next read
+     * @return shots packed by packShot, the first getCount elements are valid
+     */
+    public int[] getSalvo() {
+        return salvo;
+    }
+
+    /**
+     * Get results of a salvo received by the last read. The array is reused by the next read
+     * @return results, the first getCount elements are valid
+     */
+    public Ocean.CellStatus[] getResults() {
+        return results;
+    }
+
+    /**
+     * Get number of shots or results received by the last read
+     * @return number of shots or results
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Notify the partner that the fleet is placed
+     * @throws IOException if the partner is lost
+     */
+    public abstract void sendReady() throws IOException;
+
+    /**
+     * Wait until the partner has placed the fleet
+     * @throws IOException if the partner is lost or has sent another message
+     */
+    public abstract void readReady() throws IOException;
+}
@@ -0,0 +1,696 @@
+package net;
+
+import core.Battlefield;
+import core.GameRules;
+import core.Ocean;
+import core.ShotBoard;
+import core.ShotOutcome;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * State of one game between two players, independent of how it is shown and how messages travel.
+ * The player places the fleet, both players report readiness, then they take turns: a shot is answered
+ * with its result, and the turn passes to the partner. In the salvo variant a move is a salvo of as many shots
+ * as the player has ships afloat, answered with all their results at once. Messages from the partner are fed
+ * with onMessage, own messages go out through a Transport. A game that has lost its connection can go on over
+ * a new one with resume; the session, or its compact snapshot, tells which messages have to be sent again.
+ * Not thread-safe: all calls must come from one thread
+ */
+public class GameSession {
+    private static final int SNAPSHOT_VERSION = 1;
+
+    public enum State {
+        Connect,    // Connection
+        Setup,      // Setting up the fleet
+        WaitSetup,  // Wait for partner to setup
+        Game,       // Game itself
+        EndOfGame   // Game has ended
+    }
+
+    /**
+     * Way messages are sent to the partner
+     */
+    public interface Transport {
+        void sendShot(int row, int column) throws IOException;
+
+        void sendResult(Ocean.CellStatus result) throws IOException;
+
+        void sendReady() throws IOException;
+
+        void sendSalvo(int[] shots, int count) throws IOException;
+
+        void sendResults(Ocean.CellStatus[] results, int count) throws IOException;
+    }
+
+    /**
+     * Receiver of game events, called on the thread that drives the session
+     */
+    public interface Listener {
+        /**
+         * Partner has shot at own ocean and the result has been sent back
+         * @param outcome result of the shot packed by ShotOutcome
+         */
+        default void onPartnerShot(int row, int column, long outcome) {
+        }
+
+        /**
+         * Result of own shot has arrived, the turn has passed to the partner
+         */
+        default void onShotResult(int row, int column, Ocean.CellStatus result) {
+        }
+
+        /**
+         * Turn has passed to the player, i.e. both fleets are placed or the partner's shot is answered
+         */
+        default void onMyTurn() {
+        }
+
+        /**
+         * One of the fleets has been sunk
+         * @param won true, if the player has sunk the partner's fleet
+         */
+        default void onGameOver(boolean won) {
+        }
+
+        /**
+         * Partner is lost or has broken the protocol, the game has ended
+         */
+        default void onDisconnected() {
+        }
+    }
+
+    private final Battlefield ocean;            // Own ships
+    private final ShotBoard board;              // Results of own shots
+    private Transport transport;
+    private final boolean isSalvo;              // true, if a move is a salvo
+    private Listener listener = new Listener() {};
+    private TurnStats stats = TurnStats.getGlobal();
+    private State state = State.Connect;
+    private boolean isMyTurn;
+    private boolean isPartnerReady;             // Partner has placed the fleet
+    private boolean isWaitingResult;            // Own shot has been sent, its result has not arrived
+    private int shotRow, shotColumn;            // Own shot waiting for its result
+    private int[] salvo;                        // Own salvo waiting for its results, shots packed by Connection
+    private int salvoSize;                      // Number of shots in the own salvo
+    private int partnerShots;                   // Partner's shots, not counting duplicates
+    private long shotSentAt;                    // System.nanoTime() when own shot or salvo was sent
+    private long receivedAt;                    // System.nanoTime() when the reader took the next message, or 0
+    private int shotsSent, resultsSent;         // Messages with own shots or salvos and with results sent
+    private int shotsReceived, resultsReceived; // Messages with partner's shots or salvos and with results received
+    private Ocean.CellStatus[] lastResults = new Ocean.CellStatus[1];  // Results sent last, to send them again
+    private int lastResultCount;
+    private boolean isSuspended;                // Game has lost its connection and may be resumed
+    private Connection listened;                // Connection read by the last listen, others are stale
+
+    /**
+     * Create session
+     * @param ocean own ocean, the fleet is placed on it during Setup
+     * @param transport way to send messages to the partner
+     * @param movesFirst true, if the player shoots first, which is the client in GameWindow
+     */
+    public GameSession(Battlefield ocean, Transport transport, boolean movesFirst) {
+        this(ocean, transport, movesFirst, false);
+    }
+
+    /**
+     * Create session
+     * @param ocean own ocean, the fleet is placed on it during Setup
+     * @param transport way to send messages to the partner
+     * @param movesFirst true, if the player shoots first
+     * @param isSalvo true for the salvo variant, see Connection.isSalvo
+     */
+    public GameSession(Battlefield ocean, Transport transport, boolean movesFirst, boolean isSalvo) {
+        this.ocean = ocean;
+        this.transport = transport;
+        this.isSalvo = isSalvo;
+        board = new ShotBoard(ocean.getRules().getSize());
+        isMyTurn = movesFirst;
+        if (isSalvo)
+            salvo = new int[Codec.MAX_SALVO];
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Set where latencies and counters of the session go, the global statistics by default
+     * @param stats statistics to fill
+     */
+    public void setStats(TurnStats stats) {
+        this.stats = stats;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Battlefield getOcean() {
+        return ocean;
+    }
+
+    /**
+     * Get results of own shots
+     * @return board of the partner's battlefield
+     */
+    public ShotBoard getBoard() {
+        return board;
+    }
+
+    /**
+     * Check, if the player may shoot now
+     * @return true, if the game is on, it is the player's turn, and no shot is waiting for its result
+     */
+    public boolean isMyTurn() {
+        return state == State.Game && isMyTurn && !isWaitingResult;
+    }
+
+    public boolean isSalvo() {
+        return isSalvo;
+    }
+
+    /**
+     * Get number of shots the player may fire in one salvo now
+     * @return number of own ships afloat, at most Codec.MAX_SALVO
+     */
+    public int getSalvoSize() {
+        return Math.min(ocean.getShipsAfloat(), Codec.MAX_SALVO);
+    }
+
+    public int getMyShots() {
+        return board.getShots();
+    }
+
+    public int getPartnerShots() {
+        return partnerShots;
+    }
+
+    /**
+     * Start placing the fleet
+     */
+    public void beginSetup() {
+        if (state == State.Connect)
+            state = State.Setup;
+    }
+
+    /**
+     * Finish placing the fleet and notify the partner
+     * @throws IOException if the partner is lost
+     */
+    public void ready() throws IOException {
+        if (state != State.Setup)
+            throw new IllegalStateException("Fleet can only be confirmed during setup");
+        state = State.WaitSetup;
+        transport.sendReady();
+        if (isPartnerReady)
+            startGame();
+    }
+
+    private void startGame() {
+        state = State.Game;
+        if (isMyTurn)
+            listener.onMyTurn();
+    }
+
+    /**
+     * Shoot at the partner's battlefield, the result arrives later through onMessage
+     * @param row row of the shot
+     * @param column column of the shot
+     * @return true, if the shot has been sent, false if it is not the player's turn
+     * @throws IOException if the partner is lost
+     */
+    public boolean shoot(int row, int column) throws IOException {
+        if (isSalvo)
+            throw new IllegalStateException("A move of the salvo variant is a salvo");
+        if (!isMyTurn())
+            return false;
+        isWaitingResult = true;
+        shotRow = row;
+        shotColumn = column;
+        shotSentAt = System.nanoTime();
+        ++shotsSent;
+        transport.sendShot(row, column);
+        stats.onShotsFired(1);
+        return true;
+    }
+
+    /**
+     * Fire a salvo at the partner's battlefield in the salvo variant, the results arrive later through onResults
+     * @param shots shots packed by Connection.packShot
+     * @param count number of shots, from 1 to getSalvoSize
+     * @return true, if the salvo has been sent, false if it is not the player's turn
+     * @throws IOException if the partner is lost
+     */
+    public boolean shoot(int[] shots, int count) throws IOException {
+        if (!isSalvo)
+            throw new IllegalStateException("Salvos are played in the salvo variant only");
+        if (count < 1 || count > getSalvoSize())
+            throw new IllegalArgumentException("Salvo must have from 1 to " + getSalvoSize() + " shots");
+        if (!isMyTurn())
+            return false;
+        isWaitingResult = true;
+        System.arraycopy(shots, 0, salvo, 0, count);
+        salvoSize = count;
+        shotSentAt = System.nanoTime();
+        ++shotsSent;
+        transport.sendSalvo(salvo, count);
+        stats.onShotsFired(count);
+        return true;
+    }
+
+    /**
+     * Handle the partner's salvo: shoot at own ocean as a batch and answer with all results in one message
+     * @param shots shots packed by Connection.packShot
+     * @param count number of shots
+     * @throws ProtocolException if the salvo is not expected now or has too many shots
+     * @throws IOException if the partner is lost while answering
+     */
+    public void onSalvo(int[] shots, int count) throws IOException {
+        long start = takeReceivedAt();
+        if (state == State.EndOfGame)
+            return;
+        if (!isSalvo || state != State.Game || isMyTurn)
+            throw new ProtocolException("Partner has shot out of turn");
+        // The partner fires one shot per ship afloat, and own shots tell how many the partner has lost
+        if (count < 1 || count > ocean.getRules().getFleetSize() - board.getShipsDestroyed())
+            throw new ProtocolException("Salvo of " + count + " shots");
+        int[] rows = new int[count], columns = new int[count];
+        for (int i = 0; i < count; ++i) {
+            rows[i] = Connection.getRow(shots[i]);
+            columns[i] = Connection.getColumn(shots[i]);
+            if (rows[i] >= ocean.getRules().getSize() || columns[i] >= ocean.getRules().getSize())
+                throw new ProtocolException("Shot is outside the battlefield");
+        }
+        long[] outcomes = new long[count];
+        ocean.shootAt(rows, columns, count, outcomes);
+        ++shotsReceived;
+        Ocean.CellStatus[] results = new Ocean.CellStatus[count];
+        lastResults = results;
+        lastResultCount = count;
+        for (int i = 0; i < count; ++i) {
+            results[i] = ShotOutcome.toCellStatus(outcomes[i]);
+            if (ShotOutcome.getKind(outcomes[i]) != ShotOutcome.DUPLICATE)
+                ++partnerShots;
+            else
+                stats.onDuplicate();
+        }
+        ++resultsSent;
+        transport.sendResults(results, count);
+        stats.onShotsAnswered(count);
+        stats.recordResponse(System.nanoTime() - start);
+        isMyTurn = true;
+        for (int i = 0; i < count; ++i)
+            listener.onPartnerShot(rows[i], columns[i], outcomes[i]);
+        if (ocean.isGameOver())
+            endGame(false);
+        else
+            listener.onMyTurn();
+    }
+
+    /**
+     * Handle results of own salvo
+     * @param results results in the order of the salvo
+     * @param count number of results
+     * @throws ProtocolException if the results are not expected now or do not match the salvo
+     */
+    public void onResults(Ocean.CellStatus[] results, int count) throws ProtocolException {
+        if (state == State.EndOfGame)
+            return;
+        if (!isSalvo || !isWaitingResult)
+            throw new ProtocolException("Results without a salvo");
+        if (count != salvoSize)
+            throw new ProtocolException("Results of " + count + " shots for a salvo of " + salvoSize);
+        stats.recordRoundTrip(System.nanoTime() - shotSentAt);
+        ++resultsReceived;
+        isWaitingResult = false;
+        isMyTurn = false;
+        for (int i = 0; i < count; ++i) {
+            int row = Connection.getRow(salvo[i]), column = Connection.getColumn(salvo[i]);
+            board.record(row, column, results[i]);
+            listener.onShotResult(row, column, results[i]);
+        }
+        if (board.getShipsDestroyed() >= ocean.getRules().getFleetSize())
+            endGame(true);
+    }
+
+    /**
+     * Handle a message from the partner
+     * @param message kind of the message, see Codec
+     * @param shot shot packed by Connection.packShot, for Codec.SHOT
+     * @param result result of own shot, for Codec.RESULT
+     * @throws ProtocolException if the message is not expected now
+     * @throws IOException if the partner is lost while answering
+     */
+    public void onMessage(int message, int shot, Ocean.CellStatus result) throws IOException {
+        long start = takeReceivedAt();
+        if (state == State.EndOfGame)
+            return;
+        switch (message) {
+            case Codec.READY:
+                if (isPartnerReady)
+                    throw new ProtocolException("Partner is already ready");
+                isPartnerReady = true;
+                if (state == State.WaitSetup)
+                    startGame();
+                break;
+
+            case Codec.SHOT:
+                onPartnerShot(Connection.getRow(shot), Connection.getColumn(shot), start);
+                break;
+
+            case Codec.RESULT:
+                onShotResult(result);
+                break;
+
+            default:
+                throw new ProtocolException("Unexpected message " + message);
+        }
+    }
+
+    /**
+     * Get the time the reader took the message being handled, or now if the message has not come from the reader
+     */
+    private long takeReceivedAt() {
+        long start = receivedAt != 0 ? receivedAt : System.nanoTime();
+        receivedAt = 0;
+        return start;
+    }
+
+    private void onPartnerShot(int row, int column, long start) throws IOException {
+        if (isSalvo || state != State.Game || isMyTurn)
+            throw new ProtocolException("Partner has shot out of turn");
+        if (row >= ocean.getRules().getSize() || column >= ocean.getRules().getSize())
+            throw new ProtocolException("Shot is outside the battlefield");
+        long outcome = ocean.shoot(row, column);
+        ++shotsReceived;
+        lastResults[0] = ShotOutcome.toCellStatus(outcome);
+        lastResultCount = 1;
+        ++resultsSent;
+        transport.sendResult(lastResults[0]);
+        stats.onShotsAnswered(1);
+        stats.recordResponse(System.nanoTime() - start);
+        if (ShotOutcome.getKind(outcome) != ShotOutcome.DUPLICATE)
+            ++partnerShots;
+        else
+            stats.onDuplicate();
+        isMyTurn = true;
+        listener.onPartnerShot(row, column, outcome);
+        if (ocean.isGameOver())
+            endGame(false);
+        else
+            listener.onMyTurn();
+    }
+
+    private void onShotResult(Ocean.CellStatus result) throws ProtocolException {
+        if (isSalvo || !isWaitingResult)
+            throw new ProtocolException("Result without a shot");
+        stats.recordRoundTrip(System.nanoTime() - shotSentAt);
+        ++resultsReceived;
+        isWaitingResult = false;
+        isMyTurn = false;
+        board.record(shotRow, shotColumn, result);
+        listener.onShotResult(shotRow, shotColumn, result);
+        if (board.getShipsDestroyed() >= ocean.getRules().getFleetSize())
+            endGame(true);
+    }
+
+    private void endGame(boolean won) {
+        state = State.EndOfGame;
+        listener.onGameOver(won);
+    }
+
+    /**
+     * End the game because the partner is lost
+     */
+    public void disconnect() {
+        if (state == State.EndOfGame)
+            return;
+        stats.onDisconnect();
+        isSuspended = state == State.Game;
+        state = State.EndOfGame;
+        listener.onDisconnected();
+    }
+
+    /**
+     * Get number of messages with the partner's shots or salvos handled, for the resume handshake
+     * @return number of messages
+     */
+    public int getShotsReceived() {
+        return shotsReceived;
+    }
+
+    /**
+     * Get number of messages with results of own shots or salvos handled, for the resume handshake
+     * @return number of messages
+     */
+    public int getResultsReceived() {
+        return resultsReceived;
+    }
+
+    /**
+     * Check, if the game has lost its connection in the middle and may go on with resume
+     * @return true, if the game may be resumed
+     */
+    public boolean isSuspended() {
+        return isSuspended;
+    }
+
+    /**
+     * Go on with the game over a new connection. Messages the partner has not received are sent again,
+     * and if it is the player's turn, the listener hears onMyTurn again
+     * @param transport way to send messages to the partner from now on
+     * @param partnerShotsReceived number of own shot messages the partner has handled, see getShotsReceived
+     * @param partnerResultsReceived number of own result messages the partner has handled, see getResultsReceived
+     * @throws ProtocolException if the partner's numbers do not match this game
+     * @throws IOException if the partner is lost again
+     */
+    public void resume(Transport transport, int partnerShotsReceived, int partnerResultsReceived) throws IOException {
+        if (state != State.Game && !isSuspended)
+            throw new IllegalStateException("Only a game that is on can be resumed");
+        if (!canResume(partnerShotsReceived, partnerResultsReceived))
+            throw new ProtocolException("Partner has another state of the game");
+        int lostShots = shotsSent - partnerShotsReceived, lostResults = resultsSent - partnerResultsReceived;
+        this.transport = transport;
+        state = State.Game;
+        isSuspended = false;
+        if (lostResults == 1) {
+            if (isSalvo)
+                transport.sendResults(lastResults, lastResultCount);
+            else
+                transport.sendResult(lastResults[0]);
+        }
+        if (lostShots == 1) {
+            if (isSalvo)
+                transport.sendSalvo(salvo, salvoSize);
+            else
+                transport.sendShot(shotRow, shotColumn);
+        }
+        if (isMyTurn())
+            listener.onMyTurn();
+    }
+
+    /**
+     * Check that the partner's numbers of messages handled fit this game, so resume can go on with it
+     * @param partnerShotsReceived number of own shot or salvo messages the partner has handled
+     * @param partnerResultsReceived number of own result messages the partner has handled
+     * @return true, if at most the last message of each kind is lost
+     */
+    public boolean canResume(int partnerShotsReceived, int partnerResultsReceived) {
+        // Every message is answered before the next one of its kind, so at most one of each kind may be lost
+        int lostShots = shotsSent - partnerShotsReceived, lostResults = resultsSent - partnerResultsReceived;
+        return lostShots >= 0 && lostShots <= 1 && lostResults >= 0 && lostResults <= 1 &&
+                (lostShots == 0 || isWaitingResult);
+    }
+
+    /**
+     * Write the whole state of a game that is on into a compact snapshot, some 100 bytes for classic rules:
+     * ships and shots of own ocean at two bits per cell, own results at four bits per cell, turn and counters
+     * @return snapshot to pass to restore
+     */
+    public byte[] snapshot() {
+        if (state != State.Game && !isSuspended)
+            throw new IllegalStateException("Only a game that is on can be saved");
+        GameRules rules = ocean.getRules();
+        int size = rules.getSize(), cells = size * size;
+        ByteBuffer out = ByteBuffer.allocate(48 + rules.getMaxShipLength() + (cells + 3) / 4 + (cells + 1) / 2 +
+                salvoSize * 4 + lastResultCount);
+        out.put((byte)SNAPSHOT_VERSION).putShort((short)size).put((byte)rules.getMaxShipLength());
+        for (int length = 1; length <= rules.getMaxShipLength(); ++length)
+            out.put((byte)rules.getShipCount(length));
+        out.put((byte)((isMyTurn ? 1 : 0) | (isWaitingResult ? 2 : 0) | (isSalvo ? 4 : 0)));
+        out.putInt(board.getShots()).putInt(partnerShots);
+        out.putInt(shotsSent).putInt(resultsSent).putInt(shotsReceived).putInt(resultsReceived);
+        out.putShort((short)shotRow).putShort((short)shotColumn).put((byte)salvoSize);
+        for (int i = 0; i < salvoSize; ++i)
+            out.putInt(salvo[i]);
+        out.put((byte)lastResultCount);
+        for (int i = 0; i < lastResultCount; ++i)
+            out.put((byte)lastResults[i].getValue());
+        ocean.pack(out);
+        board.pack(out);
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    /**
+     * Create the session of a game saved by snapshot, to go on with resume
+     * @param snapshot snapshot of the game
+     * @param transport way to send messages to the partner
+     * @return session in the Game state
+     * @throws ProtocolException if the snapshot is damaged or of another version
+     */
+    public static GameSession restore(byte[] snapshot, Transport transport) throws ProtocolException {
+        ByteBuffer in = ByteBuffer.wrap(snapshot);
+        need(in, 4);
+        if (in.get() != SNAPSHOT_VERSION)
+            throw new ProtocolException("Unknown snapshot version");
+        int size = in.getShort() & 0xFFFF;
+        int[] shipCounts = new int[in.get() & 0xFF];
+        need(in, shipCounts.length + 30);
+        for (int i = 0; i < shipCounts.length; ++i)
+            shipCounts[i] = in.get() & 0xFF;
+        int flags = in.get();
+        boolean isSalvo = (flags & 4) != 0;
+        int myShots = in.getInt(), partnerShots = in.getInt();
+        int shotsSent = in.getInt(), resultsSent = in.getInt(), shotsReceived = in.getInt(),
+                resultsReceived = in.getInt();
+        int shotRow = in.getShort() & 0xFFFF, shotColumn = in.getShort() & 0xFFFF;
+        int salvoSize = in.get() & 0xFF;
+        if (salvoSize > (isSalvo ? Codec.MAX_SALVO : 0))
+            throw new ProtocolException("Salvo of " + salvoSize + " shots");
+        need(in, salvoSize * 4 + 1);
+        int[] salvo = new int[salvoSize];
+        for (int i = 0; i < salvoSize; ++i)
+            salvo[i] = in.getInt();
+        int lastResultCount = in.get() & 0xFF;
+        if (lastResultCount > (isSalvo ? Codec.MAX_SALVO : 1))
+            throw new ProtocolException(lastResultCount + " results sent last");
+        need(in, lastResultCount);
+        Ocean.CellStatus[] statuses = Ocean.CellStatus.values();
+        Ocean.CellStatus[] lastResults = new Ocean.CellStatus[Math.max(lastResultCount, 1)];
+        for (int i = 0; i < lastResultCount; ++i) {
+            int value = in.get() & 0xFF;
+            if (value >= statuses.length)
+                throw new ProtocolException("Unknown shot result " + value);
+            lastResults[i] = statuses[value];
+        }
+        // Ships and shots at 2 bits per cell, then own results at 4 bits per cell
+        long cells = (long)size * size;
+        if (in.remaining() != (cells + 3) / 4 + (cells + 1) / 2)
+            throw new ProtocolException("Snapshot has " + in.remaining() + " bytes of cells for size " + size);
+        if (myShots < 0 || partnerShots < 0 || shotsSent < 0 || resultsSent < 0 || shotsReceived < 0 ||
+                resultsReceived < 0 || shotRow >= size || shotColumn >= size)
+            throw new ProtocolException("Counters or the last shot are out of range");
+        try {
+            Battlefield ocean = Battlefield.create(new GameRules(size, shipCounts));
+            GameSession session = new GameSession(ocean, transport, (flags & 1) != 0, isSalvo);
+            session.isWaitingResult = (flags & 2) != 0;
+            session.partnerShots = partnerShots;
+            session.shotsSent = shotsSent;
+            session.resultsSent = resultsSent;
+            session.shotsReceived = shotsReceived;
+            session.resultsReceived = resultsReceived;
+            session.shotRow = shotRow;
+            session.shotColumn = shotColumn;
+            session.salvoSize = salvoSize;
+            if (isSalvo)
+                System.arraycopy(salvo, 0, session.salvo, 0, salvoSize);
+            session.lastResultCount = lastResultCount;
+            session.lastResults = lastResults;
+            ocean.unpack(in);
+            session.board.unpack(in, myShots);
+            session.isPartnerReady = true;
+            session.state = State.Game;
+            return session;
+        }
+        catch (IllegalArgumentException e) {
+            // Rules, ships or shot results that no game can have
+            ProtocolException error = new ProtocolException("Snapshot is damaged: " + e.getMessage());
+            error.initCause(e);
+            throw error;
+        }
+    }
+
+    /**
+     * Check that a snapshot has enough bytes left
+     * @throws ProtocolException if it is too short
+     */
+    private static void need(ByteBuffer in, int bytes) throws ProtocolException {
+        if (in.remaining() < bytes)
+            throw new ProtocolException("Snapshot is too short");
+    }
+
+    /**
+     * Wait for the next message of the partner and handle it on the calling thread,
+     * for a client that drives the session from the thread reading the connection
+     * @param connection connection to the partner
+     * @throws IOException if the partner is lost or breaks the protocol
+     */
+    public void receive(Connection connection) throws IOException {
+        int message = connection.read();
+        if (message == Codec.SALVO)
+            onSalvo(connection.getSalvo(), connection.getCount());
+        else if (message == Codec.RESULTS)
+            onResults(connection.getResults(), connection.getCount());
+        else
+            onMessage(message, connection.getShot(), connection.getResult());
+    }
+
+    /**
+     * Start a thread that reads everything the partner sends and feeds it to the session.
+     * This is the only thread reading the connection, it lives as long as the connection does.
+     * Must be called on the thread that drives the session. Once listen is called with a new connection,
+     * e.g. after resume, messages and errors still coming from the old one are dropped
+     * @param connection connection to the partner
+     * @param executor executor running tasks on the thread that drives the session, e.g. Platform::runLater
+     * @return started daemon thread
+     */
+    public Thread listen(Connection connection, Executor executor) {
+        listened = connection;
+        Thread reader = new Thread(() -> {
+            try {
+                while (true) {
+                    int message = connection.read();
+                    // Response time includes the wait for the thread driving the session
+                    long readAt = System.nanoTime();
+                    int shot = connection.getShot();
+                    Ocean.CellStatus result = connection.getResult();
+                    // The connection reuses its arrays for the next salvo
+                    int[] shots = message == Codec.SALVO ?
+                            Arrays.copyOf(connection.getSalvo(), connection.getCount()) : null;
+                    Ocean.CellStatus[] results = message == Codec.RESULTS ?
+                            Arrays.copyOf(connection.getResults(), connection.getCount()) : null;
+                    executor.execute(() -> {
+                        if (listened != connection)
+                            return;
+                        receivedAt = readAt;
+                        try {
+                            if (shots != null)
+                                onSalvo(shots, shots.length);
+                            else if (results != null)
+                                onResults(results, results.length);
+                            else
+                                onMessage(message, shot, result);
+                        }
+                        catch (IOException e) {
+                            disconnect();
+                        }
+                    });
+                }
+            }
+            catch (IOException e) {
+                executor.execute(() -> {
+                    if (listened == connection)
+                        disconnect();
+                });
+            }
+        }, "partner-reader");
+        reader.setDaemon(true);
+        reader.start();
+        return reader;
+    }
+}
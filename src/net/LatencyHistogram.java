@@ -0,0 +1,105 @@
+package net;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies with log-linear buckets: every power of two is split into SUB_BUCKETS buckets,
+ * so a percentile is reported within 1/SUB_BUCKETS of its value whatever the scale, and recording is
+ * a few arithmetic operations and one atomic increment. Thread-safe, values are in nanoseconds
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Get bucket of the value: values below SUB_BUCKETS have a bucket each, larger ones
+     * are bucketed by their highest bit and the SUB_BITS bits after it
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int)value;
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        return ((exponent - SUB_BITS + 1) << SUB_BITS) + (int)(value >>> (exponent - SUB_BITS) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Get the largest value that falls into the bucket
+     */
+    static long highestOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = (bucket >> SUB_BITS) - 1;
+        long lowest = (long)(SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Record one latency
+     * @param nanos latency in nanoseconds, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        counts.incrementAndGet(bucketOf(nanos));
+        count.increment();
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos))
+            ;
+    }
+
+    /**
+     * Get number of recorded latencies
+     * @return count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Get the largest recorded latency
+     * @return latency in nanoseconds, 0 if nothing is recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the latency that the given share of recorded latencies does not exceed.
+     * Latencies recorded meanwhile may or may not be taken into account
+     * @param quantile share of latencies, from 0 to 1, e.g. 0.99 for p99
+     * @return latency in nanoseconds, rounded up to its bucket and at most getMax; 0 if nothing is recorded
+     */
+    public long getPercentile(double quantile) {
+        if (quantile < 0 || quantile > 1)
+            throw new IllegalArgumentException("Quantile must be from 0 to 1");
+        long total = 0;
+        for (int i = 0; i < BUCKETS; ++i)
+            total += counts.get(i);
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long)Math.ceil(quantile * total)), seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return Math.min(highestOf(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Forget all recorded latencies
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; ++i)
+            counts.set(i, 0);
+        count.reset();
+        max.set(0);
+    }
+}
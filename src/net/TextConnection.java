@@ -0,0 +1,133 @@
+package net;
+
+import core.Ocean;
+
+import java.io.*;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+/**
+ * Text protocol of old clients: one message per line, read with Scanner
+ */
+class TextConnection extends Connection {
+    private final InputStream in;
+    private final Scanner reader;
+    private final PrintWriter writer;
+    private final Codec codec = Codec.create(false);    // Parser of lines taken by read
+
+    TextConnection(InputStream in, OutputStream out, String partnerName) {
+        super(partnerName);
+        this.in = in;
+        reader = new Scanner(in);
+        writer = new PrintWriter(out, true);
+    }
+
+    @Override
+    public boolean isBinary() {
+        return false;
+    }
+
+    /**
+     * PrintWriter does not throw, so check it after every message
+     */
+    private void checkWriter() throws IOException {
+        if (writer.checkError())
+            throw new IOException("Connection lost");
+    }
+
+    @Override
+    public void sendShot(int row, int column) throws IOException {
+        writer.printf("%d %d\n", row, column);
+        checkWriter();
+    }
+
+    @Override
+    public int readShot() throws IOException {
+        try {
+            int row = reader.nextInt();
+            return packShot(row, reader.nextInt());
+        }
+        catch (NoSuchElementException e) {
+            throw new EOFException("Connection lost");
+        }
+    }
+
+    @Override
+    public void sendResult(Ocean.CellStatus result) throws IOException {
+        writer.println(result.getValue());
+        checkWriter();
+    }
+
+    @Override
+    public Ocean.CellStatus readResult() throws IOException {
+        try {
+            return Ocean.CellStatus.values()[reader.nextInt()];
+        }
+        catch (NoSuchElementException e) {
+            throw new EOFException("Connection lost");
+        }
+        catch (ArrayIndexOutOfBoundsException e) {
+            throw new ProtocolException("Unknown shot result");
+        }
+    }
+
+    @Override
+    public void sendSalvo(int[] shots, int count) throws IOException {
+        throw new ProtocolException("Salvos need the binary protocol");
+    }
+
+    @Override
+    public int readSalvo(int[] shots) throws IOException {
+        throw new ProtocolException("Salvos need the binary protocol");
+    }
+
+    @Override
+    public void sendResults(Ocean.CellStatus[] results, int count) throws IOException {
+        throw new ProtocolException("Salvos need the binary protocol");
+    }
+
+    @Override
+    public int readResults(Ocean.CellStatus[] results) throws IOException {
+        throw new ProtocolException("Salvos need the binary protocol");
+    }
+
+    @Override
+    public int read() throws IOException {
+        String line;
+        try {
+            line = reader.nextLine();
+        }
+        catch (NoSuchElementException e) {
+            throw new EOFException("Connection lost");
+        }
+        int message = codec.decode(ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.US_ASCII)));
+        shot = codec.getShot();
+        result = codec.getResult();
+        return message;
+    }
+
+    @Override
+    public void sendReady() throws IOException {
+        writer.println();
+        checkWriter();
+    }
+
+    @Override
+    public void readReady() throws IOException {
+        try {
+            reader.nextLine();
+        }
+        catch (NoSuchElementException e) {
+            throw new EOFException("Connection lost");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+        in.close();
+    }
+}
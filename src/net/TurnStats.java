@@ -0,0 +1,153 @@
+package net;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Latencies of turns and counters of shots, filled by GameSession. All sessions of a process share
+ * the global instance, which is registered in the platform MBean server as OBJECT_NAME. Thread-safe
+ */
+public class TurnStats implements TurnStatsMXBean {
+    public static final String OBJECT_NAME = "battleship:type=TurnStats";
+
+    private static final TurnStats GLOBAL = register(new TurnStats());
+
+    private final LatencyHistogram roundTrip = new LatencyHistogram();  // Own shot sent, its result received
+    private final LatencyHistogram response = new LatencyHistogram();   // Partner's shot received, its result sent
+    private final LongAdder shotsFired = new LongAdder();
+    private final LongAdder shotsAnswered = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();   // Partner's shots at cells shot before
+    private final LongAdder disconnects = new LongAdder();  // Games ended by a lost partner
+
+    private static TurnStats register(TurnStats stats) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(stats, new ObjectName(OBJECT_NAME));
+        }
+        catch (JMException | SecurityException e) {
+            // Statistics are still collected, only JMX tools cannot see them
+        }
+        return stats;
+    }
+
+    /**
+     * Get statistics shared by all sessions of the process
+     * @return global instance, registered in the platform MBean server
+     */
+    public static TurnStats getGlobal() {
+        return GLOBAL;
+    }
+
+    void onShotsFired(int count) {
+        shotsFired.add(count);
+    }
+
+    void onShotsAnswered(int count) {
+        shotsAnswered.add(count);
+    }
+
+    void onDuplicate() {
+        duplicates.increment();
+    }
+
+    void onDisconnect() {
+        disconnects.increment();
+    }
+
+    void recordRoundTrip(long nanos) {
+        roundTrip.record(nanos);
+    }
+
+    void recordResponse(long nanos) {
+        response.record(nanos);
+    }
+
+    public LatencyHistogram getRoundTrip() {
+        return roundTrip;
+    }
+
+    public LatencyHistogram getResponse() {
+        return response;
+    }
+
+    @Override
+    public long getShotsFired() {
+        return shotsFired.sum();
+    }
+
+    @Override
+    public long getShotsAnswered() {
+        return shotsAnswered.sum();
+    }
+
+    @Override
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    @Override
+    public long getDisconnects() {
+        return disconnects.sum();
+    }
+
+    @Override
+    public long getRoundTripCount() {
+        return roundTrip.getCount();
+    }
+
+    @Override
+    public long getRoundTripP50Micros() {
+        return roundTrip.getPercentile(0.5) / 1000;
+    }
+
+    @Override
+    public long getRoundTripP99Micros() {
+        return roundTrip.getPercentile(0.99) / 1000;
+    }
+
+    @Override
+    public long getRoundTripP999Micros() {
+        return roundTrip.getPercentile(0.999) / 1000;
+    }
+
+    @Override
+    public long getRoundTripMaxMicros() {
+        return roundTrip.getMax() / 1000;
+    }
+
+    @Override
+    public long getResponseCount() {
+        return response.getCount();
+    }
+
+    @Override
+    public long getResponseP50Micros() {
+        return response.getPercentile(0.5) / 1000;
+    }
+
+    @Override
+    public long getResponseP99Micros() {
+        return response.getPercentile(0.99) / 1000;
+    }
+
+    @Override
+    public long getResponseP999Micros() {
+        return response.getPercentile(0.999) / 1000;
+    }
+
+    @Override
+    public long getResponseMaxMicros() {
+        return response.getMax() / 1000;
+    }
+
+    @Override
+    public void reset() {
+        roundTrip.reset();
+        response.reset();
+        shotsFired.reset();
+        shotsAnswered.reset();
+        duplicates.reset();
+        disconnects.reset();
+    }
+}
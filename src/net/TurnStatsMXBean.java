@@ -0,0 +1,41 @@
+package net;
+
+/**
+ * Management interface of TurnStats, for JConsole and other JMX tools. Latencies are in microseconds:
+ * round trip is from sending own shot to receiving its result, response is from receiving the partner's shot
+ * to sending its result
+ */
+public interface TurnStatsMXBean {
+    long getShotsFired();
+
+    long getShotsAnswered();
+
+    long getDuplicates();
+
+    long getDisconnects();
+
+    long getRoundTripCount();
+
+    long getRoundTripP50Micros();
+
+    long getRoundTripP99Micros();
+
+    long getRoundTripP999Micros();
+
+    long getRoundTripMaxMicros();
+
+    long getResponseCount();
+
+    long getResponseP50Micros();
+
+    long getResponseP99Micros();
+
+    long getResponseP999Micros();
+
+    long getResponseMaxMicros();
+
+    /**
+     * Forget everything recorded so far
+     */
+    void reset();
+}
@@ -0,0 +1,173 @@
+package server;
+
+import core.Battlefield;
+import core.GameRules;
+import core.sim.ProbabilityShooter;
+import core.sim.Shooter;
+import net.Codec;
+import net.Connection;
+import net.GameSession;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Match between the player and the server. The server places its own fleet on a Battlefield and answers shots at it,
+ * so a player cannot cheat about the server's ships, and shoots back with ProbabilityShooter. Turns are kept
+ * by GameSession; the player moves first, like a client of the desktop game does. In the salvo variant the server
+ * fires its salvo at the cells the shooter picks one by one, as if the cells picked before had been misses.
+ * A match with a session token is suspended if the player is lost, and the player may resume it.
+ * If the server keeps a journal, the match is recorded there message by message, see MatchJournal
+ */
+class BotMatch implements Match, GameSession.Listener {
+    private final GameServer server;
+    private final GameSession game;
+    private final Shooter shooter = new ProbabilityShooter();
+    private final String token;         // Session token of the player, null if the match cannot be resumed
+    private final MatchJournal journal; // Records of the match, null if the server keeps no journal
+    private final long id;              // Id of the match in the journal
+    private final long seed;
+    private boolean isRecorded;         // Start of the match has been recorded
+
+    /**
+     * Create match and tell the player the server is ready
+     * @param server server counting finished matches
+     * @param session session the server's messages are sent through
+     * @param seed seed of the server's fleet and shots
+     * @param isSalvo true for the salvo variant
+     * @param token session token of the player, null if the match cannot be resumed
+     */
+    BotMatch(GameServer server, Session session, long seed, boolean isSalvo, String token) throws IOException {
+        this.server = server;
+        this.token = token;
+        this.seed = seed;
+        journal = server.getJournal();
+        id = server.nextMatchId();
+        Battlefield ocean = Battlefield.create(GameRules.CLASSIC);
+        ocean.setRndSeed(seed);
+        ocean.placeAllShipsRandomly();
+        game = new GameSession(ocean, session, false, isSalvo);
+        game.setListener(this);
+        shooter.newGame(GameRules.CLASSIC, new Random(seed + 1));
+        // Server's fleet is placed already
+        game.beginSetup();
+        game.ready();
+    }
+
+    /**
+     * Resume a suspended match and send the player what the player has missed
+     * @param server server counting finished matches
+     * @param session new session of the player
+     * @param seed seed of the server's shots
+     * @param game match restored from its snapshot, with session as the transport
+     * @param token session token of the player
+     * @param playerShotsReceived number of the server's shot messages the player has handled
+     * @param playerResultsReceived number of the server's result messages the player has handled
+     */
+    BotMatch(GameServer server, Session session, long seed, GameSession game, String token, int playerShotsReceived,
+             int playerResultsReceived) throws IOException {
+        this.server = server;
+        this.game = game;
+        this.token = token;
+        this.seed = seed;
+        journal = server.getJournal();
+        id = server.nextMatchId();
+        game.setListener(this);
+        // A new start supersedes the records of the match before it was suspended
+        record();
+        // The shooter picks its cells from the board, so a new one goes on where the old one has stopped
+        shooter.newGame(GameRules.CLASSIC, new Random(seed + 1));
+        game.resume(session, playerShotsReceived, playerResultsReceived);
+    }
+
+    @Override
+    public void onMessage(int message, Codec codec) throws IOException {
+        // Recorded before it is handled, so the server's answer is recorded after it
+        if (isRecorded) {
+            if (message == Codec.SHOT)
+                journal.shot(MatchJournal.SHOT, id, Connection.getRow(codec.getShot()),
+                        Connection.getColumn(codec.getShot()));
+            else if (message == Codec.SALVO)
+                journal.salvo(MatchJournal.SALVO, id, codec.getSalvo(), codec.getCount());
+            else if (message == Codec.RESULT)
+                journal.result(id, codec.getResult());
+            else if (message == Codec.RESULTS)
+                journal.results(id, codec.getResults(), codec.getCount());
+        }
+        if (message == Codec.SALVO)
+            game.onSalvo(codec.getSalvo(), codec.getCount());
+        else if (message == Codec.RESULTS)
+            game.onResults(codec.getResults(), codec.getCount());
+        else
+            game.onMessage(message, codec.getShot(), codec.getResult());
+        if (!isRecorded && game.getState() == GameSession.State.Game)
+            record();
+    }
+
+    /**
+     * Record the start of the match with its snapshot, once both fleets are placed
+     */
+    private void record() throws IOException {
+        if (journal == null)
+            return;
+        journal.start(id, seed, token, game.snapshot());
+        isRecorded = true;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return game.getState() == GameSession.State.EndOfGame;
+    }
+
+    @Override
+    public void onClosed() {
+        if (token != null && game.getState() == GameSession.State.Game)
+            server.suspend(token, game.snapshot());
+        else if (isRecorded && game.getState() != GameSession.State.EndOfGame)
+            end();
+        // Counts the disconnect if the game is not over
+        game.disconnect();
+    }
+
+    @Override
+    public void onMyTurn() {
+        int size = game.getOcean().getRules().getSize();
+        try {
+            if (game.isSalvo()) {
+                int[] shots = new int[game.getSalvoSize()];
+                int count = shooter.selectShots(game.getBoard().getCells(), shots, shots.length);
+                for (int i = 0; i < count; ++i)
+                    shots[i] = Connection.packShot(shots[i] / size, shots[i] % size);
+                if (isRecorded)
+                    journal.salvo(MatchJournal.SERVER_SALVO, id, shots, count);
+                game.shoot(shots, count);
+            }
+            else {
+                int cell = shooter.selectShot(game.getBoard().getCells());
+                if (isRecorded)
+                    journal.shot(MatchJournal.SERVER_SHOT, id, cell / size, cell % size);
+                game.shoot(cell / size, cell % size);
+            }
+        }
+        catch (IOException e) {
+            // Sending only puts the shot into the output buffer, and the journal fails only when it cannot
+            // create a segment, then the match goes on unrecorded
+        }
+    }
+
+    @Override
+    public void onGameOver(boolean won) {
+        if (isRecorded)
+            end();
+        server.onMatchFinished(won);
+    }
+
+    private void end() {
+        try {
+            journal.end(id);
+        }
+        catch (IOException e) {
+            // Recovery drops the match once it has expired
+        }
+    }
+}
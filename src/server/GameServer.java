@@ -0,0 +1,428 @@
+package server;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless server hosting many matches at once: a connected player plays against the server, or, if the player
+ * asks for a partner and the server has a lobby, against the next player of the same rating band.
+ * One acceptor thread hands sockets over to a few selector loops round-robin, and each loop serves
+ * its sockets with non-blocking reads and writes, so the number of threads does not grow with the number
+ * of players. Clients connect the way the desktop client connects to a desktop server, in either protocol.
+ * A binary player who loses the connection in the middle of a match with the server may come back with the session
+ * token for a few minutes: the match is kept meanwhile as a snapshot of GameSession. A server with a journal
+ * records its matches there, and after a crash it recovers the matches that were on, so their players
+ * may resume them as if only the connection had been lost
+ */
+public class GameServer implements AutoCloseable {
+    public static final int MAX_NAME_LENGTH = 64;   // Longest name of the server
+    public static final long SUSPEND_TIME = TimeUnit.MINUTES.toNanos(5);    // How long a dropped match is kept
+    public static final int MAX_SUSPENDED = 100000;                         // Most dropped matches kept at once
+    public static final long SWEEP_MILLIS = 10000;                          // Interval of dropping forfeited matches
+    public static final int SEGMENT_SIZE = 64 << 20;    // Size of a journal file
+    public static final long SYNC_MILLIS = 10;          // Interval of group commits of the journal
+    private static final long MIN_BACK_OFF = 10,        // Waits of the acceptor after failures, in milliseconds
+            MAX_BACK_OFF = 1000;
+
+    private final String name;
+    private final ServerSocketChannel acceptor;
+    private final SelectorLoop[] loops;
+    private final Lobby<Session> lobby;     // Lobby pairing players, null if everyone plays the server
+    private final AtomicInteger sessions = new AtomicInteger();     // Connected players
+    private final AtomicLong matchesWon = new AtomicLong(),         // Finished matches, by winner
+            matchesLost = new AtomicLong(),
+            relayMatches = new AtomicLong();                        // Finished matches between players
+    private final Map<String, Suspended> suspended = new ConcurrentHashMap<>();     // Dropped matches, by token
+    // Dropped matches in the order they are forfeited, including ones taken meanwhile; guarded by itself
+    private final Queue<Suspended> suspendOrder = new ArrayDeque<>();
+    private final SecureRandom tokens = new SecureRandom();
+    private final MatchJournal journal;     // Records of matches with the server, null if nothing is recorded
+    // Ids are unique across restarts, so records of a recovered match cannot be mistaken for a new one
+    private final AtomicLong matchIds = new AtomicLong(System.currentTimeMillis() << 20);
+    private final Thread[] threads;
+    private int recovered;                  // Matches recovered from the journal
+    private Thread sweeper;
+    private volatile boolean running;
+
+    /**
+     * Snapshot of a match kept until the player comes back
+     */
+    private static class Suspended {
+        final String token;
+        final byte[] snapshot;
+        final long expiresAt;           // System.nanoTime() when the match is forfeited
+
+        Suspended(String token, byte[] snapshot, long expiresAt) {
+            this.token = token;
+            this.snapshot = snapshot;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Create server, it starts accepting players on start
+     * @param name name the server introduces itself with
+     * @param port port to listen on, 0 for any free port
+     * @param loopCount number of selector threads
+     * @throws IOException if the port cannot be bound
+     */
+    public GameServer(String name, int port, int loopCount) throws IOException {
+        this(name, port, loopCount, -1);
+    }
+
+    /**
+     * Create server, it starts accepting players on start
+     * @param name name the server introduces itself with
+     * @param port port to listen on, 0 for any free port
+     * @param loopCount number of selector threads
+     * @param bandWidth width of rating bands of the lobby pairing players who ask for a partner,
+     *                  0 to pair them regardless of rating, negative to let everyone play the server
+     * @throws IOException if the port cannot be bound
+     */
+    public GameServer(String name, int port, int loopCount, int bandWidth) throws IOException {
+        this(name, port, loopCount, bandWidth, null);
+    }
+
+    /**
+     * Create server, it starts accepting players on start
+     * @param name name the server introduces itself with
+     * @param port port to listen on, 0 for any free port
+     * @param loopCount number of selector threads
+     * @param bandWidth width of rating bands of the lobby pairing players who ask for a partner,
+     *                  0 to pair them regardless of rating, negative to let everyone play the server
+     * @param journalDirectory directory of the journal of matches, recovered first if it exists; null to keep none
+     * @throws IOException if the port cannot be bound or the journal cannot be opened
+     */
+    public GameServer(String name, int port, int loopCount, int bandWidth, Path journalDirectory)
+            throws IOException {
+        if (name.length() > MAX_NAME_LENGTH || name.contains("\n"))
+            throw new IllegalArgumentException("Name must be one line of at most " + MAX_NAME_LENGTH + " characters");
+        if (loopCount < 1)
+            throw new IllegalArgumentException("There must be at least one selector thread");
+        this.name = name;
+        lobby = bandWidth < 0 ? null : new Lobby<>(bandWidth);
+        journal = journalDirectory == null ? null : openJournal(journalDirectory);
+        threads = new Thread[loopCount];
+        acceptor = ServerSocketChannel.open();
+        acceptor.bind(new InetSocketAddress(port), 1024);
+        loops = new SelectorLoop[loopCount];
+        for (int i = 0; i < loopCount; ++i)
+            loops[i] = new SelectorLoop(this);
+    }
+
+    /**
+     * Recover matches from the journal and suspend them, then start a new segment with their starts
+     * and delete the old segments
+     */
+    private MatchJournal openJournal(Path directory) throws IOException {
+        Map<Long, MatchJournal.Recovered> matches = MatchJournal.recover(directory);
+        MatchJournal journal = new MatchJournal(new Journal(directory, SEGMENT_SIZE, SYNC_MILLIS));
+        long now = System.currentTimeMillis();
+        for (MatchJournal.Recovered match : matches.values()) {
+            // Expired matches would have been forfeited by now, recovered ones get the full time again
+            if (match.getToken() == null || now - match.getLastTime() > TimeUnit.NANOSECONDS.toMillis(SUSPEND_TIME))
+                continue;
+            byte[] snapshot = match.getGame().snapshot();
+            journal.start(nextMatchId(), match.getSeed(), match.getToken(), snapshot);
+            suspend(match.getToken(), snapshot);
+            ++recovered;
+        }
+        try {
+            journal.getJournal().sync();
+        }
+        catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while recovering matches");
+        }
+        journal.getJournal().deleteSegmentsBefore(journal.getJournal().getSegmentNumber());
+        return journal;
+    }
+
+    /**
+     * Start selector threads and the acceptor thread
+     */
+    public void start() {
+        running = true;
+        for (int i = 0; i < loops.length; ++i) {
+            threads[i] = new Thread(loops[i], "selector-" + i);
+            threads[i].start();
+        }
+        new Thread(this::accept, "acceptor").start();
+        sweeper = new Thread(this::sweep, "suspended-sweeper");
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+
+    /**
+     * Accept players until the server is closed. After a failed accept, e.g. when the process is out of
+     * file descriptors, the acceptor waits before trying again, twice as long after every failure in a row
+     */
+    private void accept() {
+        long accepted = 0;
+        long backOff = 0;                   // Wait after the last failure, in milliseconds
+        while (running) {
+            SocketChannel channel = null;
+            try {
+                channel = acceptor.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                sessions.incrementAndGet();
+                SelectorLoop loop = loops[(int)(accepted % loops.length)];
+                loop.add(new Session(this, loop, channel, System.nanoTime() ^ accepted));
+                ++accepted;
+                backOff = 0;
+            }
+            catch (IOException e) {
+                if (!acceptor.isOpen())
+                    return;
+                // The socket failed before it could be served, or accepting fails for a while
+                closeQuietly(channel);
+                backOff = Math.min(Math.max(backOff * 2, MIN_BACK_OFF), MAX_BACK_OFF);
+                try {
+                    Thread.sleep(backOff);
+                }
+                catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel == null)
+            return;
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            // Nothing to do, the socket is gone anyway
+        }
+    }
+
+    /**
+     * Get the port the server listens on
+     * @return port number
+     */
+    public int getPort() {
+        return acceptor.socket().getLocalPort();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Get the lobby, e.g. to watch its queue depth and time to match
+     * @return lobby, null if everyone plays the server
+     */
+    public Lobby<?> getLobby() {
+        return lobby;
+    }
+
+    Lobby<Session> getSessionLobby() {
+        return lobby;
+    }
+
+    /**
+     * Get number of players connected right now
+     * @return number of sessions
+     */
+    public int getSessions() {
+        return sessions.get();
+    }
+
+    /**
+     * Get number of matches the server has won
+     * @return number of matches
+     */
+    public long getMatchesWon() {
+        return matchesWon.get();
+    }
+
+    /**
+     * Get number of matches players have won
+     * @return number of matches
+     */
+    public long getMatchesLost() {
+        return matchesLost.get();
+    }
+
+    /**
+     * Get number of finished matches between players paired by the lobby
+     * @return number of matches
+     */
+    public long getRelayMatches() {
+        return relayMatches.get();
+    }
+
+    void onMatchFinished(boolean serverWon) {
+        (serverWon ? matchesWon : matchesLost).incrementAndGet();
+    }
+
+    void onRelayFinished() {
+        relayMatches.incrementAndGet();
+    }
+
+    /**
+     * Create a token the player resumes the match with, too long to guess
+     * @return 16 hex digits
+     */
+    String createToken() {
+        return String.format("%016x", tokens.nextLong());
+    }
+
+    /**
+     * Keep the snapshot of a match whose player is lost. When MAX_SUSPENDED matches are kept,
+     * the oldest one is forfeited to make room
+     * @param token session token of the player
+     * @param snapshot snapshot of the match, see GameSession.snapshot
+     */
+    void suspend(String token, byte[] snapshot) {
+        Suspended match = new Suspended(token, snapshot, System.nanoTime() + SUSPEND_TIME);
+        synchronized (suspendOrder) {
+            while (suspendOrder.size() >= MAX_SUSPENDED)
+                forfeit(suspendOrder.poll());
+            suspendOrder.add(match);
+            suspended.put(token, match);
+        }
+    }
+
+    /**
+     * Drop the matches whose time is up. All matches are kept equally long, so they are the oldest ones
+     */
+    private void dropExpired() {
+        long now = System.nanoTime();
+        synchronized (suspendOrder) {
+            while (!suspendOrder.isEmpty() && suspendOrder.peek().expiresAt - now < 0)
+                forfeit(suspendOrder.poll());
+        }
+    }
+
+    private void forfeit(Suspended match) {
+        // A match resumed and suspended again has a newer entry under the same token
+        suspended.remove(match.token, match);
+    }
+
+    /**
+     * Drop forfeited matches every SWEEP_MILLIS until the server is closed
+     */
+    private void sweep() {
+        while (running) {
+            try {
+                Thread.sleep(SWEEP_MILLIS);
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+            dropExpired();
+        }
+    }
+
+    /**
+     * Get the snapshot of a match the player has come back to, it is kept until taken with resume
+     * @param token session token of the player
+     * @return snapshot of the match, null if the token is unknown or the match is forfeited
+     */
+    byte[] findSuspended(String token) {
+        dropExpired();
+        Suspended match = suspended.get(token);
+        return match == null || match.expiresAt - System.nanoTime() < 0 ? null : match.snapshot;
+    }
+
+    MatchJournal getJournal() {
+        return journal;
+    }
+
+    long nextMatchId() {
+        return matchIds.incrementAndGet();
+    }
+
+    /**
+     * Get number of matches recovered from the journal when the server was created
+     * @return number of matches
+     */
+    public int getRecovered() {
+        return recovered;
+    }
+
+    /**
+     * Take the match the player has come back to, once it has been checked to go on from its snapshot
+     * @param token session token of the player
+     * @param snapshot snapshot returned by findSuspended
+     * @return true, if the match has been taken, false if another connection has taken it meanwhile
+     */
+    boolean resume(String token, byte[] snapshot) {
+        Suspended match = suspended.get(token);
+        return match != null && match.snapshot == snapshot && suspended.remove(token, match);
+    }
+
+    /**
+     * Get number of matches kept for players who have lost their connections, including forfeited ones
+     * not cleaned up yet
+     * @return number of matches
+     */
+    public int getSuspended() {
+        return suspended.size();
+    }
+
+    void onSessionClosed(Session session) {
+        sessions.decrementAndGet();
+    }
+
+    /**
+     * Stop accepting players and close all connections
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        acceptor.close();
+        for (SelectorLoop loop : loops)
+            loop.stop();
+        if (sweeper != null)
+            sweeper.interrupt();
+        if (journal == null)
+            return;
+        // Matches are recorded by the loops until they have closed their sessions
+        try {
+            for (Thread thread : threads)
+                if (thread != null)
+                    thread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.getJournal().close();
+    }
+
+    /**
+     * Run the server until the process is killed.
+     * Arguments: [port] [number of selector threads] [rating band width of the lobby, 0 for one band, -1 for none]
+     * [journal directory]. Without the band width there is no lobby and everyone plays the server,
+     * without the directory nothing is recorded
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int loopCount = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int bandWidth = args.length > 2 ? Integer.parseInt(args[2]) : -1;
+        Path journalDirectory = args.length > 3 ? Paths.get(args[3]) : null;
+        GameServer server = new GameServer("Battleship server", port, loopCount, bandWidth, journalDirectory);
+        server.start();
+        System.out.printf("Listening on port %d with %d selector threads%s%n", server.getPort(), loopCount,
+                bandWidth < 0 ? "" : " and a lobby");
+        if (journalDirectory != null)
+            System.out.printf("Recording matches in %s, %d matches recovered%n", journalDirectory,
+                    server.getRecovered());
+    }
+}
@@ -0,0 +1,292 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of records in memory-mapped segment files. Appending copies the record into the mapped
+ * segment under a short lock and never waits for the disk; a sync thread forces what has been appended to disk
+ * once per sync interval, so one fsync commits the records of all threads appended meanwhile (group commit).
+ * A full segment is left as it is and the next one is created, so every file keeps the same size.
+ * A record is its length, the CRC32C of its body and the body; a zero length ends a segment, so a record torn
+ * by a crash is recognized by its checksum and ends the replay of its segment.
+ * Thread-safe
+ */
+public class Journal implements Closeable {
+    private static final String PREFIX = "journal-", SUFFIX = ".log";
+    private static final int HEADER = 8;    // Length and checksum of a record
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long syncMillis;
+    private final CRC32C crc = new CRC32C();
+    private final List<MappedByteBuffer> unsynced = new ArrayList<>();  // Full segments not forced yet
+    private final Thread syncer;
+    private long segmentNumber;             // Number of the current segment
+    private FileChannel channel;            // File of the current segment
+    private MappedByteBuffer segment;       // Current segment, its position is where the next record goes
+    private long appended, synced;          // Numbers of records appended and forced to disk
+    private long syncs;                     // Number of fsyncs
+    private boolean running = true;
+    private IOException error;              // Error of the last fsync, thrown by sync
+
+    /**
+     * Open journal, it starts a new segment after the segments already in the directory
+     * @param directory directory of segment files, created if needed
+     * @param segmentSize size of a segment file in bytes
+     * @param syncMillis longest time an appended record waits for fsync, in milliseconds
+     * @throws IOException if the first segment cannot be created
+     */
+    public Journal(Path directory, int segmentSize, long syncMillis) throws IOException {
+        if (segmentSize < 64)
+            throw new IllegalArgumentException("Segment is too small");
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncMillis = syncMillis;
+        Files.createDirectories(directory);
+        List<Path> segments = listSegments(directory);
+        segmentNumber = segments.isEmpty() ? 0 : numberOf(segments.get(segments.size() - 1));
+        openSegment();
+        syncer = new Thread(this::syncLoop, "journal-sync");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+
+    /**
+     * Append a record, the record is on disk at the latest after the sync interval
+     * @param record body of the record from its position to its limit, the position is left unchanged
+     * @return sequence number of the record to wait for with sync, 0 if the journal is closed
+     * @throws IOException if a new segment cannot be created
+     */
+    public synchronized long append(ByteBuffer record) throws IOException {
+        if (!running)
+            return 0;
+        int length = record.remaining();
+        if (length == 0 || HEADER + length > segmentSize - HEADER)
+            throw new IllegalArgumentException("Record of " + length + " bytes does not fit a segment");
+        // Room for the zero length ending the segment is always left
+        if (segment.remaining() < HEADER * 2 + length) {
+            unsynced.add(segment);
+            channel.close();
+            openSegment();
+        }
+        crc.reset();
+        record.mark();
+        crc.update(record);
+        record.reset();
+        segment.putInt(length).putInt((int)crc.getValue()).put(record);
+        record.reset();
+        // Wake the sync thread with the first record it has not seen
+        if (appended++ == synced)
+            notifyAll();
+        return appended;
+    }
+
+    /**
+     * Wait until a record is on disk
+     * @param sequence sequence number returned by append
+     * @throws IOException if fsync has failed
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public synchronized void sync(long sequence) throws IOException, InterruptedException {
+        while (synced < sequence && error == null && syncer.isAlive())
+            wait();
+        if (error != null)
+            throw error;
+    }
+
+    /**
+     * Wait until all records appended so far are on disk
+     * @throws IOException if fsync has failed
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public void sync() throws IOException, InterruptedException {
+        long sequence;
+        synchronized (this) {
+            sequence = appended;
+        }
+        sync(sequence);
+    }
+
+    /**
+     * Force appended records to disk, then let more records gather for the sync interval
+     */
+    private void syncLoop() {
+        while (true) {
+            List<MappedByteBuffer> segments;
+            long sequence;
+            synchronized (this) {
+                while (running && appended == synced) {
+                    try {
+                        wait();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (appended == synced)
+                    return;
+                sequence = appended;
+                segments = new ArrayList<>(unsynced);
+                unsynced.clear();
+                segments.add(segment);
+            }
+            // Forcing a segment while records are appended to it writes some of them early, which does no harm
+            try {
+                for (MappedByteBuffer buffer : segments)
+                    buffer.force();
+            }
+            catch (UncheckedIOException e) {
+                synchronized (this) {
+                    error = e.getCause();
+                    notifyAll();
+                }
+                return;
+            }
+            synchronized (this) {
+                synced = sequence;
+                ++syncs;
+                notifyAll();
+            }
+            try {
+                Thread.sleep(syncMillis);
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void openSegment() throws IOException {
+        ++segmentNumber;
+        channel = FileChannel.open(directory.resolve(String.format("%s%08d%s", PREFIX, segmentNumber, SUFFIX)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    /**
+     * Get number of records appended since the journal was opened
+     * @return number of records
+     */
+    public synchronized long getAppended() {
+        return appended;
+    }
+
+    /**
+     * Get number of fsyncs, each of them commits all records appended since the one before
+     * @return number of fsyncs
+     */
+    public synchronized long getSyncs() {
+        return syncs;
+    }
+
+    /**
+     * Get number of the segment records are appended to, segments are numbered from 1 in the order of creation
+     * @return segment number
+     */
+    public synchronized long getSegmentNumber() {
+        return segmentNumber;
+    }
+
+    /**
+     * Delete segments created before the given one, e.g. after their records have been replayed and the ones
+     * still needed appended again
+     * @param number number of the oldest segment to keep
+     * @throws IOException if a segment cannot be deleted
+     */
+    public void deleteSegmentsBefore(long number) throws IOException {
+        for (Path path : listSegments(directory))
+            if (numberOf(path) < number)
+                Files.delete(path);
+    }
+
+    /**
+     * Write what is left to disk and stop, records appended later are dropped
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (!running)
+                return;
+            running = false;
+            notifyAll();
+        }
+        try {
+            syncer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            for (MappedByteBuffer buffer : unsynced)
+                buffer.force();
+            unsynced.clear();
+            segment.force();
+            synced = appended;
+            channel.close();
+        }
+    }
+
+    /**
+     * Read all records of the journal in the order they were appended. A segment ends at its first
+     * torn or damaged record, which is where a crash has stopped writing it
+     * @param directory directory of segment files
+     * @param reader consumer of record bodies, a body is only valid during the call
+     * @throws IOException if a segment cannot be read
+     */
+    public static void replay(Path directory, Consumer<ByteBuffer> reader) throws IOException {
+        if (!Files.isDirectory(directory))
+            return;
+        CRC32C crc = new CRC32C();
+        for (Path path : listSegments(directory)) {
+            ByteBuffer segment;
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+                segment = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+            }
+            while (segment.remaining() >= HEADER) {
+                int length = segment.getInt(), checksum = segment.getInt();
+                if (length <= 0 || length > segment.remaining())
+                    break;
+                ByteBuffer record = segment.slice();
+                record.limit(length);
+                crc.reset();
+                crc.update(record);
+                if ((int)crc.getValue() != checksum)
+                    break;
+                record.rewind();
+                reader.accept(record.asReadOnlyBuffer());
+                segment.position(segment.position() + length);
+            }
+        }
+    }
+
+    /**
+     * Get segment files of a directory in the order of their numbers
+     */
+    private static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : files)
+                segments.add(path);
+        }
+        segments.sort((a, b) -> Long.compare(numberOf(a), numberOf(b)));
+        return segments;
+    }
+
+    private static long numberOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
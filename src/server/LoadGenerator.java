@@ -0,0 +1,248 @@
+package server;
+
+import core.Battlefield;
+import core.GameRules;
+import core.sim.HuntTargetShooter;
+import core.sim.ProbabilityShooter;
+import core.sim.RandomShooter;
+import core.sim.Shooter;
+import core.sim.Strategy;
+import net.Connection;
+import net.GameSession;
+import net.TurnStats;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Synthetic load for capacity planning: many clients play whole games against a server on loopback,
+ * each the way GameWindow does it: name exchange, fleet placed with placeAllShipsRandomly, ready,
+ * then shots and results driven by GameSession, with a bot strategy choosing the shots.
+ * Every client thread plays one game at a time, so the number of threads is the number of concurrent games
+ */
+public class LoadGenerator {
+    public enum Protocol {
+        Text,       // Old clients
+        Binary,     // Binary frames
+        Salvo       // Binary frames, salvo variant
+    }
+
+    private static final int TIMEOUT = 30000;   // Longest wait for the server, in milliseconds
+
+    private final int port;
+    private final Strategy strategy;
+    private final Protocol protocol;
+    private final TurnStats stats = new TurnStats();            // Latencies of all clients
+    private final AtomicInteger nextGame = new AtomicInteger(); // Number of games started
+    private final LongAdder gamesPlayed = new LongAdder(),
+            gamesWon = new LongAdder();                         // Games the clients have won
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();    // Failed games, by exception
+    private volatile long elapsed;                              // Duration of the last run, in nanoseconds
+
+    /**
+     * Create generator
+     * @param port port of the server on loopback
+     * @param strategy strategy of the clients
+     * @param protocol protocol the clients speak
+     */
+    public LoadGenerator(int port, Strategy strategy, Protocol protocol) {
+        this.port = port;
+        this.strategy = strategy;
+        this.protocol = protocol;
+    }
+
+    /**
+     * Play games and wait until all of them are over
+     * @param games number of games to play
+     * @param concurrency number of games played at once
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public void run(int games, int concurrency) throws InterruptedException {
+        if (games < 1 || concurrency < 1)
+            throw new IllegalArgumentException("Numbers of games and clients must be positive");
+        long start = System.nanoTime();
+        Thread[] clients = new Thread[Math.min(games, concurrency)];
+        for (int i = 0; i < clients.length; ++i) {
+            clients[i] = new Thread(() -> playGames(games), "load-" + i);
+            clients[i].start();
+        }
+        for (Thread client : clients)
+            client.join();
+        elapsed = System.nanoTime() - start;
+    }
+
+    /**
+     * Play games until the given number of games has been started by all clients
+     */
+    private void playGames(int games) {
+        Shooter shooter = strategy.createShooter();
+        int game;
+        while ((game = nextGame.getAndIncrement()) < games) {
+            try {
+                if (playGame(game, shooter))
+                    gamesWon.increment();
+                gamesPlayed.increment();
+            }
+            catch (IOException | UncheckedIOException | IllegalStateException e) {
+                Throwable error = e instanceof UncheckedIOException ? e.getCause() : e;
+                errors.computeIfAbsent(error.getClass().getSimpleName(), name -> new LongAdder()).increment();
+            }
+        }
+    }
+
+    /**
+     * Play one game on a new connection
+     * @return true, if the client has won
+     * @throws IOException if the server is lost or breaks the protocol
+     */
+    private boolean playGame(int game, Shooter shooter) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(TIMEOUT);
+            Connection connection = Connection.connect(socket.getInputStream(), socket.getOutputStream(),
+                    "load " + game, protocol != Protocol.Text, -1, protocol == Protocol.Salvo);
+            Random rnd = new Random(game);
+            Battlefield ocean = Battlefield.create(GameRules.CLASSIC);
+            ocean.setRndSeed(rnd.nextLong());
+            shooter.newGame(GameRules.CLASSIC, rnd);
+            GameSession session = new GameSession(ocean, connection, connection.movesFirst(), connection.isSalvo());
+            session.setStats(stats);
+            boolean[] won = new boolean[1];
+            session.setListener(new GameSession.Listener() {
+                @Override
+                public void onMyTurn() {
+                    try {
+                        shoot(session, shooter);
+                    }
+                    catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public void onGameOver(boolean result) {
+                    won[0] = result;
+                }
+            });
+            session.beginSetup();
+            ocean.placeAllShipsRandomly();
+            session.ready();
+            while (session.getState() != GameSession.State.EndOfGame)
+                session.receive(connection);
+            connection.close();
+            return won[0];
+        }
+    }
+
+    private static void shoot(GameSession session, Shooter shooter) throws IOException {
+        int size = session.getOcean().getRules().getSize();
+        if (session.isSalvo()) {
+            int[] shots = new int[session.getSalvoSize()];
+            int count = shooter.selectShots(session.getBoard().getCells(), shots, shots.length);
+            for (int i = 0; i < count; ++i)
+                shots[i] = Connection.packShot(shots[i] / size, shots[i] % size);
+            session.shoot(shots, count);
+        }
+        else {
+            int cell = shooter.selectShot(session.getBoard().getCells());
+            session.shoot(cell / size, cell % size);
+        }
+    }
+
+    /**
+     * Get latencies of the turns of all clients
+     * @return statistics filled by the clients
+     */
+    public TurnStats getStats() {
+        return stats;
+    }
+
+    public long getGamesPlayed() {
+        return gamesPlayed.sum();
+    }
+
+    public long getGamesWon() {
+        return gamesWon.sum();
+    }
+
+    /**
+     * Get number of games that have failed
+     * @return number of errors of all kinds
+     */
+    public long getErrors() {
+        long total = 0;
+        for (LongAdder count : errors.values())
+            total += count.sum();
+        return total;
+    }
+
+    /**
+     * Get numbers of failed games by the kind of error
+     * @return new map from simple names of exception classes to numbers of games
+     */
+    public Map<String, Long> getErrorsByKind() {
+        Map<String, Long> result = new TreeMap<>();
+        errors.forEach((name, count) -> result.put(name, count.sum()));
+        return result;
+    }
+
+    /**
+     * Get throughput of the last run
+     * @return games played per second, 0 before the first run is over
+     */
+    public double getGamesPerSecond() {
+        return elapsed == 0 ? 0 : getGamesPlayed() * 1e9 / elapsed;
+    }
+
+    /**
+     * Create strategy of the clients from its name
+     * @param name "random", "hunt" or "probability"
+     * @return new strategy
+     */
+    static Strategy createStrategy(String name) {
+        switch (name) {
+            case "random":
+                return Strategy.of(name, RandomShooter::new);
+            case "hunt":
+                return Strategy.of(name, HuntTargetShooter::new);
+            case "probability":
+                return Strategy.of(name, ProbabilityShooter::new);
+            default:
+                throw new IllegalArgumentException("Unknown strategy " + name);
+        }
+    }
+
+    /**
+     * Load the server on loopback and print the report.
+     * Arguments: [port] [number of games] [concurrent games] [random|hunt|probability] [Text|Binary|Salvo]
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        Strategy strategy = createStrategy(args.length > 3 ? args[3] : "probability");
+        Protocol protocol = Protocol.valueOf(args.length > 4 ? args[4] : "Binary");
+        LoadGenerator generator = new LoadGenerator(port, strategy, protocol);
+        System.out.printf("Playing %d games, %d at once, %s strategy, %s protocol, port %d%n",
+                games, concurrency, strategy.getName(), protocol, port);
+        generator.run(games, concurrency);
+        TurnStats stats = generator.getStats();
+        System.out.printf("Games: %d played, %d won, %.1f per second%n",
+                generator.getGamesPlayed(), generator.getGamesWon(), generator.getGamesPerSecond());
+        System.out.printf("Round trip, us: p50 %d, p99 %d, p999 %d, max %d, %d turns%n",
+                stats.getRoundTripP50Micros(), stats.getRoundTripP99Micros(), stats.getRoundTripP999Micros(),
+                stats.getRoundTripMaxMicros(), stats.getRoundTripCount());
+        System.out.printf("Response, us: p50 %d, p99 %d, p999 %d, max %d%n",
+                stats.getResponseP50Micros(), stats.getResponseP99Micros(), stats.getResponseP999Micros(),
+                stats.getResponseMaxMicros());
+        System.out.printf("Errors: %d %s%n", generator.getErrors(), generator.getErrorsByKind());
+    }
+}
@@ -0,0 +1,139 @@
+package server;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pairs waiting players into matches without a global lock. Players are split into rating bands
+ * (or all share one band), and every band has one waiting slot changed only by compare-and-set:
+ * a player either takes the one who waits in the slot, or waits there. Two players of the same band
+ * never wait at once, so pairing is first-come first-served, and players of different bands
+ * never contend for the same slot
+ * @param <T> type of players
+ */
+public class Lobby<T> {
+    /**
+     * Player waiting in the lobby
+     */
+    public static final class Ticket<T> {
+        private final T player;
+        private final int band;
+        private final long joinedAt;    // System.nanoTime() when the player joined
+
+        private Ticket(T player, int band) {
+            this.player = player;
+            this.band = band;
+            joinedAt = System.nanoTime();
+        }
+
+        public T getPlayer() {
+            return player;
+        }
+    }
+
+    public static final int MAX_RATING = 10000;     // Ratings are clamped to 0..MAX_RATING, so bands are bounded
+
+    private final int bandWidth;        // Ratings per band, 0 if ratings are ignored
+    private final ConcurrentHashMap<Integer, AtomicReference<Ticket<T>>> slots = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();      // Players in slots
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();            // Total time to match of waiting players
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * Create lobby pairing any two players
+     */
+    public Lobby() {
+        this(0);
+    }
+
+    /**
+     * Create lobby
+     * @param bandWidth width of rating bands, players are paired only within a band; 0 to ignore ratings
+     */
+    public Lobby(int bandWidth) {
+        if (bandWidth < 0)
+            throw new IllegalArgumentException("Band width must not be negative");
+        this.bandWidth = bandWidth;
+    }
+
+    /**
+     * Pair the player with the one waiting in the same band, or make the player wait
+     * @param player player that joins
+     * @param rating rating of the player, ignored if the lobby has no bands. It comes from the player, so it is
+     *               clamped to 0..MAX_RATING, and made-up ratings cannot create more than a bounded number of slots
+     * @return ticket of the partner the player is paired with, or the player's own ticket if the player waits
+     */
+    public Ticket<T> join(T player, int rating) {
+        int band = bandWidth == 0 ? 0 : Math.max(0, Math.min(rating, MAX_RATING)) / bandWidth;
+        Ticket<T> ticket = new Ticket<>(player, band);
+        AtomicReference<Ticket<T>> slot = slots.computeIfAbsent(band, b -> new AtomicReference<>());
+        while (true) {
+            Ticket<T> waiter = slot.get();
+            if (waiter == null) {
+                if (slot.compareAndSet(null, ticket)) {
+                    waiting.incrementAndGet();
+                    return ticket;
+                }
+            }
+            else if (slot.compareAndSet(waiter, null)) {
+                waiting.decrementAndGet();
+                long waited = System.nanoTime() - waiter.joinedAt;
+                matches.increment();
+                waitNanos.add(waited);
+                maxWaitNanos.accumulateAndGet(waited, Math::max);
+                return waiter;
+            }
+        }
+    }
+
+    /**
+     * Take the waiting player out of the lobby, e.g. when the player disconnects
+     * @param ticket ticket returned by join
+     * @return true, if the player has left, false if the player has been paired already
+     */
+    public boolean leave(Ticket<T> ticket) {
+        AtomicReference<Ticket<T>> slot = slots.get(ticket.band);
+        if (slot != null && slot.compareAndSet(ticket, null)) {
+            waiting.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get number of players waiting for a partner
+     * @return queue depth, at most one player per band
+     */
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    /**
+     * Get number of pairs made
+     * @return number of matches
+     */
+    public long getMatches() {
+        return matches.sum();
+    }
+
+    /**
+     * Get mean time the first player of a pair has waited for the second
+     * @return time to match in nanoseconds, 0 if no pairs have been made
+     */
+    public long getMeanWaitNanos() {
+        long count = matches.sum();
+        return count == 0 ? 0 : waitNanos.sum() / count;
+    }
+
+    /**
+     * Get longest time a player has waited for a partner
+     * @return time to match in nanoseconds
+     */
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+}
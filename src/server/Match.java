@@ -0,0 +1,30 @@
+package server;
+
+import net.Codec;
+
+import java.io.IOException;
+
+/**
+ * What a session does with the messages of its player once the handshake is over.
+ * Called only by the selector loop that owns the session
+ */
+interface Match {
+    /**
+     * Handle a message of the player
+     * @param message kind of the message, see Codec
+     * @param codec codec that has decoded the message, holding its shots or results
+     * @throws IOException if the player breaks the protocol
+     */
+    void onMessage(int message, Codec codec) throws IOException;
+
+    /**
+     * Check, if the match is over, so nothing more is expected from the player
+     * @return true, if the match is over, false otherwise
+     */
+    boolean isFinished();
+
+    /**
+     * Release what the match holds after the player's socket is closed
+     */
+    void onClosed();
+}
@@ -0,0 +1,272 @@
+package server;
+
+import core.Ocean;
+import net.Codec;
+import net.Connection;
+import net.GameSession;
+import net.TurnStats;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records of matches with the server in a Journal: the start of a match with the snapshot of its GameSession,
+ * every message of the player and every shot of the server, and the end. The server's results are not recorded,
+ * they follow from its ocean. Every record holds its kind, the match id and the wall-clock time.
+ * Recovery replays the records of a match through a GameSession, so the match is rebuilt exactly as it was
+ * after the last record that reached the disk. Thread-safe, each thread has its own record buffer
+ */
+public class MatchJournal {
+    static final int START = 1,         // Match is on: seed, session token and GameSession snapshot
+            SHOT = 2,                   // Player's shot: row and column
+            SALVO = 3,                  // Player's salvo: count and packed shots
+            RESULT = 4,                 // Result of the server's shot: CellStatus value
+            RESULTS = 5,                // Results of the server's salvo: count and CellStatus values
+            SERVER_SHOT = 6,            // Server's shot: row and column
+            SERVER_SALVO = 7,           // Server's salvo: count and packed shots
+            END = 8;                    // Match is over or has been forfeited
+
+    private static final GameSession.Transport NOWHERE = new GameSession.Transport() {
+        @Override
+        public void sendShot(int row, int column) {
+        }
+
+        @Override
+        public void sendResult(Ocean.CellStatus result) {
+        }
+
+        @Override
+        public void sendReady() {
+        }
+
+        @Override
+        public void sendSalvo(int[] shots, int count) {
+        }
+
+        @Override
+        public void sendResults(Ocean.CellStatus[] results, int count) {
+        }
+    };
+
+    private final Journal journal;
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(4096));
+
+    /**
+     * Create records of matches
+     * @param journal journal to append to
+     */
+    public MatchJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    private ByteBuffer begin(int kind, long match) {
+        ByteBuffer buffer = buffers.get();
+        buffer.clear();
+        return buffer.put((byte)kind).putLong(match).putLong(System.currentTimeMillis());
+    }
+
+    private void append(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        journal.append(buffer);
+    }
+
+    /**
+     * Record the start of a match, or of a match resumed on a new connection
+     * @param match id of the match, unique among the matches of the journal
+     * @param seed seed of the server's shots
+     * @param token session token of the player, null if the match cannot be resumed
+     * @param snapshot snapshot of the match, see GameSession.snapshot
+     */
+    void start(long match, long seed, String token, byte[] snapshot) throws IOException {
+        byte[] name = token == null ? new byte[0] : token.getBytes(StandardCharsets.US_ASCII);
+        append(begin(START, match).putLong(seed).put((byte)name.length).put(name).put(snapshot));
+    }
+
+    /**
+     * Record a shot of the player or of the server
+     * @param kind SHOT or SERVER_SHOT
+     */
+    void shot(int kind, long match, int row, int column) throws IOException {
+        append(begin(kind, match).putShort((short)row).putShort((short)column));
+    }
+
+    /**
+     * Record a salvo of the player or of the server
+     * @param kind SALVO or SERVER_SALVO
+     * @param shots shots packed by Connection.packShot
+     */
+    void salvo(int kind, long match, int[] shots, int count) throws IOException {
+        ByteBuffer buffer = begin(kind, match).put((byte)count);
+        for (int i = 0; i < count; ++i)
+            buffer.putInt(shots[i]);
+        append(buffer);
+    }
+
+    /**
+     * Record the result of the server's shot
+     */
+    void result(long match, Ocean.CellStatus result) throws IOException {
+        append(begin(RESULT, match).put((byte)result.getValue()));
+    }
+
+    /**
+     * Record the results of the server's salvo
+     */
+    void results(long match, Ocean.CellStatus[] results, int count) throws IOException {
+        ByteBuffer buffer = begin(RESULTS, match).put((byte)count);
+        for (int i = 0; i < count; ++i)
+            buffer.put((byte)results[i].getValue());
+        append(buffer);
+    }
+
+    /**
+     * Record the end of a match, it is not recovered any more
+     */
+    void end(long match) throws IOException {
+        append(begin(END, match));
+    }
+
+    /**
+     * Match rebuilt from the journal
+     */
+    public static class Recovered {
+        private final long seed;
+        private final String token;
+        private final GameSession game;
+        private long lastTime;          // Wall-clock time of the last record, in milliseconds
+
+        Recovered(long seed, String token, GameSession game, long time) {
+            this.seed = seed;
+            this.token = token;
+            this.game = game;
+            lastTime = time;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        /**
+         * Get session token of the player
+         * @return token, null if the match cannot be resumed
+         */
+        public String getToken() {
+            return token;
+        }
+
+        /**
+         * Get the match as it was after its last record, with own ocean of the server and results of its shots
+         * @return session in the Game state, it sends nothing
+         */
+        public GameSession getGame() {
+            return game;
+        }
+
+        public long getLastTime() {
+            return lastTime;
+        }
+    }
+
+    /**
+     * Rebuild matches that were on when the journal stopped, e.g. because the server has crashed.
+     * Messages the server rejected back then are rejected again and change nothing
+     * @param directory directory of the journal
+     * @return matches that have not ended, by match id
+     * @throws IOException if the journal cannot be read
+     */
+    public static Map<Long, Recovered> recover(Path directory) throws IOException {
+        Map<Long, Recovered> matches = new HashMap<>();
+        TurnStats stats = new TurnStats();
+        Journal.replay(directory, record -> {
+            int kind = record.get();
+            long id = record.getLong(), time = record.getLong();
+            try {
+                if (kind == START) {
+                    long seed = record.getLong();
+                    byte[] name = new byte[record.get() & 0xFF];
+                    record.get(name);
+                    byte[] snapshot = new byte[record.remaining()];
+                    record.get(snapshot);
+                    GameSession game = GameSession.restore(snapshot, NOWHERE);
+                    game.setStats(stats);
+                    String token = name.length == 0 ? null : new String(name, StandardCharsets.US_ASCII);
+                    // A match resumed on a new connection starts again under a new id
+                    if (token != null)
+                        matches.values().removeIf(match -> token.equals(match.token));
+                    matches.put(id, new Recovered(seed, token, game, time));
+                    return;
+                }
+                Recovered match = matches.get(id);
+                if (match == null)
+                    return;
+                if (kind == END || !replay(match.game, kind, record))
+                    matches.remove(id);
+                else
+                    match.lastTime = time;
+            }
+            catch (IOException | RuntimeException e) {
+                // A record the server could not have written, the match is lost
+                matches.remove(id);
+            }
+        });
+        return matches;
+    }
+
+    /**
+     * Apply one record to a match
+     * @return true, if the match is still on
+     */
+    private static boolean replay(GameSession game, int kind, ByteBuffer record) throws IOException {
+        try {
+            switch (kind) {
+                case SHOT:
+                    int row = record.getShort() & 0xFFFF, column = record.getShort() & 0xFFFF;
+                    game.onMessage(Codec.SHOT, Connection.packShot(row, column), null);
+                    break;
+                case SALVO:
+                    int[] shots = readShots(record);
+                    game.onSalvo(shots, shots.length);
+                    break;
+                case RESULT:
+                    game.onMessage(Codec.RESULT, 0, Ocean.CellStatus.values()[record.get()]);
+                    break;
+                case RESULTS:
+                    int count = record.get() & 0xFF;
+                    Ocean.CellStatus[] results = new Ocean.CellStatus[count];
+                    for (int i = 0; i < count; ++i)
+                        results[i] = Ocean.CellStatus.values()[record.get()];
+                    game.onResults(results, count);
+                    break;
+                case SERVER_SHOT:
+                    game.shoot(record.getShort() & 0xFFFF, record.getShort() & 0xFFFF);
+                    break;
+                case SERVER_SALVO:
+                    int[] salvo = readShots(record);
+                    game.shoot(salvo, salvo.length);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown record " + kind);
+            }
+        }
+        catch (ProtocolException e) {
+            // Rejected by the server back then as well
+        }
+        return game.getState() == GameSession.State.Game;
+    }
+
+    private static int[] readShots(ByteBuffer record) {
+        int[] shots = new int[record.get() & 0xFF];
+        for (int i = 0; i < shots.length; ++i)
+            shots[i] = record.getInt();
+        return shots;
+    }
+}
@@ -0,0 +1,107 @@
+package server;
+
+import core.GameRules;
+import core.Ocean;
+import net.Codec;
+import net.Connection;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+
+/**
+ * Match between two players paired by the lobby, seen from one of them. Messages of the player are checked
+ * against the order of the game and forwarded to the partner's session, which may belong to another loop.
+ * Each side keeps its own copy of the turn state and changes it only on its own loop: by what its player sends
+ * and by what the partner's side delivers. The players keep their fleets, so results are trusted like
+ * in a match between two desktop players. Matches between players are never salvo games
+ */
+class RelayMatch implements Match {
+    private static final int FLEET_SIZE = GameRules.CLASSIC.getFleetSize();
+    private static final int SIZE = GameRules.CLASSIC.getSize();
+
+    private final GameServer server;
+    private final Session session;
+    private final Session partner;
+    private boolean isReady, isPartnerReady;
+    private boolean isMyTurn;               // true, if the player may shoot once both are ready
+    private boolean isWaitingResult;        // true, if the player has shot and the partner has not answered
+    private boolean owesResult;             // true, if the partner has shot and the player has not answered
+    private int shipsLost, shipsSunk;       // Ships of the player and of the partner destroyed
+
+    /**
+     * Create the player's side of the match
+     * @param server server counting finished matches
+     * @param session session of the player
+     * @param partner session of the partner
+     * @param movesFirst true, if the player shoots first
+     */
+    RelayMatch(GameServer server, Session session, Session partner, boolean movesFirst) {
+        this.server = server;
+        this.session = session;
+        this.partner = partner;
+        isMyTurn = movesFirst;
+    }
+
+    @Override
+    public void onMessage(int message, Codec codec) throws IOException {
+        int shot = codec.getShot();
+        Ocean.CellStatus result = codec.getResult();
+        switch (message) {
+            case Codec.READY:
+                if (isReady)
+                    throw new ProtocolException("Player is already ready");
+                isReady = true;
+                break;
+
+            case Codec.SHOT:
+                if (!isReady || !isPartnerReady || !isMyTurn || isWaitingResult || owesResult)
+                    throw new ProtocolException("Player has shot out of turn");
+                if (Connection.getRow(shot) >= SIZE || Connection.getColumn(shot) >= SIZE)
+                    throw new ProtocolException("Shot is outside the battlefield");
+                isMyTurn = false;
+                isWaitingResult = true;
+                break;
+
+            case Codec.RESULT:
+                if (!owesResult)
+                    throw new ProtocolException("Result without a shot");
+                owesResult = false;
+                isMyTurn = true;
+                if (result.isDestroyed() && ++shipsLost == FLEET_SIZE)
+                    server.onRelayFinished();
+                break;
+
+            default:
+                throw new ProtocolException("Unexpected message " + message);
+        }
+        partner.deliver(message, shot, result);
+    }
+
+    /**
+     * Handle a message of the partner forwarded to this side, before it is sent to the player
+     * @param message kind of the message, see Codec
+     * @param result result of the player's shot, for Codec.RESULT
+     */
+    void onPartnerMessage(int message, Ocean.CellStatus result) {
+        if (message == Codec.READY)
+            isPartnerReady = true;
+        else if (message == Codec.SHOT)
+            owesResult = true;
+        else if (message == Codec.RESULT) {
+            isWaitingResult = false;
+            if (result.isDestroyed())
+                ++shipsSunk;
+        }
+    }
+
+    @Override
+    public boolean isFinished() {
+        return shipsLost == FLEET_SIZE || shipsSunk == FLEET_SIZE;
+    }
+
+    @Override
+    public void onClosed() {
+        // The partner cannot go on alone
+        partner.closeLater();
+    }
+}
@@ -0,0 +1,129 @@
+package server;
+
+import java.io.IOException;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Thread multiplexing many sessions with one selector. Sockets are handed over by the acceptor
+ * through a queue and registered by the loop itself, so only the loop thread touches the selector keys.
+ * Other threads reach the loop's sessions the same way, with tasks run by the loop between selects
+ */
+class SelectorLoop implements Runnable {
+    private final GameServer server;
+    private final Selector selector;
+    private final Queue<Session> incoming = new ConcurrentLinkedQueue<>();  // Sessions to register
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();    // Tasks to run on the loop
+    private volatile boolean running = true;
+
+    SelectorLoop(GameServer server) throws IOException {
+        this.server = server;
+        selector = Selector.open();
+    }
+
+    /**
+     * Hand a new session over to the loop, may be called from any thread
+     * @param session session with a non-blocking socket
+     */
+    void add(Session session) {
+        incoming.add(session);
+        selector.wakeup();
+    }
+
+    /**
+     * Run a task on the loop thread, may be called from any thread. Tasks run in the order they are added
+     * @param session session the task works for, closed if the task fails
+     * @param task task touching sessions of the loop
+     */
+    void execute(Session session, Runnable task) {
+        tasks.add(() -> {
+            try {
+                task.run();
+            }
+            catch (RuntimeException e) {
+                close(session);
+            }
+        });
+        selector.wakeup();
+    }
+
+    /**
+     * Stop the loop and close all its sockets
+     */
+    void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                registerIncoming();
+                Runnable task;
+                while ((task = tasks.poll()) != null)
+                    task.run();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Session session = (Session)key.attachment();
+                    try {
+                        if (key.isWritable())
+                            session.onWritable();
+                        if (key.isValid() && key.isReadable())
+                            session.onReadable();
+                    }
+                    catch (IOException | RuntimeException e) {
+                        // Also a bug hit by the messages of one player, e.g. in its match, ends only its session
+                        close(session);
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            // Selector is broken, nothing can be served by this loop any more
+        }
+        finally {
+            for (SelectionKey key : selector.keys())
+                close((Session)key.attachment());
+            Session session;
+            while ((session = incoming.poll()) != null)
+                close(session);
+            try {
+                selector.close();
+            }
+            catch (IOException e) {
+                // Nothing to do, the loop is stopping anyway
+            }
+        }
+    }
+
+    private void registerIncoming() {
+        Session session;
+        while ((session = incoming.poll()) != null) {
+            try {
+                session.setKey(session.getChannel().register(selector, SelectionKey.OP_READ, session));
+            }
+            catch (IOException e) {
+                close(session);
+            }
+        }
+    }
+
+    void close(Session session) {
+        boolean isClosed;
+        try {
+            isClosed = session.close();
+        }
+        catch (RuntimeException e) {
+            // The socket is closed even if its match has failed
+            isClosed = true;
+        }
+        if (isClosed)
+            server.onSessionClosed(session);
+    }
+}
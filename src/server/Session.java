@@ -0,0 +1,359 @@
+package server;
+
+import core.Ocean;
+import net.Codec;
+import net.Connection;
+import net.GameSession;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Connection of one player, driven by the selector loop that owns the socket. After the handshake
+ * the player either plays the server in a BotMatch, or, if the player asks for a partner and the server
+ * has a lobby, waits there and plays another player in a RelayMatch. A player coming back with a session token
+ * resumes the suspended BotMatch.
+ * Not thread-safe: only the owning loop touches it, other threads hand work over with SelectorLoop.execute
+ */
+class Session implements GameSession.Transport {
+    private static final int MAX_NAME = 256;    // Longest name line accepted, in bytes
+    private static final int MAX_REPLY = 64;    // Longest reply to one message: results and a salvo of 10 shots
+
+    private final GameServer server;
+    private final SelectorLoop loop;
+    private final SocketChannel channel;
+    private final long seed;                    // Seed of the server's fleet and shots in a bot match
+    private final ByteBuffer in = ByteBuffer.allocate(512);     // Received bytes, in write mode
+    private final ByteBuffer out = ByteBuffer.allocate(MAX_NAME * 4);   // Bytes to send, in write mode
+    private SelectionKey key;
+    private Codec codec;                        // Codec of the protocol, null until the handshake is over
+    private boolean binary;                     // true, if the player speaks binary frames
+    private String playerName;
+    private Lobby.Ticket<Session> ticket;       // Ticket of the player waiting in the lobby, null if not waiting
+    private Match match;                        // Match of the player, null until the handshake is over and paired
+    private boolean closed;
+
+    Session(GameServer server, SelectorLoop loop, SocketChannel channel, long seed) {
+        this.server = server;
+        this.loop = loop;
+        this.channel = channel;
+        this.seed = seed;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    String getPlayerName() {
+        return playerName;
+    }
+
+    boolean isFinished() {
+        return match != null && match.isFinished();
+    }
+
+    /**
+     * Read what has arrived and handle complete messages
+     * @throws IOException if the player is lost or breaks the protocol
+     */
+    void onReadable() throws IOException {
+        if (channel.read(in) < 0)
+            throw new IOException("Player disconnected");
+        process();
+    }
+
+    /**
+     * Send the rest of the replies and handle messages that have waited for room in the output buffer
+     * @throws IOException if the player is lost or breaks the protocol
+     */
+    void onWritable() throws IOException {
+        flush();
+        process();
+    }
+
+    /**
+     * Handle complete messages while there is room for replies
+     */
+    private void process() throws IOException {
+        in.flip();
+        try {
+            if (codec == null)
+                readHandshake();
+            if (codec != null && match == null && in.hasRemaining()) {
+                // The player has to wait for the partner's name, and bytes left unread would keep the socket
+                // readable, so the selector could not wait for the player to disconnect
+                throw new ProtocolException("Message before the match has started");
+            }
+            while (match != null && out.remaining() >= MAX_REPLY) {
+                if (isFinished()) {
+                    // Nothing is expected after the game, but the player may keep the connection open
+                    in.position(in.limit());
+                    break;
+                }
+                int message = codec.decode(in);
+                if (message == Codec.INCOMPLETE)
+                    break;
+                if (message == Codec.BYE)
+                    throw new IOException("Player left");
+                match.onMessage(message, codec);
+            }
+        }
+        finally {
+            in.compact();
+        }
+        flush();
+    }
+
+    /**
+     * Send what has not been sent yet, waiting for the socket to become writable if needed
+     */
+    void flush() throws IOException {
+        out.flip();
+        channel.write(out);
+        boolean pending = out.hasRemaining();
+        out.compact();
+        // A full input buffer holds only complete messages waiting for room for replies, so stop reading
+        // until they are handled, which happens when the socket is writable
+        boolean full = !in.hasRemaining();
+        int ops = (full ? 0 : SelectionKey.OP_READ) | (pending || full ? SelectionKey.OP_WRITE : 0);
+        if (key.interestOps() != ops)
+            key.interestOps(ops);
+    }
+
+    /**
+     * Take the name line and answer with the server's name, offering binary frames back.
+     * A player asking for a partner is answered only when the partner is found
+     */
+    private void readHandshake() throws IOException {
+        int end = in.position();
+        while (end < in.limit() && in.get(end) != '\n')
+            ++end;
+        if (end == in.limit()) {
+            if (in.remaining() > MAX_NAME)
+                throw new ProtocolException("Name is too long");
+            return;
+        }
+        if (end - in.position() > MAX_NAME)
+            throw new ProtocolException("Name is too long");
+        byte[] line = new byte[end - in.position()];
+        in.get(line);
+        in.get();
+        String name = new String(line, Charset.defaultCharset());
+        if (name.endsWith("\r"))
+            name = name.substring(0, name.length() - 1);
+        binary = name.endsWith(Connection.BINARY_OFFER);
+        if (binary)
+            name = name.substring(0, name.length() - Connection.BINARY_OFFER.length());
+        boolean salvo = name.endsWith(Connection.SALVO_OFFER);
+        if (salvo)
+            name = name.substring(0, name.length() - Connection.SALVO_OFFER.length());
+        boolean offerResume = name.endsWith(Connection.RESUME_OFFER);
+        if (offerResume)
+            name = name.substring(0, name.length() - Connection.RESUME_OFFER.length());
+        int resume = name.lastIndexOf(Connection.RESUME);
+        if (resume >= 0) {
+            if (!binary)
+                throw new ProtocolException("Resuming needs the binary protocol");
+            resumeMatch(name.substring(resume + Connection.RESUME.length()));
+            playerName = name.substring(0, resume);
+            return;
+        }
+        int rating = -1;
+        int offer = name.lastIndexOf(Connection.MATCH_OFFER);
+        if (offer >= 0) {
+            try {
+                rating = Integer.parseInt(name.substring(offer + Connection.MATCH_OFFER.length()));
+            }
+            catch (NumberFormatException e) {
+                throw new ProtocolException("Rating is not a number");
+            }
+            name = name.substring(0, offer);
+        }
+        playerName = name;
+        codec = Codec.create(binary);
+        Lobby<Session> lobby = server.getSessionLobby();
+        if (rating < 0 || lobby == null) {
+            // Salvo frames are binary only
+            salvo &= binary;
+            String token = binary && offerResume ? server.createToken() : null;
+            sendName(server.getName(), 0, token, salvo);
+            match = new BotMatch(server, this, seed, salvo, token);
+            return;
+        }
+        ticket = lobby.join(this, rating);
+        if (ticket.getPlayer() == this)
+            return;
+        // The partner has waited, so the partner moves first
+        Session partner = ticket.getPlayer();
+        ticket = null;
+        match = new RelayMatch(server, this, partner, false);
+        sendName(partner.getPlayerName(), 2, null, false);
+        partner.loop.execute(partner, () -> partner.onPaired(this));
+    }
+
+    /**
+     * Go on with a suspended match: answer with the token and the numbers of messages the server has handled,
+     * then send what the player has missed
+     * @param state token and the player's numbers of shot and result messages handled, separated by dots
+     * @throws ProtocolException if the match is unknown or forfeited, or the numbers do not fit it
+     */
+    private void resumeMatch(String state) throws IOException {
+        // The match stays suspended until all of the line has been checked, so a bad line does not lose it
+        String[] parts = state.split("\\.");
+        if (parts.length != 3)
+            throw new ProtocolException("Resume line has no numbers of messages");
+        int shotsReceived, resultsReceived;
+        try {
+            shotsReceived = Integer.parseInt(parts[1]);
+            resultsReceived = Integer.parseInt(parts[2]);
+        }
+        catch (NumberFormatException e) {
+            throw new ProtocolException("Numbers of messages are not numbers");
+        }
+        byte[] snapshot = server.findSuspended(parts[0]);
+        if (snapshot == null)
+            throw new ProtocolException("Unknown session token");
+        codec = Codec.create(true);
+        GameSession game = GameSession.restore(snapshot, this);
+        if (!game.canResume(shotsReceived, resultsReceived))
+            throw new ProtocolException("Player has another state of the game");
+        if (!server.resume(parts[0], snapshot))
+            throw new ProtocolException("Match is resumed on another connection");
+        sendName(server.getName(), 0, parts[0] + "." + game.getShotsReceived() + "." + game.getResultsReceived(),
+                false);
+        match = new BotMatch(server, this, seed, game, parts[0], shotsReceived, resultsReceived);
+    }
+
+    /**
+     * Answer the name line
+     * @param name name of the partner
+     * @param turn order of the player's moves in a match with another player, 0 in a match with the server
+     * @param token session token to resume the match with, null if it cannot be resumed
+     * @param salvo true, if the salvo variant is accepted
+     * @throws ProtocolException if the reply does not fit the output buffer, e.g. a name that has grown
+     * when decoded and encoded again
+     */
+    private void sendName(String name, int turn, String token, boolean salvo) throws ProtocolException {
+        String reply = name + (turn > 0 ? Connection.TURN + turn : "") +
+                (token != null ? Connection.TOKEN + token : "") + (salvo ? Connection.SALVO_OFFER : "") +
+                (binary ? Connection.BINARY_OFFER : "") + "\n";
+        byte[] bytes = reply.getBytes(Charset.defaultCharset());
+        if (bytes.length > out.remaining())
+            throw new ProtocolException("Reply is too long");
+        out.put(bytes);
+    }
+
+    /**
+     * Start the match with the player who has found this one waiting in the lobby, on the loop of this session
+     * @param partner session of the partner
+     */
+    private void onPaired(Session partner) {
+        ticket = null;
+        if (closed) {
+            partner.closeLater();
+            return;
+        }
+        match = new RelayMatch(server, this, partner, true);
+        try {
+            sendName(partner.getPlayerName(), 1, null, false);
+            flush();
+        }
+        catch (IOException e) {
+            loop.close(this);
+        }
+    }
+
+    /**
+     * Forward a message of the partner to the player, may be called from any thread
+     * @param message kind of the message, see Codec
+     * @param shot shot packed by Connection.packShot, for Codec.SHOT
+     * @param result result of the player's shot, for Codec.RESULT
+     */
+    void deliver(int message, int shot, Ocean.CellStatus result) {
+        loop.execute(this, () -> {
+            if (closed)
+                return;
+            ((RelayMatch)match).onPartnerMessage(message, result);
+            if (message == Codec.SHOT)
+                codec.putShot(out, Connection.getRow(shot), Connection.getColumn(shot));
+            else if (message == Codec.RESULT)
+                codec.putResult(out, result);
+            else
+                codec.putReady(out);
+            try {
+                flush();
+            }
+            catch (IOException e) {
+                loop.close(this);
+            }
+        });
+    }
+
+    /**
+     * Close the session on its own loop, may be called from any thread
+     */
+    void closeLater() {
+        loop.execute(this, () -> loop.close(this));
+    }
+
+    @Override
+    public void sendShot(int row, int column) {
+        codec.putShot(out, row, column);
+    }
+
+    @Override
+    public void sendResult(Ocean.CellStatus result) {
+        codec.putResult(out, result);
+    }
+
+    @Override
+    public void sendReady() {
+        codec.putReady(out);
+    }
+
+    @Override
+    public void sendSalvo(int[] shots, int count) {
+        codec.putSalvo(out, shots, count);
+    }
+
+    @Override
+    public void sendResults(Ocean.CellStatus[] results, int count) {
+        codec.putResults(out, results, count);
+    }
+
+    /**
+     * Close the socket, ignoring errors
+     * @return true, if the session has been closed by this call, false if it was closed before
+     */
+    boolean close() {
+        if (closed)
+            return false;
+        closed = true;
+        if (ticket != null) {
+            // Paired meanwhile if the ticket is gone, then onPaired closes the partner
+            server.getSessionLobby().leave(ticket);
+            ticket = null;
+        }
+        try {
+            if (match != null)
+                match.onClosed();
+        }
+        finally {
+            try {
+                channel.close();
+            }
+            catch (IOException e) {
+                // Nothing to do, the socket is gone anyway
+            }
+        }
+        return true;
+    }
+}
@@ -1,2 +1,2 @@
 set PATH_TO_FX=C:\LatinName\javafx-sdk-11.0.2\lib
-java --module-path %PATH_TO_FX% --add-modules javafx.controls -jar "out/artifacts/battleshipNET/battleshipNET.jar" %1
+java --module-path %PATH_TO_FX% --add-modules javafx.controls -jar "out/artifacts/battleshipNET/battleshipNET.jar" %*
@@ -0,0 +1,163 @@
+package core;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BitOceanTest {
+    private BitOcean ocean;
+
+    @BeforeEach
+    void setUp() {
+        ocean = new BitOcean();
+        ocean.setRndSeed(123009);
+    }
+
+    @Test
+    void placeAllShipsRandomly() {
+        ocean.placeAllShipsRandomly();
+        int occupied = 0;
+        for (int i = 0; i < BitOcean.OCEAN_SIZE; ++i)
+            for (int j = 0; j < BitOcean.OCEAN_SIZE; ++j)
+                if (ocean.isOccupied(i, j))
+                    ++occupied;
+        assertEquals(20, occupied);
+    }
+
+    @Test
+    void okToPlaceShipAt() {
+        assertFalse(ocean.okToPlaceShipAt(7, 0, false, 4));
+        assertTrue(ocean.okToPlaceShipAt(6, 0, false, 4));
+        ocean.placeShipAt(6, 0, true, 4);
+        assertFalse(ocean.okToPlaceShipAt(5, 1, true, 1));
+        assertFalse(ocean.okToPlaceShipAt(7, 4, true, 1));
+        assertTrue(ocean.okToPlaceShipAt(4, 1, true, 1));
+        assertTrue(ocean.okToPlaceShipAt(6, 5, true, 1));
+    }
+
+    @Test
+    void isOccupied() {
+        assertFalse(ocean.isOccupied(10, 7));
+        assertFalse(ocean.isOccupied(6, 3));
+        ocean.placeShipAt(6, 3, false, 4);
+        assertTrue(ocean.isOccupied(6, 3));
+        assertTrue(ocean.isOccupied(9, 3));
+    }
+
+    @Test
+    void shootAt() {
+        ocean.placeShipAt(2, 1, true, 2);
+        assertFalse(ocean.shootAt(2, 0));
+        assertTrue(ocean.shootAt(2, 1));
+        assertTrue(ocean.shootAt(2, 2));
+        assertFalse(ocean.shootAt(2, 2));
+    }
+
+    @Test
+    void isGameOver() {
+        ocean.placeAllShipsRandomly();
+        for (int i = 0; i < BitOcean.OCEAN_SIZE; ++i)
+            for (int j = 0; j < BitOcean.OCEAN_SIZE; ++j)
+                ocean.shootAt(i, j);
+        assertTrue(ocean.isGameOver());
+    }
+
+    @Test
+    void getCellStatus() {
+        ocean.placeShipAt(7, 2, false, 3);
+        ocean.shootAt(7, 2);
+        ocean.shootAt(7, 3);
+        assertEquals(Ocean.CellStatus.Unknown, ocean.getCellStatus(10, 2));
+        assertEquals(Ocean.CellStatus.Unknown, ocean.getCellStatus(8, 2));
+        assertEquals(Ocean.CellStatus.Missed, ocean.getCellStatus(7, 3));
+        assertEquals(Ocean.CellStatus.Damaged, ocean.getCellStatus(7, 2));
+        ocean.shootAt(8, 2);
+        ocean.shootAt(9, 2);
+        assertEquals(Ocean.CellStatus.DestroyedVer, ocean.getCellStatus(7, 2));
+        assertEquals(Ocean.CellStatus.DestroyedVer, ocean.getCellStatus(9, 2));
+    }
+
+    @Test
+    void hasShotAt() {
+        assertFalse(ocean.hasShotAt(9, 9));
+        ocean.shootAt(9, 9);
+        assertTrue(ocean.hasShotAt(9, 9));
+    }
+
+    @Test
+    void shoot() {
+        ocean.placeShipAt(0, 0, true, 1);
+        ocean.placeShipAt(5, 5, true, 2);
+        assertEquals(ShotOutcome.MISS, ShotOutcome.getKind(ocean.shoot(0, 1)));
+        long outcome = ocean.shoot(5, 6);
+        assertEquals(ShotOutcome.HIT, ShotOutcome.getKind(outcome));
+        assertEquals(1, ShotOutcome.getShipId(outcome));
+        assertEquals(2, ShotOutcome.getLength(outcome));
+        assertTrue(ShotOutcome.isHorizontal(outcome));
+        assertEquals(ShotOutcome.DUPLICATE, ShotOutcome.getKind(ocean.shoot(5, 6)));
+        assertEquals(ShotOutcome.SUNK, ShotOutcome.getKind(ocean.shoot(5, 5)));
+        assertEquals(ShotOutcome.SUNK, ShotOutcome.getKind(ocean.shoot(0, 0)));
+    }
+
+    @Test
+    void sameFleetAsOcean() {
+        Ocean other = new Ocean();
+        other.setRndSeed(123009);
+        ocean.placeAllShipsRandomly();
+        other.placeAllShipsRandomly();
+        for (int row = 0; row < BitOcean.OCEAN_SIZE; ++row)
+            for (int column = 0; column < BitOcean.OCEAN_SIZE; ++column)
+                assertEquals(other.shoot(row, column), ocean.shoot(row, column));
+        assertTrue(ocean.isGameOver());
+    }
+
+    @Test
+    void packUnpack() {
+        ocean.placeAllShipsRandomly();
+        for (int i = 0; i < 30; ++i)
+            ocean.shoot(i * 7 % 10, i * 3 % 10);
+        ByteBuffer buffer = ByteBuffer.allocate(25);
+        ocean.pack(buffer);
+        assertEquals(25, buffer.position());
+        // Both implementations write and read the same layout
+        Ocean other = new Ocean();
+        other.unpack(buffer.flip());
+        BitOcean copy = new BitOcean();
+        copy.unpack(buffer.rewind());
+        for (int row = 0; row < BitOcean.OCEAN_SIZE; ++row) {
+            for (int column = 0; column < BitOcean.OCEAN_SIZE; ++column) {
+                assertEquals(ocean.hasShipAt(row, column), copy.hasShipAt(row, column));
+                assertEquals(ocean.getCellStatus(row, column), copy.getCellStatus(row, column));
+            }
+        }
+        for (int row = 0; row < BitOcean.OCEAN_SIZE; ++row)
+            for (int column = 0; column < BitOcean.OCEAN_SIZE; ++column)
+                assertEquals(other.shoot(row, column), copy.shoot(row, column));
+        assertThrows(IllegalStateException.class, () -> copy.unpack(buffer.rewind()));
+        // Two one-cell ships side by side
+        assertThrows(IllegalArgumentException.class,
+                () -> new BitOcean().unpack(ByteBuffer.wrap(new byte[]{5, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                        0, 0, 0, 0, 0, 0, 0, 0, 0, 0})));
+    }
+
+    @Test
+    void reset() {
+        ocean.placeAllShipsRandomly();
+        ocean.shoot(0, 0);
+        ocean.reset();
+        assertEquals(BitOcean.FLEET_SIZE, ocean.getShipsAfloat());
+        assertFalse(ocean.hasShotAt(0, 0));
+        assertTrue(ocean.okToPlaceShipAt(0, 0, true, 4));
+        ocean.placeAllShipsRandomly();
+        assertFalse(ocean.isGameOver());
+    }
+
+    @Test
+    void create() {
+        assertTrue(Battlefield.create(GameRules.CLASSIC) instanceof BitOcean);
+        assertTrue(Battlefield.create(new GameRules(12, new int[]{4, 3, 2, 1})) instanceof Ocean);
+    }
+}
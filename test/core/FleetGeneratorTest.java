@@ -0,0 +1,56 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FleetGeneratorTest {
+
+    @Test
+    void generate() {
+        FleetGenerator generator = new FleetGenerator(42);
+        byte[] layout = new byte[generator.getLayoutSize()];
+        PlacementMasks masks = generator.getMasks();
+        for (int k = 0; k < 1000; ++k) {
+            generator.generate(layout, 0);
+            long occupiedLo = 0, occupiedHi = 0;
+            for (int i = 0; i < layout.length; ++i) {
+                int code = layout[i] & 0xFF, length = BitOcean.FLEET[i];
+                assertTrue(masks.isLegal(length, code, occupiedLo, occupiedHi));
+                occupiedLo |= masks.getFootprintLo(length, code);
+                occupiedHi |= masks.getFootprintHi(length, code);
+            }
+            assertEquals(20, Long.bitCount(occupiedLo) + Long.bitCount(occupiedHi));
+        }
+    }
+
+    @Test
+    void fill() {
+        byte[] single = new byte[10], batch = new byte[35];
+        new FleetGenerator(7).fill(batch, 5, 3);
+        FleetGenerator generator = new FleetGenerator(7);
+        for (int k = 0; k < 3; ++k) {
+            generator.generate(single, 0);
+            for (int i = 0; i < 10; ++i)
+                assertEquals(single[i], batch[5 + k * 10 + i]);
+        }
+    }
+
+    @Test
+    void placeFleet() {
+        byte[] layout = new byte[10];
+        new FleetGenerator(1).generate(layout, 0);
+        BitOcean ocean = new BitOcean();
+        ocean.placeFleet(layout, 0);
+        for (int i = 0; i < BitOcean.OCEAN_SIZE; ++i)
+            for (int j = 0; j < BitOcean.OCEAN_SIZE; ++j)
+                ocean.shootAt(i, j);
+        assertTrue(ocean.isGameOver());
+    }
+
+    @Test
+    void fleetDoesNotFit() {
+        FleetGenerator generator = new FleetGenerator(new GameRules(5, new int[]{0, 0, 0, 0, 5}), 3);
+        assertThrows(IllegalStateException.class, () -> generator.generate(new byte[5], 0));
+    }
+}
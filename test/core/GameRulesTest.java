@@ -0,0 +1,35 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameRulesTest {
+
+    @Test
+    void classic() {
+        GameRules rules = GameRules.CLASSIC;
+        assertEquals(10, rules.getSize());
+        assertEquals(10, rules.getFleetSize());
+        assertEquals(4, rules.getMaxShipLength());
+        assertEquals(3, rules.getShipCount(2));
+        assertEquals(0, rules.getShipCount(5));
+        assertFalse(rules.isSparse());
+        assertArrayEquals(new int[]{4, 3, 3, 2, 2, 2, 1, 1, 1, 1}, rules.getShipLengths());
+    }
+
+    @Test
+    void sparseByDefault() {
+        assertFalse(new GameRules(GameRules.DENSE_LIMIT, new int[]{1}).isSparse());
+        assertTrue(new GameRules(GameRules.DENSE_LIMIT + 1, new int[]{1}).isSparse());
+        assertTrue(new GameRules(10, new int[]{1}, true).isSparse());
+    }
+
+    @Test
+    void invalid() {
+        assertThrows(IllegalArgumentException.class, () -> new GameRules(0, new int[]{1}));
+        assertThrows(IllegalArgumentException.class, () -> new GameRules(3, new int[]{0, 0, 0, 1}));
+        assertThrows(IllegalArgumentException.class, () -> new GameRules(10, new int[]{-1, 2}));
+        assertThrows(IllegalArgumentException.class, () -> new GameRules(10, new int[]{0}));
+    }
+}
@@ -3,6 +3,9 @@ package core;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class OceanTest {
@@ -38,6 +41,40 @@ class OceanTest {
         ocean.shootAt(2, 2);
     }
 
+    @Test
+    void placementMask() {
+        // Ships placed and removed keep the mask of occupied cells in step with the cells
+        Random rnd = new Random(5);
+        for (int round = 0; round < 200; ++round) {
+            int row = rnd.nextInt(12) - 1, column = rnd.nextInt(12) - 1, length = 1 + rnd.nextInt(4);
+            boolean horizontal = rnd.nextBoolean();
+            Ship ship = Ship.create(length);
+            assertEquals(isLegalByCells(row, column, horizontal, length),
+                    ship.okToPlaceShipAt(row, column, horizontal, ocean));
+            if (ocean.tryPlaceShipAt(row, column, horizontal, length) || rnd.nextInt(3) == 0) {
+                int cell = rnd.nextInt(100);
+                if (ocean.isOccupied(cell / 10, cell % 10))
+                    ocean.removeShipFrom(cell / 10, cell % 10);
+            }
+        }
+        ocean.reset();
+        assertTrue(Ship.create(4).okToPlaceShipAt(0, 0, true, ocean));
+    }
+
+    /**
+     * Check a placement cell by cell: inside the battlefield and no ship on or next to its cells
+     */
+    private boolean isLegalByCells(int row, int column, boolean horizontal, int length) {
+        int bottom = horizontal ? row : row + length - 1, right = horizontal ? column + length - 1 : column;
+        if (row < 0 || column < 0 || bottom >= ocean.OCEAN_SIZE || right >= ocean.OCEAN_SIZE)
+            return false;
+        for (int i = row - 1; i <= bottom + 1; ++i)
+            for (int j = column - 1; j <= right + 1; ++j)
+                if (ocean.isOccupied(i, j))
+                    return false;
+        return true;
+    }
+
     @Test
     void isGameOver() {
         ocean.placeAllShipsRandomly();
@@ -67,4 +104,134 @@ class OceanTest {
         ocean.shootAt(0, 0);
         assertTrue(ocean.hasShotAt(0, 0));
     }
-}
\ No newline at end of file
+
+    @Test
+    void customRules() {
+        Ocean custom = new Ocean(new GameRules(50, new int[]{2, 0, 0, 0, 1}));
+        custom.placeAllShipsRandomly();
+        assertEquals(50, custom.OCEAN_SIZE);
+        assertEquals(3, custom.FLEET_SIZE);
+        int occupied = 0;
+        for (int i = 0; i < custom.OCEAN_SIZE; ++i)
+            for (int j = 0; j < custom.OCEAN_SIZE; ++j)
+                if (custom.isOccupied(i, j))
+                    ++occupied;
+        assertEquals(7, occupied);
+    }
+
+    @Test
+    void sparseStorage() {
+        Ocean sparse = new Ocean(new GameRules(1000, new int[]{4, 3, 2, 1}));
+        assertThrows(IllegalStateException.class, sparse::getShipArray);
+        assertFalse(sparse.tryPlaceShipAt(900, 5, true, 4));
+        assertTrue(sparse.hasShipAt(900, 8));
+        sparse.shootAt(900, 5);
+        sparse.shootAt(901, 5);
+        assertEquals(Ocean.CellStatus.Damaged, sparse.getCellStatus(900, 5));
+        assertEquals(Ocean.CellStatus.Missed, sparse.getCellStatus(901, 5));
+        assertEquals(Ocean.CellStatus.Unknown, sparse.getCellStatus(900, 6));
+        for (int j = 6; j < 9; ++j)
+            sparse.shootAt(900, j);
+        assertEquals(Ocean.CellStatus.DestroyedHor, sparse.getCellStatus(900, 6));
+        Ship removed = sparse.removeShipFrom(900, 6);
+        assertEquals(4, removed.getLength());
+        assertFalse(sparse.hasShipAt(900, 5));
+    }
+
+    @Test
+    void sparsePlaceAllShipsRandomly() {
+        Ocean sparse = new Ocean(new GameRules(1000, new int[]{40, 30, 20, 10, 5}));
+        sparse.placeAllShipsRandomly();
+        assertFalse(sparse.isGameOver());
+    }
+
+    @Test
+    void reset() {
+        ocean.placeAllShipsRandomly();
+        Ship ship = null;
+        for (int i = 0; i < ocean.OCEAN_SIZE && ship == null; ++i)
+            for (int j = 0; j < ocean.OCEAN_SIZE && ship == null; ++j)
+                if (ocean.getShipAt(i, j).getLength() == 4)
+                    ship = ocean.getShipAt(i, j);
+        for (int i = 0; i < ocean.OCEAN_SIZE; ++i)
+            for (int j = 0; j < ocean.OCEAN_SIZE; ++j)
+                ocean.shootAt(i, j);
+        assertTrue(ocean.isGameOver());
+
+        ocean.reset();
+        assertFalse(ocean.isGameOver());
+        assertFalse(ocean.hasShotAt(0, 0));
+        assertFalse(ocean.hasShipAt(0, 0));
+        assertSame(EmptySea.INSTANCE, ocean.getShipAt(5, 5));
+
+        // The battleship is taken from the pool, without hits left from the previous game
+        ocean.placeAllShipsRandomly();
+        boolean reused = false;
+        for (int i = 0; i < ocean.OCEAN_SIZE; ++i)
+            for (int j = 0; j < ocean.OCEAN_SIZE; ++j)
+                reused |= ocean.getShipAt(i, j) == ship;
+        assertTrue(reused);
+        assertFalse(ship.isSunk());
+        assertFalse(ship.isDamaged());
+    }
+
+    @Test
+    void shoot() {
+        long[] last = new long[1];
+        ocean.setShotListener((row, column, outcome) -> last[0] = outcome);
+        assertFalse(ocean.tryPlaceShipAt(4, 4, false, 3));
+        assertEquals(ShotOutcome.MISS, ShotOutcome.getKind(ocean.shoot(3, 4)));
+        long outcome = ocean.shoot(5, 4);
+        assertEquals(outcome, last[0]);
+        assertEquals(ShotOutcome.HIT, ShotOutcome.getKind(outcome));
+        assertEquals(3, ShotOutcome.getLength(outcome));
+        assertFalse(ShotOutcome.isHorizontal(outcome));
+        assertEquals(Ocean.CellStatus.Duplicate, ShotOutcome.toCellStatus(ocean.shoot(5, 4)));
+        ocean.shoot(4, 4);
+        outcome = ocean.shoot(6, 4);
+        assertEquals(ShotOutcome.SUNK, ShotOutcome.getKind(outcome));
+        assertEquals(Ocean.CellStatus.DestroyedVer, ShotOutcome.toCellStatus(outcome));
+        assertEquals(ocean.getShipAt(4, 4).getId(), ShotOutcome.getShipId(outcome));
+        assertTrue(ocean.getShipAt(4, 4).isSunk());
+    }
+
+    @Test
+    void salvo() {
+        assertFalse(ocean.tryPlaceShipAt(4, 4, true, 2));
+        assertEquals(ocean.FLEET_SIZE, ocean.getShipsAfloat());
+        long[] outcomes = new long[4];
+        int hits = ocean.shootAt(new int[]{4, 0, 4, 4}, new int[]{4, 0, 4, 5}, 4, outcomes);
+        assertEquals(2, hits);
+        assertEquals(ShotOutcome.HIT, ShotOutcome.getKind(outcomes[0]));
+        assertEquals(ShotOutcome.MISS, ShotOutcome.getKind(outcomes[1]));
+        assertEquals(ShotOutcome.DUPLICATE, ShotOutcome.getKind(outcomes[2]));
+        assertEquals(ShotOutcome.SUNK, ShotOutcome.getKind(outcomes[3]));
+        assertEquals(ocean.FLEET_SIZE - 1, ocean.getShipsAfloat());
+    }
+
+    @Test
+    void packUnpack() {
+        ocean.placeAllShipsRandomly();
+        for (int i = 0; i < 30; ++i)
+            ocean.shoot(i * 7 % 10, i * 3 % 10);
+        ByteBuffer buffer = ByteBuffer.allocate(25);
+        ocean.pack(buffer);
+        assertEquals(25, buffer.position());
+        buffer.flip();
+        Ocean copy = new Ocean();
+        copy.unpack(buffer);
+        for (int row = 0; row < ocean.OCEAN_SIZE; ++row) {
+            for (int column = 0; column < ocean.OCEAN_SIZE; ++column) {
+                assertEquals(ocean.hasShipAt(row, column), copy.hasShipAt(row, column));
+                assertEquals(ocean.getCellStatus(row, column), copy.getCellStatus(row, column));
+            }
+        }
+        assertEquals(ocean.getShipsAfloat(), copy.getShipsAfloat());
+        buffer.rewind();
+        assertThrows(IllegalStateException.class, () -> copy.unpack(buffer));
+        // A single one-cell ship is not the whole fleet
+        assertThrows(IllegalArgumentException.class,
+                () -> new Ocean().unpack(ByteBuffer.wrap(new byte[]{1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                        0, 0, 0, 0, 0, 0, 0, 0, 0, 0})));
+    }
+}
@@ -0,0 +1,102 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlacementMasksTest {
+    private final PlacementMasks masks = PlacementMasks.forSize(10);
+
+    @Test
+    void forSize() {
+        assertSame(masks, PlacementMasks.forSize(10));
+        assertEquals(10, masks.getSize());
+        assertEquals(200, masks.getPlacementCount());
+        assertThrows(IllegalArgumentException.class, () -> PlacementMasks.forSize(12));
+    }
+
+    @Test
+    void encode() {
+        int code = masks.encode(7, 3, false);
+        assertEquals(7, masks.getRow(code));
+        assertEquals(3, masks.getColumn(code));
+        assertFalse(masks.isHorizontal(code));
+        assertTrue(masks.isHorizontal(masks.encode(0, 9, true)));
+    }
+
+    @Test
+    void fits() {
+        assertTrue(masks.fits(4, masks.encode(6, 0, false)));
+        assertFalse(masks.fits(4, masks.encode(7, 0, false)));
+        assertTrue(masks.fits(4, masks.encode(7, 6, true)));
+        assertFalse(masks.fits(4, masks.encode(7, 7, true)));
+    }
+
+    @Test
+    void masks() {
+        int code = masks.encode(6, 0, false);
+        assertEquals(1L << 60, masks.getFootprintLo(2, code));
+        assertEquals(1L << 6, masks.getFootprintHi(2, code));
+        assertEquals(8, Long.bitCount(masks.getHaloLo(2, code)) + Long.bitCount(masks.getHaloHi(2, code)));
+    }
+
+    @Test
+    // Compares legal placements with isLegal and Ship.okToPlaceShipAt on random battlefields,
+    // OceanTest.placementMask checks them against the cells
+    void legalAnchors() {
+        int[] anchors = new int[masks.getPlacementCount()];
+        for (long seed = 0; seed < 20; ++seed) {
+            Ocean ocean = new Ocean();
+            ocean.setRndSeed(seed);
+            ocean.placeAllShipsRandomly();
+            long occupiedLo = 0, occupiedHi = 0;
+            for (int cell = 0; cell < 100; ++cell) {
+                if (ocean.isOccupied(cell / 10, cell % 10)) {
+                    if (cell < 64)
+                        occupiedLo |= 1L << cell;
+                    else
+                        occupiedHi |= 1L << (cell - 64);
+                }
+            }
+            for (int length = 1; length <= 4; ++length) {
+                Ship ship = new Battleship();
+                ship.length = length;
+                int count = masks.legalAnchors(length, occupiedLo, occupiedHi, anchors);
+                int expected = 0;
+                for (int code = 0; code < masks.getPlacementCount(); ++code) {
+                    boolean ok = ship.okToPlaceShipAt(masks.getRow(code), masks.getColumn(code),
+                            masks.isHorizontal(code), ocean);
+                    assertEquals(ok, masks.isLegal(length, code, occupiedLo, occupiedHi));
+                    if (ok)
+                        assertEquals(code, anchors[expected++]);
+                }
+                assertEquals(expected, count);
+            }
+        }
+    }
+
+    @Test
+    // Checks that bow masks describe the same placements as legalAnchors
+    void legalAnchorMasks() {
+        int[] anchors = new int[masks.getPlacementCount()];
+        long[] anchorMasks = new long[4];
+        for (int placed = 0; placed < masks.getPlacementCount(); placed += 7) {
+            if (!masks.fits(3, placed))
+                continue;
+            long occupiedLo = masks.getFootprintLo(3, placed), occupiedHi = masks.getFootprintHi(3, placed);
+            long forbiddenLo = masks.getHaloLo(3, placed), forbiddenHi = masks.getHaloHi(3, placed);
+            for (int length = 1; length <= 4; ++length) {
+                int count = masks.legalAnchors(length, occupiedLo, occupiedHi, anchors);
+                assertEquals(count, masks.legalAnchorMasks(length, forbiddenLo, forbiddenHi, anchorMasks));
+                Set<Integer> expected = new HashSet<>();
+                for (int i = 0; i < count; ++i)
+                    expected.add(anchors[i]);
+                for (int i = 0; i < count; ++i)
+                    assertTrue(expected.contains(PlacementMasks.selectAnchor(anchorMasks, i)));
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShotBoardTest {
+
+    @Test
+    void record() {
+        ShotBoard board = new ShotBoard(10);
+        assertFalse(board.record(4, 4, Ocean.CellStatus.Damaged));
+        assertFalse(board.record(4, 5, Ocean.CellStatus.Missed));
+        assertFalse(board.record(5, 4, Ocean.CellStatus.Damaged));
+        assertFalse(board.record(5, 4, Ocean.CellStatus.Duplicate));
+        assertEquals(Ocean.CellStatus.Damaged, board.getStatus(5, 4));
+        assertTrue(board.record(6, 4, Ocean.CellStatus.DestroyedVer));
+        assertEquals(Ocean.CellStatus.DestroyedVer, board.getStatus(4, 4));
+        assertEquals(Ocean.CellStatus.DestroyedVer, board.getStatus(5, 4));
+        assertEquals(Ocean.CellStatus.Missed, board.getStatus(4, 5));
+        assertEquals(5, board.getShots());
+        assertEquals(1, board.getShipsDestroyed());
+    }
+
+    @Test
+    void reset() {
+        ShotBoard board = new ShotBoard(10);
+        board.record(0, 0, Ocean.CellStatus.DestroyedHor);
+        board.reset();
+        assertEquals(Ocean.CellStatus.Unknown, board.getStatus(0, 0));
+        assertEquals(0, board.getShots());
+        assertEquals(0, board.getShipsDestroyed());
+    }
+
+    @Test
+    void packUnpack() {
+        ShotBoard board = new ShotBoard(10);
+        board.record(4, 4, Ocean.CellStatus.Damaged);
+        board.record(4, 6, Ocean.CellStatus.Missed);
+        board.record(0, 0, Ocean.CellStatus.DestroyedHor);
+        board.record(0, 1, Ocean.CellStatus.DestroyedHor);
+        ByteBuffer buffer = ByteBuffer.allocate(50);
+        board.pack(buffer);
+        assertEquals(50, buffer.position());
+        buffer.flip();
+        ShotBoard copy = new ShotBoard(10);
+        copy.unpack(buffer, board.getShots());
+        for (int row = 0; row < 10; ++row)
+            for (int column = 0; column < 10; ++column)
+                assertEquals(board.getStatus(row, column), copy.getStatus(row, column));
+        assertEquals(4, copy.getShots());
+        assertEquals(1, copy.getShipsDestroyed());
+    }
+}
@@ -0,0 +1,60 @@
+package core.sim;
+
+import core.GameRules;
+import core.Ocean;
+import core.ShotBoard;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FleetSamplerTest {
+
+    @Test
+    void emptyBattlefield() {
+        Heatmap heatmap = new FleetSampler(GameRules.CLASSIC).sample(new ShotBoard(10).getCells(), 1000, 1);
+        assertEquals(1000, heatmap.getSamples());
+        float total = 0;
+        for (int cell = 0; cell < 100; ++cell)
+            total += heatmap.getProbability(cell);
+        // Every layout covers 20 cells
+        assertEquals(20, total, 0.01);
+        assertTrue(heatmap.getProbability(0) > 0);
+    }
+
+    @Test
+    void agreesWithShots() {
+        ShotBoard board = new ShotBoard(10);
+        board.record(0, 0, Ocean.CellStatus.DestroyedHor);
+        board.record(5, 5, Ocean.CellStatus.Missed);
+        board.record(3, 7, Ocean.CellStatus.Damaged);
+        Heatmap heatmap = new FleetSampler(GameRules.CLASSIC).sample(board.getCells(), 500, 2);
+        assertTrue(heatmap.getSamples() > 0);
+        assertEquals(0, heatmap.getProbability(0));
+        assertEquals(1, heatmap.getProbability(37));
+        assertEquals(0, heatmap.getProbability(55));
+        assertEquals(0, heatmap.getProbability(1));
+        assertEquals(0, heatmap.getProbability(11));
+        // The damaged ship cannot bend, so diagonal neighbours are empty
+        assertEquals(0, heatmap.getProbability(26));
+        assertEquals(0, heatmap.getProbability(48));
+    }
+
+    @Test
+    void sameSeedSameHeatmap() {
+        ShotBoard board = new ShotBoard(10);
+        board.record(2, 2, Ocean.CellStatus.Missed);
+        FleetSampler sampler = new FleetSampler(GameRules.CLASSIC);
+        Heatmap first = sampler.sample(board.getCells(), 700, 3), second = sampler.sample(board.getCells(), 700, 3);
+        for (int cell = 0; cell < 100; ++cell)
+            assertEquals(first.getProbability(cell), second.getProbability(cell));
+    }
+
+    @Test
+    void impossibleShots() {
+        ShotBoard board = new ShotBoard(5);
+        board.record(0, 0, Ocean.CellStatus.DestroyedHor);
+        board.record(0, 1, Ocean.CellStatus.DestroyedHor);
+        board.record(0, 2, Ocean.CellStatus.DestroyedHor);
+        assertEquals(0, new FleetSampler(new GameRules(5, new int[]{1, 1})).sample(board.getCells(), 100, 4).getSamples());
+    }
+}
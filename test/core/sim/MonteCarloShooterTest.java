@@ -0,0 +1,96 @@
+package core.sim;
+
+import core.BitOcean;
+import core.GameRules;
+import core.Ocean;
+import core.ShotBoard;
+import core.ShotOutcome;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MonteCarloShooterTest {
+
+    @Test
+    void zobristHash() {
+        ZobristHash zobrist = new ZobristHash(10);
+        ShotBoard board = new ShotBoard(10);
+        assertEquals(0, zobrist.hash(board.getCells()));
+        board.record(3, 4, Ocean.CellStatus.Damaged);
+        long hash = zobrist.update(0, 34, Ocean.CellStatus.Unknown, Ocean.CellStatus.Damaged);
+        assertEquals(zobrist.hash(board.getCells()), hash);
+        board.record(3, 5, Ocean.CellStatus.DestroyedHor);
+        hash = zobrist.update(hash, 34, Ocean.CellStatus.Damaged, Ocean.CellStatus.DestroyedHor);
+        hash = zobrist.update(hash, 35, Ocean.CellStatus.Unknown, Ocean.CellStatus.DestroyedHor);
+        assertEquals(zobrist.hash(board.getCells()), hash);
+        assertNotEquals(0, hash);
+    }
+
+    @Test
+    void hashFollowsBoard() {
+        ZobristHash zobrist = new ZobristHash(10);
+        MonteCarloShooter shooter = new MonteCarloShooter(new HeatmapCache(64), 64);
+        shooter.newGame(GameRules.CLASSIC, new Random(3));
+        BitOcean ocean = new BitOcean();
+        ocean.setRndSeed(3);
+        ocean.placeAllShipsRandomly();
+        ShotBoard board = new ShotBoard(10);
+        int[] cells = new int[3];
+        while (!ocean.isGameOver()) {
+            // A salvo leaves guessed misses behind, the next move has to see the real results
+            int count = shooter.selectShots(board.getCells(), cells, cells.length);
+            for (int i = 0; i < count && !ocean.isGameOver(); ++i)
+                shoot(ocean, board, cells[i]);
+            if (ocean.isGameOver())
+                break;
+            int cell = shooter.selectShot(board.getCells());
+            assertEquals(zobrist.hash(board.getCells()), shooter.getHash());
+            shoot(ocean, board, cell);
+        }
+    }
+
+    private static void shoot(BitOcean ocean, ShotBoard board, int cell) {
+        long outcome = ocean.shoot(cell / 10, cell % 10);
+        board.record(cell / 10, cell % 10, ShotOutcome.toCellStatus(outcome));
+    }
+
+    @Test
+    void cacheEvictsLeastRecentlyUsed() {
+        HeatmapCache cache = new HeatmapCache(2);
+        Heatmap heatmap = new Heatmap(1, new int[1], 0);
+        cache.put(1, heatmap);
+        cache.put(2, heatmap);
+        assertSame(heatmap, cache.get(1));
+        cache.put(3, heatmap);
+        assertEquals(2, cache.size());
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(1));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void finishesDamagedShip() {
+        MonteCarloShooter shooter = new MonteCarloShooter(new HeatmapCache(16), 256);
+        shooter.newGame(GameRules.CLASSIC, new Random(1));
+        ShotBoard board = new ShotBoard(10);
+        board.record(4, 4, Ocean.CellStatus.Damaged);
+        board.record(4, 5, Ocean.CellStatus.Damaged);
+        board.record(4, 6, Ocean.CellStatus.Missed);
+        assertEquals(4 * 10 + 3, shooter.selectShot(board.getCells()));
+    }
+
+    @Test
+    void cachedGamesAreReproducible() {
+        HeatmapCache cache = new HeatmapCache(4096);
+        Strategy monteCarlo = Strategy.of("monte carlo", () -> new MonteCarloShooter(cache, 128));
+        Strategy probability = Strategy.of("probability", ProbabilityShooter::new);
+        SimulationReport first = new SimulationEngine(GameRules.CLASSIC, monteCarlo, probability).run(8, 6);
+        assertTrue(cache.getHits() > 0);
+        SimulationReport second = new SimulationEngine(GameRules.CLASSIC, monteCarlo, probability).run(8, 6);
+        assertEquals(first.getWins(0), second.getWins(0));
+        assertEquals(first.getMeanShots(), second.getMeanShots());
+    }
+}
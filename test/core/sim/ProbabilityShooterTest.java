@@ -0,0 +1,55 @@
+package core.sim;
+
+import core.GameRules;
+import core.Ocean;
+import core.ShotBoard;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProbabilityShooterTest {
+
+    @Test
+    // On an empty battlefield the cells near the center are covered by the most placements
+    void emptyBattlefield() {
+        ProbabilityShooter shooter = new ProbabilityShooter();
+        shooter.newGame(GameRules.CLASSIC, new Random(1));
+        int cell = shooter.selectShot(new ShotBoard(10).getCells());
+        int row = cell / 10, column = cell % 10;
+        assertTrue(row >= 2 && row <= 7 && column >= 2 && column <= 7);
+    }
+
+    @Test
+    void finishesDamagedShip() {
+        ProbabilityShooter shooter = new ProbabilityShooter();
+        shooter.newGame(GameRules.CLASSIC, new Random(1));
+        ShotBoard board = new ShotBoard(10);
+        board.record(4, 4, Ocean.CellStatus.Damaged);
+        board.record(4, 5, Ocean.CellStatus.Damaged);
+        board.record(4, 6, Ocean.CellStatus.Missed);
+        assertEquals(4 * 10 + 3, shooter.selectShot(board.getCells()));
+    }
+
+    @Test
+    void avoidsCellsNearDestroyedShips() {
+        ProbabilityShooter shooter = new ProbabilityShooter();
+        shooter.newGame(new GameRules(5, new int[]{2}), new Random(1));
+        ShotBoard board = new ShotBoard(5);
+        board.record(0, 0, Ocean.CellStatus.DestroyedHor);
+        for (int i = 0; i < 20; ++i) {
+            int cell = shooter.selectShot(board.getCells());
+            assertFalse(cell / 5 <= 1 && cell % 5 <= 1);
+        }
+    }
+
+    @Test
+    void beatsHuntTarget() {
+        SimulationReport report = new SimulationEngine(GameRules.CLASSIC,
+                Strategy.of("probability", ProbabilityShooter::new),
+                Strategy.of("hunt/target", HuntTargetShooter::new)).run(400, 5);
+        assertTrue(report.getMeanShots() > 0);
+        assertTrue(report.getWins(0) > report.getWins(1));
+    }
+}
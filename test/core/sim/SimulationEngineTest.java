@@ -0,0 +1,44 @@
+package core.sim;
+
+import core.GameRules;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationEngineTest {
+    private final Strategy random = Strategy.of("random", RandomShooter::new),
+            huntTarget = Strategy.of("hunt/target", HuntTargetShooter::new);
+
+    @Test
+    void run() {
+        SimulationReport report = new SimulationEngine(GameRules.CLASSIC, huntTarget, random).run(500, 42);
+        assertEquals(500, report.getGames());
+        assertEquals(500, report.getWins(0) + report.getWins(1));
+        assertTrue(report.getWinRate(0) > 0.9);
+        assertTrue(report.getMeanShotsToWin(0) < report.getMeanShotsToWin(1) || report.getWins(1) == 0);
+        // Random shooting has to hit all 20 cells, so a game cannot be shorter than 20 shots
+        assertTrue(report.getShotsPercentile(0) >= 20);
+        assertTrue(report.getShotsPercentile(100) <= 400);
+    }
+
+    @Test
+    // The same seed gives the same games, however they are spread over threads
+    void reproducible() {
+        SimulationReport parallel = new SimulationEngine(GameRules.CLASSIC, huntTarget, huntTarget).run(300, 7);
+        SimulationReport single = new SimulationEngine(GameRules.CLASSIC, huntTarget, huntTarget,
+                new ForkJoinPool(1)).run(300, 7);
+        assertEquals(parallel.getWins(0), single.getWins(0));
+        for (int shots = 0; shots <= 200; ++shots)
+            assertEquals(parallel.getGamesWithShots(shots), single.getGamesWithShots(shots));
+    }
+
+    @Test
+    void customRules() {
+        GameRules rules = new GameRules(8, new int[]{2, 1, 1});
+        SimulationReport report = new SimulationEngine(rules, random, random).run(100, 3);
+        assertEquals(100, report.getGames());
+        assertTrue(report.getShotsPercentile(100) <= 2 * 64);
+    }
+}
@@ -0,0 +1,60 @@
+package gui;
+
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameLogTest {
+    @Test
+    void batches() {
+        GameLog log = new GameLog(3);
+        List<String> changes = new ArrayList<>();
+        log.addListener((ListChangeListener<String>)change -> {
+            while (change.next())
+                changes.add((change.wasRemoved() ? "-" + change.getRemoved() : "")
+                        + (change.wasAdded() ? "+" + change.getAddedSubList() : ""));
+        });
+        assertFalse(log.flush());
+        log.append("a");
+        log.append("b");
+        assertEquals(0, log.size());
+        assertTrue(log.flush());
+        assertEquals(List.of("a", "b"), log);
+        assertEquals(List.of("+[a, b]"), changes);
+        // Full, the oldest lines make room
+        changes.clear();
+        log.append("c");
+        log.append("d");
+        log.flush();
+        assertEquals(List.of("b", "c", "d"), log);
+        assertEquals(String.join("", changes), "-[a]+[c, d]");
+        log.clear();
+        assertTrue(log.isEmpty());
+    }
+
+    @Test
+    void overflow() {
+        GameLog log = new GameLog(100);
+        for (int i = 0; i < 1000; ++i) {
+            log.append(Integer.toString(i));
+            if (i % 7 == 0)
+                log.flush();
+        }
+        log.flush();
+        assertEquals(100, log.size());
+        for (int i = 0; i < 100; ++i)
+            assertEquals(Integer.toString(900 + i), log.get(i));
+        // More lines than fit in one batch
+        for (int i = 0; i < 250; ++i)
+            log.append("x" + i);
+        log.flush();
+        assertEquals("x150", log.get(0));
+        assertEquals("x249", log.get(99));
+        assertThrows(IndexOutOfBoundsException.class, () -> log.get(100));
+        assertThrows(IllegalArgumentException.class, () -> new GameLog(0));
+    }
+}
@@ -0,0 +1,104 @@
+package net;
+
+import core.Ocean;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncTransportTest {
+    /**
+     * Transport recording messages, it fails from the given message on
+     */
+    private static class Recorder implements GameSession.Transport {
+        final List<String> sent = new ArrayList<>();
+        final CountDownLatch sending = new CountDownLatch(1);   // Released to let messages go
+        final int failAt;
+
+        Recorder(int failAt) {
+            this.failAt = failAt;
+        }
+
+        private void send(String message) throws IOException {
+            try {
+                sending.await();
+            }
+            catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (sent.size() >= failAt)
+                throw new IOException("Broken pipe");
+            sent.add(message);
+        }
+
+        @Override
+        public void sendShot(int row, int column) throws IOException {
+            send("shot " + row + " " + column);
+        }
+
+        @Override
+        public void sendResult(Ocean.CellStatus result) throws IOException {
+            send("result " + result);
+        }
+
+        @Override
+        public void sendReady() throws IOException {
+            send("ready");
+        }
+
+        @Override
+        public void sendSalvo(int[] shots, int count) throws IOException {
+            send("salvo " + Arrays.toString(Arrays.copyOf(shots, count)));
+        }
+
+        @Override
+        public void sendResults(Ocean.CellStatus[] results, int count) throws IOException {
+            send("results " + Arrays.toString(Arrays.copyOf(results, count)));
+        }
+    }
+
+    @Test
+    void orderAndCopies() throws IOException, InterruptedException {
+        Recorder target = new Recorder(Integer.MAX_VALUE);
+        AsyncTransport transport = new AsyncTransport(target, e -> fail(e));
+        // Nothing goes out yet, so the caller returns at once and reuses its arrays
+        int[] shots = {1, 2, 3};
+        Ocean.CellStatus[] results = {Ocean.CellStatus.Missed, Ocean.CellStatus.Damaged};
+        transport.sendReady();
+        transport.sendSalvo(shots, 2);
+        shots[0] = 7;
+        transport.sendResults(results, 2);
+        results[0] = Ocean.CellStatus.Duplicate;
+        transport.sendShot(4, 5);
+        transport.sendResult(Ocean.CellStatus.Duplicate);
+        target.sending.countDown();
+        transport.close();
+        assertTrue(transport.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(List.of("ready", "salvo [1, 2]", "results [Missed, Damaged]", "shot 4 5", "result Duplicate"),
+                target.sent);
+        // Closed, later messages are dropped
+        transport.sendReady();
+        assertEquals(5, target.sent.size());
+    }
+
+    @Test
+    void error() throws IOException, InterruptedException {
+        Recorder target = new Recorder(1);
+        AtomicInteger errors = new AtomicInteger();
+        AsyncTransport transport = new AsyncTransport(target, e -> errors.incrementAndGet());
+        for (int i = 0; i < 5; ++i)
+            transport.sendShot(i, i);
+        target.sending.countDown();
+        transport.close();
+        assertTrue(transport.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(List.of("shot 0 0"), target.sent);
+        assertEquals(1, errors.get());
+    }
+}
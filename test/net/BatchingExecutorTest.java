@@ -0,0 +1,80 @@
+package net;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchingExecutorTest {
+    @Test
+    void batches() {
+        List<Runnable> scheduled = new ArrayList<>();
+        List<String> done = new ArrayList<>();
+        BatchingExecutor executor = new BatchingExecutor(scheduled::add, () -> done.add("frame"));
+        for (int i = 0; i < 3; ++i) {
+            int task = i;
+            executor.execute(() -> done.add("task " + task));
+        }
+        assertEquals(1, scheduled.size());
+        scheduled.remove(0).run();
+        assertEquals(List.of("task 0", "task 1", "task 2", "frame"), done);
+        // A task added by a task of the batch runs in it, a drain scheduled for it finds nothing
+        done.clear();
+        executor.execute(() -> executor.execute(() -> done.add("nested")));
+        scheduled.remove(0).run();
+        assertEquals(List.of("nested", "frame"), done);
+        assertEquals(1, scheduled.size());
+    }
+
+    @Test
+    void failingTask() {
+        List<Runnable> scheduled = new ArrayList<>();
+        List<String> done = new ArrayList<>();
+        BatchingExecutor executor = new BatchingExecutor(scheduled::add, () -> done.add("frame"));
+        executor.execute(() -> done.add("task 0"));
+        executor.execute(() -> {
+            throw new IllegalStateException("task 1");
+        });
+        executor.execute(() -> done.add("task 2"));
+        executor.execute(() -> {
+            throw new IllegalArgumentException("task 3");
+        });
+        Runnable drain = scheduled.remove(0);
+        IllegalStateException e = assertThrows(IllegalStateException.class, drain::run);
+        assertEquals(1, e.getSuppressed().length);
+        assertEquals(List.of("task 0", "task 2", "frame"), done);
+        // The queue is empty, and the next task gets a drain of its own
+        executor.execute(() -> done.add("task 4"));
+        assertEquals(1, scheduled.size());
+        scheduled.remove(0).run();
+        assertEquals(List.of("task 0", "task 2", "frame", "task 4", "frame"), done);
+    }
+
+    @Test
+    void order() throws InterruptedException {
+        ExecutorService target = Executors.newSingleThreadExecutor();
+        List<Integer> done = new ArrayList<>();     // Touched on the target thread only
+        int[] batches = new int[1];
+        BatchingExecutor executor = new BatchingExecutor(target, () -> ++batches[0]);
+        int count = 100000;
+        for (int i = 0; i < count; ++i) {
+            int task = i;
+            executor.execute(() -> done.add(task));
+        }
+        CountDownLatch finished = new CountDownLatch(1);
+        executor.execute(finished::countDown);
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        target.shutdown();
+        assertTrue(target.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(count, done.size());
+        for (int i = 0; i < count; ++i)
+            assertEquals(i, done.get(i));
+        assertTrue(batches[0] >= 1 && batches[0] <= count + 1);
+    }
+}
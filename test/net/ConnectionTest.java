@@ -0,0 +1,162 @@
+package net;
+
+import core.Ocean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionTest {
+    private Connection client, server;
+
+    /**
+     * Connect a client and a server over loopback sockets
+     */
+    private void connect(boolean offerBinary) throws IOException {
+        try (ServerSocket listener = new ServerSocket(0)) {
+            CompletableFuture<Connection> accepted = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return Connection.accept(listener.accept(), "server");
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            Socket socket = new Socket(InetAddress.getLoopbackAddress(), listener.getLocalPort());
+            client = Connection.connect(socket.getInputStream(), socket.getOutputStream(), "client", offerBinary);
+            server = accepted.join();
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (client != null)
+            client.close();
+        if (server != null)
+            server.close();
+    }
+
+    @Test
+    void binaryHandshake() throws IOException {
+        connect(true);
+        assertTrue(client.isBinary());
+        assertTrue(server.isBinary());
+        assertEquals("server", client.getPartnerName());
+        assertEquals("client", server.getPartnerName());
+    }
+
+    @Test
+    void oldClient() throws IOException {
+        connect(false);
+        assertFalse(client.isBinary());
+        assertFalse(server.isBinary());
+        assertEquals("client", server.getPartnerName());
+    }
+
+    @Test
+    void oldServer() throws IOException {
+        ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        InputStream reply = new ByteArrayInputStream(("server" + System.lineSeparator() + "3 4\n").getBytes());
+        Connection connection = Connection.connect(reply, sent, "client", true);
+        assertFalse(connection.isBinary());
+        assertEquals("server", connection.getPartnerName());
+        int shot = connection.readShot();
+        assertEquals(3, Connection.getRow(shot));
+        assertEquals(4, Connection.getColumn(shot));
+    }
+
+    @Test
+    void messages() throws IOException {
+        for (boolean binary : new boolean[]{true, false}) {
+            connect(binary);
+            client.sendReady();
+            server.readReady();
+            client.sendShot(7, 2);
+            int shot = server.readShot();
+            assertEquals(7, Connection.getRow(shot));
+            assertEquals(2, Connection.getColumn(shot));
+            server.sendResult(Ocean.CellStatus.DestroyedVer);
+            assertEquals(Ocean.CellStatus.DestroyedVer, client.readResult());
+            server.sendShot(0, 9);
+            assertEquals(Connection.packShot(0, 9), client.readShot());
+            client.sendResult(Ocean.CellStatus.Duplicate);
+            assertEquals(Ocean.CellStatus.Duplicate, server.readResult());
+            tearDown();
+        }
+    }
+
+    @Test
+    void frameSizes() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Connection connection = new BinaryConnection(new ByteArrayInputStream(new byte[0]), out, "partner");
+        connection.sendShot(9, 9);
+        assertEquals(5, out.size());
+        connection.sendResult(Ocean.CellStatus.Missed);
+        assertEquals(6, out.size());
+    }
+
+    @Test
+    void unexpectedFrame() throws IOException {
+        connect(true);
+        client.sendReady();
+        assertThrows(ProtocolException.class, () -> server.readShot());
+        client.close();
+        assertThrows(EOFException.class, () -> server.readShot());
+    }
+
+    @Test
+    void salvoFrames() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Connection writer = new BinaryConnection(new ByteArrayInputStream(new byte[0]), out, "partner");
+        int[] shots = {Connection.packShot(1, 2), Connection.packShot(3, 4), Connection.packShot(5, 6)};
+        writer.sendSalvo(shots, 3);
+        assertEquals(2 + 3 * 4, out.size());
+        writer.sendResults(new Ocean.CellStatus[]{Ocean.CellStatus.Missed, Ocean.CellStatus.Damaged}, 2);
+        assertEquals(14 + 2 + 2, out.size());
+
+        Connection reader = new BinaryConnection(new ByteArrayInputStream(out.toByteArray()), new ByteArrayOutputStream(),
+                "partner");
+        assertEquals(Codec.SALVO, reader.read());
+        assertEquals(3, reader.getCount());
+        assertEquals(Connection.packShot(5, 6), reader.getSalvo()[2]);
+        Ocean.CellStatus[] results = new Ocean.CellStatus[Codec.MAX_SALVO];
+        assertEquals(2, reader.readResults(results));
+        assertEquals(Ocean.CellStatus.Damaged, results[1]);
+
+        // The codec waits for the whole frame
+        Codec codec = Codec.create(true);
+        ByteBuffer in = ByteBuffer.wrap(out.toByteArray(), 0, 13);
+        assertEquals(Codec.INCOMPLETE, codec.decode(in));
+        in = ByteBuffer.wrap(out.toByteArray());
+        assertEquals(Codec.SALVO, codec.decode(in));
+        assertEquals(Connection.packShot(3, 4), codec.getSalvo()[1]);
+        assertEquals(Codec.RESULTS, codec.decode(in));
+        assertEquals(Ocean.CellStatus.Missed, codec.getResults()[0]);
+        assertEquals(2, codec.getCount());
+        assertThrows(ProtocolException.class, () -> Codec.create(true).decode(ByteBuffer.wrap(new byte[]{0x04, 0})));
+    }
+
+    @Test
+    void salvoNeedsBinary() throws IOException {
+        connect(false);
+        assertThrows(ProtocolException.class, () -> client.sendSalvo(new int[1], 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> Connection.connect(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream(),
+                        "client", false, -1, true));
+        // Desktop server plays the classic game with a client offering salvos
+        ByteArrayOutputStream reply = new ByteArrayOutputStream();
+        Connection accepted = Connection.accept(new ByteArrayInputStream(
+                ("client" + Connection.SALVO_OFFER + Connection.BINARY_OFFER + "\n").getBytes()), reply, "server");
+        assertEquals("client", accepted.getPartnerName());
+        assertFalse(accepted.isSalvo());
+        assertEquals("server" + Connection.BINARY_OFFER + System.lineSeparator(), reply.toString());
+    }
+}
@@ -0,0 +1,247 @@
+package net;
+
+import core.GameRules;
+import core.Ocean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.ProtocolException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameSessionTest {
+    private final List<String> sent = new ArrayList<>();    // Messages sent to the partner
+    private Ocean ocean;
+    private GameSession session;
+    private Boolean won;                                    // Result of the game, null while it is on
+    private final TurnStats stats = new TurnStats();
+
+    @BeforeEach
+    void setUp() {
+        ocean = new Ocean(new GameRules(3, new int[]{1}));
+        ocean.tryPlaceShipAt(1, 1, true, 1);
+        session = new GameSession(ocean, createTransport(), true);
+        session.setStats(stats);
+        session.setListener(new GameSession.Listener() {
+            @Override
+            public void onGameOver(boolean won) {
+                GameSessionTest.this.won = won;
+            }
+        });
+    }
+
+    private GameSession.Transport createTransport() {
+        return new GameSession.Transport() {
+            @Override
+            public void sendShot(int row, int column) {
+                sent.add("shot " + row + " " + column);
+            }
+
+            @Override
+            public void sendResult(Ocean.CellStatus result) {
+                sent.add("result " + result);
+            }
+
+            @Override
+            public void sendReady() {
+                sent.add("ready");
+            }
+
+            @Override
+            public void sendSalvo(int[] shots, int count) {
+                sent.add("salvo " + count);
+            }
+
+            @Override
+            public void sendResults(Ocean.CellStatus[] results, int count) {
+                sent.add("results " + List.of(results).subList(0, count));
+            }
+        };
+    }
+
+    @Test
+    void setupAndTurns() throws IOException {
+        assertEquals(GameSession.State.Connect, session.getState());
+        session.onMessage(Codec.READY, 0, null);
+        session.beginSetup();
+        assertFalse(session.isMyTurn());
+        session.ready();
+        assertEquals(GameSession.State.Game, session.getState());
+        assertTrue(session.isMyTurn());
+        assertTrue(session.shoot(0, 2));
+        assertFalse(session.isMyTurn());
+        assertFalse(session.shoot(0, 1));
+        session.onMessage(Codec.RESULT, 0, Ocean.CellStatus.Missed);
+        assertEquals(Ocean.CellStatus.Missed, session.getBoard().getStatus(0, 2));
+        session.onMessage(Codec.SHOT, Connection.packShot(0, 0), null);
+        assertTrue(session.isMyTurn());
+        assertEquals(List.of("ready", "shot 0 2", "result Missed"), sent);
+        assertEquals(1, session.getMyShots());
+        assertEquals(1, session.getPartnerShots());
+        assertEquals(1, stats.getShotsFired());
+        assertEquals(1, stats.getShotsAnswered());
+        assertEquals(1, stats.getRoundTripCount());
+        assertEquals(1, stats.getResponseCount());
+    }
+
+    @Test
+    void duplicatesAndDisconnects() throws IOException {
+        session.beginSetup();
+        session.ready();
+        session.onMessage(Codec.READY, 0, null);
+        session.shoot(0, 0);
+        session.onMessage(Codec.RESULT, 0, Ocean.CellStatus.Missed);
+        session.onMessage(Codec.SHOT, Connection.packShot(0, 0), null);
+        session.shoot(0, 1);
+        session.onMessage(Codec.RESULT, 0, Ocean.CellStatus.Missed);
+        session.onMessage(Codec.SHOT, Connection.packShot(0, 0), null);
+        assertEquals("result Duplicate", sent.get(sent.size() - 1));
+        assertEquals(1, stats.getDuplicates());
+        session.disconnect();
+        session.disconnect();
+        assertEquals(1, stats.getDisconnects());
+        assertTrue(stats.getRoundTripMaxMicros() >= stats.getRoundTripP50Micros());
+    }
+
+    @Test
+    void snapshotAndResume() throws IOException {
+        session.beginSetup();
+        session.ready();
+        session.onMessage(Codec.READY, 0, null);
+        session.shoot(0, 0);
+        session.onMessage(Codec.RESULT, 0, Ocean.CellStatus.Missed);
+        session.onMessage(Codec.SHOT, Connection.packShot(0, 0), null);
+        session.shoot(0, 2);
+        byte[] snapshot = session.snapshot();
+        session.disconnect();
+        assertTrue(session.isSuspended());
+        assertArrayEquals(snapshot, session.snapshot());
+
+        sent.clear();
+        GameSession restored = GameSession.restore(snapshot, createTransport());
+        assertEquals(GameSession.State.Game, restored.getState());
+        assertFalse(restored.isMyTurn());
+        assertEquals(Ocean.CellStatus.Missed, restored.getBoard().getStatus(0, 0));
+        assertEquals(Ocean.CellStatus.Missed, restored.getOcean().getCellStatus(0, 0));
+        assertTrue(restored.getOcean().hasShipAt(1, 1));
+        assertEquals(1, restored.getShotsReceived());
+        assertEquals(1, restored.getResultsReceived());
+        assertThrows(ProtocolException.class, () -> restored.resume(createTransport(), 0, 0));
+        // The partner has got neither the last result nor the shot in flight
+        restored.resume(createTransport(), 1, 0);
+        assertEquals(List.of("result Missed", "shot 0 2"), sent);
+        restored.onMessage(Codec.RESULT, 0, Ocean.CellStatus.Missed);
+        assertEquals(Ocean.CellStatus.Missed, restored.getBoard().getStatus(0, 2));
+        assertThrows(ProtocolException.class,
+                () -> GameSession.restore(Arrays.copyOf(snapshot, 20), createTransport()));
+        byte[] damaged = snapshot.clone();
+        damaged[34] = 5;            // Salvo size of a game without salvos
+        assertThrows(ProtocolException.class, () -> GameSession.restore(damaged, createTransport()));
+    }
+
+    @Test
+    void staleReader() throws IOException, InterruptedException {
+        session.beginSetup();
+        session.ready();
+        session.onMessage(Codec.READY, 0, null);
+        List<Runnable> tasks = new ArrayList<>();
+        // The old connection fails only after the game has gone on with a new one
+        Connection old = new BinaryConnection(new ByteArrayInputStream(new byte[0]), OutputStream.nullOutputStream(),
+                "old");
+        session.listen(old, tasks::add).join();
+        PipedOutputStream partner = new PipedOutputStream();
+        Thread reader = session.listen(new BinaryConnection(new PipedInputStream(partner),
+                OutputStream.nullOutputStream(), "new"), tasks::add);
+        tasks.forEach(Runnable::run);
+        tasks.clear();
+        assertEquals(GameSession.State.Game, session.getState());
+        partner.close();
+        reader.join();
+        tasks.forEach(Runnable::run);
+        assertTrue(session.isSuspended());
+    }
+
+    @Test
+    void globalStatsInJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(TurnStats.OBJECT_NAME);
+        assertSame(TurnStats.getGlobal(), TurnStats.getGlobal());
+        assertTrue(server.isRegistered(name));
+        assertTrue((Long)server.getAttribute(name, "ShotsFired") >= 0);
+    }
+
+    @Test
+    void gameOver() throws IOException {
+        session.beginSetup();
+        session.ready();
+        session.onMessage(Codec.READY, 0, null);
+        session.shoot(2, 2);
+        session.onMessage(Codec.RESULT, 0, Ocean.CellStatus.DestroyedHor);
+        assertTrue(won);
+        assertEquals(GameSession.State.EndOfGame, session.getState());
+    }
+
+    @Test
+    void lostGame() throws IOException {
+        session.beginSetup();
+        session.ready();
+        session.onMessage(Codec.READY, 0, null);
+        session.shoot(2, 2);
+        session.onMessage(Codec.RESULT, 0, Ocean.CellStatus.Missed);
+        session.onMessage(Codec.SHOT, Connection.packShot(1, 1), null);
+        assertEquals("result DestroyedHor", sent.get(sent.size() - 1));
+        assertFalse(won);
+    }
+
+    @Test
+    void protocolViolations() throws IOException {
+        session.beginSetup();
+        session.ready();
+        session.onMessage(Codec.READY, 0, null);
+        // It is our turn, the partner must wait
+        assertThrows(ProtocolException.class, () -> session.onMessage(Codec.SHOT, Connection.packShot(0, 0), null));
+        assertThrows(ProtocolException.class, () -> session.onMessage(Codec.RESULT, 0, Ocean.CellStatus.Missed));
+        assertThrows(ProtocolException.class, () -> session.onMessage(Codec.READY, 0, null));
+        session.shoot(0, 0);
+        session.onMessage(Codec.RESULT, 0, Ocean.CellStatus.Missed);
+        assertThrows(ProtocolException.class, () -> session.onMessage(Codec.SHOT, Connection.packShot(3, 0), null));
+    }
+
+    @Test
+    void salvo() throws IOException {
+        ocean = new Ocean(new GameRules(4, new int[]{2}));
+        ocean.tryPlaceShipAt(0, 0, true, 1);
+        ocean.tryPlaceShipAt(2, 2, true, 1);
+        session = new GameSession(ocean, createTransport(), true, true);
+        session.beginSetup();
+        session.ready();
+        session.onMessage(Codec.READY, 0, null);
+        assertThrows(IllegalStateException.class, () -> session.shoot(0, 0));
+        assertEquals(2, session.getSalvoSize());
+        int[] shots = {Connection.packShot(3, 3), Connection.packShot(1, 1), Connection.packShot(3, 0)};
+        assertThrows(IllegalArgumentException.class, () -> session.shoot(shots, 3));
+        assertTrue(session.shoot(shots, 2));
+        assertThrows(ProtocolException.class,
+                () -> session.onResults(new Ocean.CellStatus[]{Ocean.CellStatus.Missed}, 1));
+        session.onResults(new Ocean.CellStatus[]{Ocean.CellStatus.Missed, Ocean.CellStatus.DestroyedHor}, 2);
+        assertEquals(Ocean.CellStatus.DestroyedHor, session.getBoard().getStatus(1, 1));
+        // The partner has one ship left, so one shot per salvo
+        assertThrows(ProtocolException.class, () -> session.onSalvo(shots, 2));
+        assertThrows(ProtocolException.class, () -> session.onMessage(Codec.SHOT, shots[0], null));
+        session.onSalvo(new int[]{Connection.packShot(0, 0)}, 1);
+        assertEquals(List.of("ready", "salvo 2", "results [DestroyedHor]"), sent);
+        assertEquals(1, session.getSalvoSize());
+        assertTrue(session.isMyTurn());
+    }
+}
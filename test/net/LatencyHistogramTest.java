@@ -0,0 +1,50 @@
+package net;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+    @Test
+    void buckets() {
+        for (long value = 0; value < 100000; ++value) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value <= LatencyHistogram.highestOf(bucket));
+            assertTrue(bucket == 0 || value > LatencyHistogram.highestOf(bucket - 1));
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestOf(LatencyHistogram.bucketOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(0.99));
+        for (int i = 1; i <= 1000; ++i)
+            histogram.record(i * 1000L);
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMax());
+        // Buckets are 1/8 of a power of two wide
+        assertEquals(500000, histogram.getPercentile(0.5), 500000 / 8.0);
+        assertEquals(990000, histogram.getPercentile(0.99), 990000 / 8.0);
+        assertEquals(1000000, histogram.getPercentile(1));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getPercentile(1.5));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    void tail() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random rnd = new Random(17);
+        for (int i = 0; i < 100000; ++i)
+            histogram.record(50000 + rnd.nextInt(1000));
+        for (int i = 0; i < 50; ++i)
+            histogram.record(20000000);
+        assertTrue(histogram.getPercentile(0.99) < 60000);
+        assertTrue(histogram.getPercentile(0.9999) >= 20000000 * 7 / 8);
+        assertEquals(20000000, histogram.getMax());
+    }
+}
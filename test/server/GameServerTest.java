@@ -0,0 +1,425 @@
+package server;
+
+import core.GameRules;
+import core.Ocean;
+import core.ShotBoard;
+import core.ShotOutcome;
+import core.sim.HuntTargetShooter;
+import core.sim.Shooter;
+import net.Codec;
+import net.Connection;
+import net.GameSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameServerTest {
+    private GameServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new GameServer("test server", 0, 2, 0);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    /**
+     * Play one match against the server the way GameWindow does, with hunt/target choosing the shots
+     * @return true, if the player has won
+     */
+    private boolean play(int seed, boolean binary) throws IOException {
+        return play(seed, binary, -1);
+    }
+
+    /**
+     * Play one match the way GameWindow does, with hunt/target choosing the shots
+     * @param rating rating of the player to be paired with another one, negative to play the server
+     * @return true, if the player has won
+     */
+    private boolean play(int seed, boolean binary, int rating) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            Connection connection = Connection.connect(socket.getInputStream(), socket.getOutputStream(),
+                    "player " + seed, binary, rating);
+            if (rating < 0) {
+                assertEquals("test server", connection.getPartnerName());
+                assertTrue(connection.movesFirst());
+            }
+            else
+                assertTrue(connection.getPartnerName().startsWith("player "));
+            assertEquals(binary, connection.isBinary());
+            Ocean ocean = new Ocean();
+            ocean.setRndSeed(seed);
+            ocean.placeAllShipsRandomly();
+            ShotBoard board = new ShotBoard(ocean.OCEAN_SIZE);
+            Shooter shooter = new HuntTargetShooter();
+            shooter.newGame(GameRules.CLASSIC, new Random(seed));
+            connection.sendReady();
+            connection.readReady();
+            boolean myTurn = connection.movesFirst();
+            while (true) {
+                if (!myTurn) {
+                    int shot = connection.readShot();
+                    long outcome = ocean.shoot(Connection.getRow(shot), Connection.getColumn(shot));
+                    connection.sendResult(ShotOutcome.toCellStatus(outcome));
+                    if (ocean.isGameOver())
+                        return false;
+                }
+                myTurn = false;
+                int cell = shooter.selectShot(board.getCells());
+                connection.sendShot(cell / 10, cell % 10);
+                board.record(cell / 10, cell % 10, connection.readResult());
+                if (board.getShipsDestroyed() == ocean.FLEET_SIZE)
+                    return true;
+            }
+        }
+    }
+
+    private void awaitMatches(long matches) throws InterruptedException {
+        for (int i = 0; i < 500 && server.getMatchesWon() + server.getMatchesLost() < matches; ++i)
+            Thread.sleep(10);
+    }
+
+    @Test
+    void concurrentMatches() throws InterruptedException {
+        List<CompletableFuture<Boolean>> games = new ArrayList<>();
+        for (int i = 0; i < 40; ++i) {
+            int seed = i;
+            games.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return play(seed, seed % 2 == 0);
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        int playerWins = 0;
+        for (CompletableFuture<Boolean> game : games)
+            if (game.join())
+                ++playerWins;
+        awaitMatches(40);
+        assertEquals(playerWins, server.getMatchesLost());
+        assertEquals(40 - playerWins, server.getMatchesWon());
+    }
+
+    /**
+     * Play one salvo match against the server, picking the cells of a salvo with hunt/target one by one
+     * @return number of salvos fired by the player
+     */
+    private int playSalvo(int seed) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            Connection connection = Connection.connect(socket.getInputStream(), socket.getOutputStream(),
+                    "player " + seed, true, -1, true);
+            assertTrue(connection.isSalvo());
+            Ocean ocean = new Ocean();
+            ocean.setRndSeed(seed);
+            ocean.placeAllShipsRandomly();
+            ShotBoard board = new ShotBoard(ocean.OCEAN_SIZE);
+            Shooter shooter = new HuntTargetShooter();
+            shooter.newGame(GameRules.CLASSIC, new Random(seed));
+            int[] shots = new int[Codec.MAX_SALVO];
+            Ocean.CellStatus[] results = new Ocean.CellStatus[Codec.MAX_SALVO];
+            connection.sendReady();
+            connection.readReady();
+            for (int salvos = 1; ; ++salvos) {
+                Ocean.CellStatus[][] guess = new Ocean.CellStatus[10][];
+                for (int i = 0; i < 10; ++i)
+                    guess[i] = board.getCells()[i].clone();
+                int count = 0;
+                while (count < ocean.getShipsAfloat()) {
+                    int cell = shooter.selectShot(guess);
+                    if (guess[cell / 10][cell % 10] != Ocean.CellStatus.Unknown)
+                        break;
+                    guess[cell / 10][cell % 10] = Ocean.CellStatus.Missed;
+                    shots[count++] = Connection.packShot(cell / 10, cell % 10);
+                }
+                connection.sendSalvo(shots, count);
+                assertEquals(count, connection.readResults(results));
+                for (int i = 0; i < count; ++i)
+                    board.record(Connection.getRow(shots[i]), Connection.getColumn(shots[i]), results[i]);
+                if (board.getShipsDestroyed() == ocean.FLEET_SIZE)
+                    return salvos;
+                int[] rows = new int[Codec.MAX_SALVO], columns = new int[Codec.MAX_SALVO];
+                int received = connection.readSalvo(shots);
+                for (int i = 0; i < received; ++i) {
+                    rows[i] = Connection.getRow(shots[i]);
+                    columns[i] = Connection.getColumn(shots[i]);
+                }
+                long[] outcomes = new long[received];
+                ocean.shootAt(rows, columns, received, outcomes);
+                for (int i = 0; i < received; ++i)
+                    results[i] = ShotOutcome.toCellStatus(outcomes[i]);
+                connection.sendResults(results, received);
+                if (ocean.isGameOver())
+                    return salvos;
+            }
+        }
+    }
+
+    @Test
+    void salvoMatches() throws IOException, InterruptedException {
+        int salvos = 0;
+        for (int seed = 0; seed < 4; ++seed)
+            salvos += playSalvo(seed);
+        awaitMatches(4);
+        assertEquals(4, server.getMatchesWon() + server.getMatchesLost());
+        // A classic game takes some 40 to 50 shots of each player, one round trip each
+        assertTrue(salvos < 4 * 25, "Salvos: " + salvos);
+    }
+
+    @Test
+    void pairedMatches() throws InterruptedException {
+        List<CompletableFuture<Boolean>> games = new ArrayList<>();
+        for (int i = 0; i < 20; ++i) {
+            int seed = i;
+            games.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return play(seed, seed % 3 != 0, 1500);
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        int wins = 0;
+        for (CompletableFuture<Boolean> game : games)
+            if (game.join())
+                ++wins;
+        assertEquals(10, wins);
+        for (int i = 0; i < 500 && server.getRelayMatches() < 10; ++i)
+            Thread.sleep(10);
+        assertEquals(10, server.getRelayMatches());
+        assertEquals(0, server.getMatchesWon() + server.getMatchesLost());
+        assertEquals(10, server.getLobby().getMatches());
+        assertEquals(0, server.getLobby().getWaiting());
+    }
+
+    @Test
+    void partnerLeaves() throws IOException, InterruptedException {
+        try (Socket first = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+             Socket second = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            CompletableFuture<Connection> waiting = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return Connection.connect(first.getInputStream(), first.getOutputStream(), "first", true, 0);
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            for (int i = 0; i < 500 && server.getLobby().getWaiting() == 0; ++i)
+                Thread.sleep(10);
+            Connection connection = Connection.connect(second.getInputStream(), second.getOutputStream(),
+                    "second", false, 0);
+            assertEquals("first", connection.getPartnerName());
+            assertFalse(connection.movesFirst());
+            Connection partner = waiting.join();
+            assertEquals("second", partner.getPartnerName());
+            assertTrue(partner.movesFirst());
+            connection.sendReady();
+            partner.readReady();
+            second.shutdownOutput();
+            assertThrows(IOException.class, partner::readReady);
+        }
+    }
+
+    @Test
+    void waitingPlayerLeaves() throws IOException, InterruptedException {
+        // A player waiting in the lobby must not send anything, and leaving frees the slot
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.getOutputStream().write(("talker" + Connection.MATCH_OFFER + "0\n").getBytes());
+            for (int i = 0; i < 500 && server.getLobby().getWaiting() == 0; ++i)
+                Thread.sleep(10);
+            assertEquals(1, server.getLobby().getWaiting());
+            socket.getOutputStream().write(new byte[16]);
+            assertEquals(-1, socket.getInputStream().read());
+        }
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.getOutputStream().write(("quitter" + Connection.MATCH_OFFER + "0\n").getBytes());
+            for (int i = 0; i < 500 && server.getLobby().getWaiting() == 0; ++i)
+                Thread.sleep(10);
+            assertEquals(1, server.getLobby().getWaiting());
+        }
+        for (int i = 0; i < 500 && server.getSessions() > 0; ++i)
+            Thread.sleep(10);
+        assertEquals(0, server.getSessions());
+        assertEquals(0, server.getLobby().getWaiting());
+    }
+
+    @Test
+    void shotOutsideBattlefield() throws IOException, InterruptedException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            Connection connection = Connection.connect(socket.getInputStream(), socket.getOutputStream(), "cheater", true);
+            connection.sendReady();
+            connection.readReady();
+            connection.sendShot(10, 0);
+            assertThrows(IOException.class, connection::readResult);
+        }
+        for (int i = 0; i < 500 && server.getSessions() > 0; ++i)
+            Thread.sleep(10);
+        assertEquals(0, server.getSessions());
+    }
+
+    @Test
+    void nameTooLong() throws IOException, InterruptedException {
+        for (int i = 0; i < 4; ++i) {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+                socket.getOutputStream().write(("x".repeat(500) + "\n").getBytes());
+                assertEquals(-1, socket.getInputStream().read());
+            }
+        }
+        // Both loops still serve players
+        for (int seed = 0; seed < 4; ++seed)
+            play(seed, true);
+        for (int i = 0; i < 500 && server.getSessions() > 0; ++i)
+            Thread.sleep(10);
+        assertEquals(0, server.getSessions());
+    }
+
+    /**
+     * Play a match against the server with hunt/target until the player has made 10 shots,
+     * then drop the connection with the next shot in flight
+     * @param token receives the session token
+     * @return suspended session of the player
+     */
+    private GameSession playUntilDropped(GameServer server, String[] token) throws IOException {
+        Ocean ocean = new Ocean();
+        ocean.setRndSeed(7);
+        Shooter shooter = new HuntTargetShooter();
+        shooter.newGame(GameRules.CLASSIC, new Random(7));
+        boolean[] hold = new boolean[1];        // Shots are held back to drop the connection in the middle
+        GameSession session;
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            Connection connection = Connection.connect(socket.getInputStream(), socket.getOutputStream(), "player",
+                    true);
+            token[0] = connection.getResumeToken();
+            assertNotNull(token[0]);
+            session = new GameSession(ocean, connection, connection.movesFirst());
+            GameSession game = session;
+            session.setListener(new GameSession.Listener() {
+                @Override
+                public void onMyTurn() {
+                    if (hold[0])
+                        return;
+                    int cell = shooter.selectShot(game.getBoard().getCells());
+                    try {
+                        game.shoot(cell / 10, cell % 10);
+                    }
+                    catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+            session.beginSetup();
+            ocean.placeAllShipsRandomly();
+            session.ready();
+            while (session.getMyShots() < 10 || !session.isMyTurn()) {
+                hold[0] = session.getMyShots() >= 10;
+                session.receive(connection);
+            }
+            hold[0] = false;
+            int cell = shooter.selectShot(session.getBoard().getCells());
+            session.shoot(cell / 10, cell % 10);
+        }
+        session.disconnect();
+        assertTrue(session.isSuspended());
+        return session;
+    }
+
+    /**
+     * Resume a suspended match and play it to the end
+     */
+    private void finishResumed(GameServer server, String token, GameSession session) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            Connection connection = Connection.reconnect(socket.getInputStream(), socket.getOutputStream(), "player",
+                    token, session);
+            assertEquals("test server", connection.getPartnerName());
+            assertEquals(0, server.getSuspended());
+            session.resume(connection, connection.getPartnerShotsReceived(), connection.getPartnerResultsReceived());
+            while (session.getState() != GameSession.State.EndOfGame)
+                session.receive(connection);
+            assertFalse(session.isSuspended());
+        }
+    }
+
+    @Test
+    void resumeDroppedMatch() throws IOException, InterruptedException {
+        String[] token = new String[1];
+        GameSession session = playUntilDropped(server, token);
+        for (int i = 0; i < 500 && server.getSuspended() == 0; ++i)
+            Thread.sleep(10);
+        assertEquals(1, server.getSuspended());
+        // Lines the match cannot go on with are rejected and leave it suspended
+        for (String state : new String[]{token[0] + ".x.0", token[0] + ".99.99"}) {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+                socket.getOutputStream().write(("player" + Connection.RESUME + state + Connection.BINARY_OFFER + "\n")
+                        .getBytes());
+                assertEquals(-1, socket.getInputStream().read());
+            }
+            assertEquals(1, server.getSuspended());
+        }
+        finishResumed(server, token[0], session);
+        awaitMatches(1);
+        assertEquals(1, server.getMatchesWon() + server.getMatchesLost());
+
+        // The token is used up
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            assertThrows(IOException.class, () -> Connection.reconnect(socket.getInputStream(),
+                    socket.getOutputStream(), "player", token[0], session));
+        }
+    }
+
+    @Test
+    void recoverFromJournal(@TempDir Path directory) throws IOException, InterruptedException {
+        String[] token = new String[1];
+        GameSession session;
+        try (GameServer first = new GameServer("test server", 0, 1, -1, directory)) {
+            first.start();
+            session = playUntilDropped(first, token);
+        }
+        // Nothing is kept in memory, the match is rebuilt from the records of its messages
+        try (GameServer second = new GameServer("test server", 0, 1, -1, directory)) {
+            second.start();
+            assertEquals(1, second.getRecovered());
+            assertEquals(1, second.getSuspended());
+            finishResumed(second, token[0], session);
+        }
+        try (GameServer third = new GameServer("test server", 0, 1, -1, directory)) {
+            assertEquals(0, third.getRecovered());
+        }
+    }
+
+    @Test
+    void suspendedMatchesAreBounded() {
+        byte[] snapshot = new byte[1];
+        for (int i = 0; i <= GameServer.MAX_SUSPENDED; ++i)
+            server.suspend("token " + i, snapshot);
+        // The oldest match has made room for the newest one
+        assertEquals(GameServer.MAX_SUSPENDED, server.getSuspended());
+        assertNull(server.findSuspended("token 0"));
+        assertSame(snapshot, server.findSuspended("token 1"));
+        assertSame(snapshot, server.findSuspended("token " + GameServer.MAX_SUSPENDED));
+        // A match taken and suspended again keeps its place when its old entry is dropped
+        assertTrue(server.resume("token 1", snapshot));
+        server.suspend("token 1", snapshot);
+        server.suspend("token new", snapshot);
+        assertSame(snapshot, server.findSuspended("token 1"));
+        assertEquals(GameServer.MAX_SUSPENDED, server.getSuspended());
+    }
+}
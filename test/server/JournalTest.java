@@ -0,0 +1,105 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+    private static List<Integer> replay(Path directory) throws IOException {
+        List<Integer> records = new ArrayList<>();
+        Journal.replay(directory, record -> {
+            int value = record.getInt();
+            assertEquals(value % 50 + 4, record.limit());
+            records.add(value);
+        });
+        return records;
+    }
+
+    /**
+     * Record of 4 to 53 bytes starting with its number
+     */
+    private static ByteBuffer record(int value) {
+        ByteBuffer record = ByteBuffer.allocate(value % 50 + 4);
+        record.putInt(0, value);
+        return record;
+    }
+
+    @Test
+    void appendAndReplay(@TempDir Path directory) throws Exception {
+        try (Journal journal = new Journal(directory, 1024, 1)) {
+            for (int i = 0; i < 200; ++i)
+                journal.append(record(i));
+            journal.sync();
+            assertEquals(200, journal.getAppended());
+            assertTrue(journal.getSegmentNumber() > 1);
+        }
+        List<Integer> records = replay(directory);
+        assertEquals(200, records.size());
+        for (int i = 0; i < 200; ++i)
+            assertEquals(i, records.get(i));
+        // A reopened journal appends to a new segment after the old ones
+        try (Journal journal = new Journal(directory, 1024, 1)) {
+            journal.append(record(200));
+            journal.deleteSegmentsBefore(journal.getSegmentNumber());
+        }
+        assertEquals(List.of(200), replay(directory));
+    }
+
+    @Test
+    void tornRecord(@TempDir Path directory) throws Exception {
+        try (Journal journal = new Journal(directory, 4096, 1)) {
+            for (int i = 0; i < 10; ++i)
+                journal.append(record(i));
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        // Damage the last byte of the sixth record, as if the crash had stopped writing there
+        int end = 0;
+        for (int i = 0; i < 6; ++i)
+            end += 8 + i % 50 + 4;
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(end - 1);
+            file.write(0x55);
+        }
+        assertEquals(List.of(0, 1, 2, 3, 4), replay(directory));
+    }
+
+    @Test
+    void groupCommit(@TempDir Path directory) throws Exception {
+        try (Journal journal = new Journal(directory, 1 << 20, 5)) {
+            Thread[] threads = new Thread[8];
+            for (int t = 0; t < threads.length; ++t) {
+                int first = t * 1000;
+                threads[t] = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 1000; ++i)
+                            journal.append(record(first + i));
+                    }
+                    catch (IOException e) {
+                        fail(e);
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads)
+                thread.join();
+            journal.sync();
+            assertEquals(8000, journal.getAppended());
+            // One fsync commits the records of many turns
+            assertTrue(journal.getSyncs() < 800, "Syncs: " + journal.getSyncs());
+        }
+        assertEquals(8000, replay(directory).size());
+    }
+}
@@ -0,0 +1,49 @@
+package server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadGeneratorTest {
+    private GameServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new GameServer("test server", 0, 2);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void allProtocols() throws InterruptedException {
+        for (LoadGenerator.Protocol protocol : LoadGenerator.Protocol.values()) {
+            LoadGenerator generator = new LoadGenerator(server.getPort(), LoadGenerator.createStrategy("hunt"), protocol);
+            generator.run(12, 4);
+            assertEquals(0, generator.getErrors(), protocol + ": " + generator.getErrorsByKind());
+            assertEquals(12, generator.getGamesPlayed());
+            assertTrue(generator.getGamesPerSecond() > 0);
+            assertTrue(generator.getStats().getRoundTripCount() >= 12 * 5);
+            assertTrue(generator.getStats().getRoundTripP99Micros() <= generator.getStats().getRoundTripMaxMicros());
+        }
+    }
+
+    @Test
+    void serverDown() throws IOException, InterruptedException {
+        int port = server.getPort();
+        server.close();
+        LoadGenerator generator = new LoadGenerator(port, LoadGenerator.createStrategy("random"),
+                LoadGenerator.Protocol.Binary);
+        generator.run(3, 2);
+        assertEquals(0, generator.getGamesPlayed());
+        assertEquals(3, generator.getErrors());
+        assertEquals(3, generator.getErrorsByKind().get("ConnectException"));
+    }
+}
@@ -0,0 +1,87 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LobbyTest {
+    @Test
+    void pairsInOrder() {
+        Lobby<String> lobby = new Lobby<>();
+        Lobby.Ticket<String> ticket = lobby.join("first", 0);
+        assertEquals("first", ticket.getPlayer());
+        assertEquals(1, lobby.getWaiting());
+        assertEquals("first", lobby.join("second", 0).getPlayer());
+        assertEquals(0, lobby.getWaiting());
+        assertEquals("third", lobby.join("third", 0).getPlayer());
+        assertEquals("third", lobby.join("fourth", 0).getPlayer());
+        assertEquals(2, lobby.getMatches());
+        assertTrue(lobby.getMaxWaitNanos() >= lobby.getMeanWaitNanos());
+    }
+
+    @Test
+    void ratingBands() {
+        Lobby<String> lobby = new Lobby<>(100);
+        assertEquals("novice", lobby.join("novice", 1050).getPlayer());
+        assertEquals("master", lobby.join("master", 2300).getPlayer());
+        assertEquals(2, lobby.getWaiting());
+        assertEquals("novice", lobby.join("beginner", 1099).getPlayer());
+        assertEquals("master", lobby.join("expert", 2301).getPlayer());
+        assertEquals(0, lobby.getWaiting());
+        // Ratings out of range share the bands at the ends
+        assertEquals("cheater", lobby.join("cheater", Integer.MAX_VALUE).getPlayer());
+        assertEquals("cheater", lobby.join("champion", Lobby.MAX_RATING).getPlayer());
+        assertEquals("liar", lobby.join("liar", -500).getPlayer());
+        assertEquals("liar", lobby.join("newcomer", 0).getPlayer());
+        assertThrows(IllegalArgumentException.class, () -> new Lobby<String>(-1));
+    }
+
+    @Test
+    void leave() {
+        Lobby<String> lobby = new Lobby<>();
+        Lobby.Ticket<String> ticket = lobby.join("first", 0);
+        assertTrue(lobby.leave(ticket));
+        assertEquals(0, lobby.getWaiting());
+        assertEquals("second", lobby.join("second", 0).getPlayer());
+        assertFalse(lobby.leave(ticket));
+        assertEquals("second", lobby.join("third", 0).getPlayer());
+        assertEquals(1, lobby.getMatches());
+    }
+
+    @Test
+    void concurrentJoins() throws InterruptedException {
+        Lobby<Integer> lobby = new Lobby<>(10);
+        int threads = 8, players = 10000;
+        ConcurrentHashMap<Integer, Integer> partners = new ConcurrentHashMap<>();
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(threads);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; ++i) {
+            workers.add(new Thread(() -> {
+                int player;
+                while ((player = next.getAndIncrement()) < players) {
+                    int partner = lobby.join(player, player % 40).getPlayer();
+                    if (partner != player) {
+                        assertNull(partners.put(partner, player));
+                        assertNull(partners.put(player, partner));
+                    }
+                }
+                done.countDown();
+            }));
+        }
+        workers.forEach(Thread::start);
+        done.await();
+        // Four bands, every one gets an even number of players
+        assertEquals(0, lobby.getWaiting());
+        assertEquals(players / 2, lobby.getMatches());
+        assertEquals(players, partners.size());
+        for (int player = 0; player < players; ++player)
+            assertEquals(player % 40 / 10, partners.get(player) % 40 / 10);
+    }
+}